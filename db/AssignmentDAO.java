@@ -2,25 +2,50 @@ package db;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import model.Assignment;
 
-public class AssignmentDAO implements CrudDAO<Assignment> {
+public class AssignmentDAO implements IdDAO<Assignment> {
     // SINGLETON ACCESS
     private static final AssignmentDAO instance = new AssignmentDAO();
 
-    private AssignmentDAO() {}
+    private AssignmentDAO() {
+        EntityCache.register(this);
+    }
 
     public static AssignmentDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria
+    public static final Column<Assignment, Integer> ID = Column.integer("id");
+    public static final Column<Assignment, String> NAME = Column.text("name");
+    public static final Column<Assignment, Timestamp> DUE_DATE = Column.timestamp("due_date");
+    public static final Column<Assignment, Double> MAX_POINTS = Column.real("max_points");
+    public static final Column<Assignment, Integer> COURSE_ID = Column.integer("course_id");
+    public static final Column<Assignment, Double> WEIGHT = Column.real("weight");
+    public static final Column<Assignment, Assignment.Type> TYPE = Column.mapped("type", Assignment.Type::toInt, Assignment.Type::fromInt);
+
+    @Override
+    public String getTableName() { return "assignments"; }
+
     // ABSTRACT CRUD OPERATIONS IMPLEMENTATIONS
     @Override
     public void create(Assignment assignment) {
+        try (Connection connection = DBConnection.getConnection()) {
+            createRow(connection, assignment);
+        } catch (SQLException e) {
+            System.err.println("Error creating assignment: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int createRow(Connection connection, Assignment assignment) throws SQLException {
         String query = "INSERT INTO assignments (name, due_date, max_points, course_id, weight, type,submission_types) VALUES (?,?,?,?,?,?,?)";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setString(1, assignment.getName());
             stmt.setTimestamp(2, assignment.getDueDate());
@@ -37,25 +62,35 @@ public class AssignmentDAO implements CrudDAO<Assignment> {
                 if (generatedKeys.next()) {
                     int id = generatedKeys.getInt(1);
                     assignment.setId(id); // set the generated id here
+                    EntityCache.invalidate(this, id);
+                    EntityCache.invalidate(CourseDAO.getInstance(), assignment.getCourseId()); // cached course holds its assignments
+                    ChangeBus.publish(ChangeEvent.Kind.ASSIGNMENT_CREATED, id, assignment.getCourseId());
                 } else {
                     throw new SQLException("Creating assignment failed, no ID obtained.");
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error creating assignment: " + e.getMessage());
         }
+        return assignment.getId();
     }
     
     @Override
     public Assignment read(int id) {
+        Assignment cached = IdentityScope.find(this, id);
+        if (cached != null) return cached; // already loaded in this unit of work
+
+        cached = EntityCache.get(this, id);
+        if (cached != null) return IdentityScope.remember(this, id, cached); // loaded by an earlier action
+
+        long stamp = EntityCache.stamp(this);
+
         String query = "SELECT * FROM assignments WHERE id = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
     
-            if (rs.next()) return buildFromResultSet(rs);
+            if (rs.next()) return IdentityScope.remember(this, id, EntityCache.put(this, id, buildFromResultSet(rs), stamp));
         } catch (SQLException e) {
             System.err.println("Error reading assignment: " + e.getMessage());
         }
@@ -63,9 +98,10 @@ public class AssignmentDAO implements CrudDAO<Assignment> {
     }
 
     @Override
+    @Deprecated
     public List<Assignment> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM assignments WHERE " + columnName.trim() + " = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setObject(1, value);
@@ -80,12 +116,40 @@ public class AssignmentDAO implements CrudDAO<Assignment> {
         return null;
     }
     
+    // assignments of several courses grouped by course id, one query per MAX_IN_PARAMS courses
+    public Map<Integer, List<Assignment>> readAllForCourses(Collection<Integer> courseIds) {
+        Map<Integer, List<Assignment>> assignmentsByCourse = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(courseIds);
+
+        try (Connection connection = DBConnection.getReadConnection()) {
+            for (int from = 0; from < ids.size(); from += DBConnection.MAX_IN_PARAMS) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + DBConnection.MAX_IN_PARAMS));
+                String query = "SELECT * FROM assignments WHERE course_id IN (" + DBConnection.placeholders(chunk.size()) + ") ORDER BY course_id, id";
+
+                try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                    for (int i = 0; i < chunk.size(); i++) stmt.setInt(i + 1, chunk.get(i));
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            Assignment assignment = buildFromResultSet(rs);
+                            assignmentsByCourse.computeIfAbsent(assignment.getCourseId(), k -> new ArrayList<>()).add(assignment);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading assignments for courses: " + e.getMessage());
+        }
+
+        return assignmentsByCourse;
+    }
+    
     @Override
     public List<Assignment> readAll() {
         List<Assignment> assignments = new ArrayList<>();
         String query = "SELECT * FROM assignments";
 
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
             PreparedStatement stmt = connection.prepareStatement(query);
             ResultSet rs = stmt.executeQuery()) {
 
@@ -99,10 +163,27 @@ public class AssignmentDAO implements CrudDAO<Assignment> {
 
     @Override
     public void update(Assignment assignment) {
+        try (Connection connection = DBConnection.getConnection()) {
+            connection.setAutoCommit(false); // course lookup, update and gradebook refresh commit together
+
+            try {
+                updateRow(connection, assignment);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error updating assignment: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void updateRow(Connection connection, Assignment assignment) throws SQLException {
         String query = "UPDATE assignments SET name = ?, due_date = ?, max_points = ?, course_id = ?, weight = ?, type = ?, submission_types = ? WHERE id = ?";
+        int oldCourseId = readCourseId(connection, assignment.getId());
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setString(1, assignment.getName());
             stmt.setTimestamp(2, assignment.getDueDate());
@@ -117,18 +198,38 @@ public class AssignmentDAO implements CrudDAO<Assignment> {
             if (affectedRows == 0) {
                 throw new SQLException("Updating assignment failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error updating assignment: " + e.getMessage());
+            EntityCache.invalidate(this, assignment.getId());
+            EntityCache.invalidateAll(CourseDAO.getInstance()); // the assignment may have moved between courses
+            GradebookDAO.getInstance().assignmentChanged(connection, assignment.getId(), oldCourseId); // points, weight or course may differ
+            ChangeBus.publish(ChangeEvent.Kind.ASSIGNMENT_UPDATED, assignment.getId(), assignment.getCourseId());
         }
     }
 
 
     @Override
     public void delete(int id) {
+        try (Connection connection = DBConnection.getConnection()) {
+            connection.setAutoCommit(false); // course lookup, delete and gradebook refresh commit together
+
+            try {
+                deleteRow(connection, id);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            IdentityScope.forget(this, id);
+        } catch (SQLException e) {
+            System.err.println("Error deleting assignment: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteRow(Connection connection, int id) throws SQLException {
         String query = "DELETE FROM assignments WHERE id = ?";
+        int courseId = readCourseId(connection, id);
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, id);
 
@@ -136,8 +237,20 @@ public class AssignmentDAO implements CrudDAO<Assignment> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting assignment failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting assignment: " + e.getMessage());
+            EntityCache.invalidate(this, id);
+            EntityCache.invalidateAll(CourseDAO.getInstance()); // owning course is not known here
+            GradebookDAO.getInstance().assignmentChanged(connection, id, courseId); // its entries were removed by the cascade
+            ChangeBus.publish(ChangeEvent.Kind.ASSIGNMENT_DELETED, id, -1);
+        }
+    }
+
+    // course of an assignment as stored, -1 when it does not exist
+    private int readCourseId(Connection connection, int id) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT course_id FROM assignments WHERE id = ?")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
         }
     }
 
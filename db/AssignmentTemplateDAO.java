@@ -7,21 +7,40 @@ import java.util.stream.Collectors;
 import model.Assignment;
 import model.AssignmentTemplate;
 
-public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
+public class AssignmentTemplateDAO implements IdDAO<AssignmentTemplate> {
     // SINGLETON ACCESS
     private static final AssignmentTemplateDAO instance = new AssignmentTemplateDAO();
 
-    private AssignmentTemplateDAO() {}
+    private AssignmentTemplateDAO() {
+        EntityCache.register(this);
+    }
 
     public static AssignmentTemplateDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria
+    public static final Column<AssignmentTemplate, Integer> ID = Column.integer("id");
+    public static final Column<AssignmentTemplate, Integer> COURSE_TEMPLATE_ID = Column.integer("course_template_id");
+    public static final Column<AssignmentTemplate, Double> WEIGHT = Column.real("weight");
+    public static final Column<AssignmentTemplate, Assignment.Type> TYPE = Column.ordinal("type", Assignment.Type.class);
+
+    @Override
+    public String getTableName() { return "assignment_templates"; }
+
     // ABSTRACT CRUD OPERATION IMPLEMENTATIONS
     @Override
     public void create(AssignmentTemplate template) {
+        try (Connection connection = DBConnection.getConnection()) {
+            createRow(connection, template);
+        } catch (SQLException e) {
+            System.err.println("Error creating assignment template: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int createRow(Connection connection, AssignmentTemplate template) throws SQLException {
         String query = "INSERT INTO assignment_templates (course_template_id, weight, type, submission_types) VALUES (?, ?, ?, ?)";
 
-        try (Connection connection = DBConnection.getConnection();
-            PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setInt(1, template.getCourseTemplateId());
             stmt.setDouble(2, template.getWeight());
@@ -36,25 +55,33 @@ public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
                 if (generatedKeys.next()) {
                     int templateId = generatedKeys.getInt(1);
                     template.setId(templateId); // set the generated id here
+                    evict(templateId, template.getCourseTemplateId());
                 } else {
                     throw new SQLException("Creating assignment template failed, no ID obtained.");
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error creating assignment template: " + e.getMessage());
         }
+        return template.getId();
     }
 
     @Override
     public AssignmentTemplate read(int id) {
+        AssignmentTemplate cached = IdentityScope.find(this, id);
+        if (cached != null) return cached; // already loaded in this unit of work
+
+        cached = EntityCache.get(this, id);
+        if (cached != null) return IdentityScope.remember(this, id, cached); // loaded by an earlier action
+
+        long stamp = EntityCache.stamp(this);
+
         String query = "SELECT * FROM assignment_templates WHERE id = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
     
-            if (rs.next()) return buildFromResultSet(rs);
+            if (rs.next()) return IdentityScope.remember(this, id, EntityCache.put(this, id, buildFromResultSet(rs), stamp));
         } catch (SQLException e) {
             System.err.println("Error reading assignment template: " + e.getMessage());
         }
@@ -62,9 +89,10 @@ public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
     }
 
     @Override
+    @Deprecated
     public List<AssignmentTemplate> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM assignment_templates WHERE " + columnName.trim() + " = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setObject(1, value);
@@ -84,7 +112,7 @@ public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
         List<AssignmentTemplate> templates = new ArrayList<>();
         String query = "SELECT * FROM assignment_templates";
 
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
             PreparedStatement stmt = connection.prepareStatement(query);
             ResultSet rs = stmt.executeQuery()) {
 
@@ -100,10 +128,18 @@ public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
     
     @Override
     public void update(AssignmentTemplate template) {
+        try (Connection connection = DBConnection.getConnection()) {
+            updateRow(connection, template);
+        } catch (SQLException e) {
+            System.err.println("Error updating assignment template: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void updateRow(Connection connection, AssignmentTemplate template) throws SQLException {
         String query = "UPDATE assignment_templates SET course_template_id = ?, weight = ?, type = ?, submission_types = ? WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, template.getCourseTemplateId());
             stmt.setDouble(2, template.getWeight());
@@ -115,17 +151,25 @@ public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
             if (affectedRows == 0) {
                 throw new SQLException("Updating assignment template failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error updating assignment template: " + e.getMessage());
+            evict(template.getId(), template.getCourseTemplateId());
         }
     }
     
     @Override
     public void delete(int id) {
+        try (Connection connection = DBConnection.getConnection()) {
+            deleteRow(connection, id);
+            IdentityScope.forget(this, id);
+        } catch (SQLException e) {
+            System.err.println("Error deleting assignment template: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteRow(Connection connection, int id) throws SQLException {
         String query = "DELETE FROM assignment_templates WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, id);
 
@@ -133,9 +177,17 @@ public class AssignmentTemplateDAO implements CrudDAO<AssignmentTemplate> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting assignment template failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting assignment template: " + e.getMessage());
         }
+        evict(id, -1); // owning course template is not known here
+    }
+
+    // course templates hold their assignment templates, and courses hold their course template
+    private void evict(int id, int courseTemplateId) {
+        ChangeBus.publish(ChangeEvent.Kind.TEMPLATE_CHANGED, courseTemplateId, -1);
+        EntityCache.invalidate(this, id);
+        if (courseTemplateId > 0) EntityCache.invalidate(CourseTemplateDAO.getInstance(), courseTemplateId);
+        else EntityCache.invalidateAll(CourseTemplateDAO.getInstance());
+        EntityCache.invalidateAll(CourseDAO.getInstance());
     }
     
     @Override
@@ -0,0 +1,116 @@
+package db;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+// Outcome of a createAll/updateAll/deleteAll call. All rows run in one transaction on the
+// writer, each inside its own savepoint, so a failing row is rolled back and reported
+// without undoing the rows around it. Generated keys are kept in input order.
+// Called while holding the writer lease, the rows run on that lease inside its transaction.
+public class BatchResult<T> {
+    private final List<T> items;
+    private final int[] generatedKeys;
+    private final List<Failure<T>> failures = new ArrayList<>();
+
+    private BatchResult(List<T> items) {
+        this.items = items;
+        this.generatedKeys = new int[items.size()];
+        Arrays.fill(generatedKeys, -1);
+    }
+
+    // one row's statements, returning its generated key or -1
+    @FunctionalInterface
+    public interface RowOperation<T> {
+        int execute(Connection connection, T item) throws SQLException;
+    }
+
+    public static <T> BatchResult<T> execute(List<T> items, RowOperation<T> operation) {
+        BatchResult<T> result = new BatchResult<>(new ArrayList<>(items));
+        if (items.isEmpty()) return result;
+
+        try {
+            DBConnection.submitWrite(connection -> {
+                result.run(connection, operation);
+                return null;
+            }).join();
+        } catch (CompletionException e) {
+            // the transaction itself failed, so rows that ran are gone too
+            Throwable cause = e.getCause();
+            result.failRemaining(cause instanceof SQLException ? (SQLException) cause : new SQLException(cause));
+        }
+
+        return result;
+    }
+
+    private void run(Connection connection, RowOperation<T> operation) throws SQLException {
+        for (int i = 0; i < items.size(); i++) {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                generatedKeys[i] = operation.execute(connection, items.get(i));
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                connection.releaseSavepoint(savepoint);
+                failures.add(new Failure<>(i, items.get(i), e));
+            }
+        }
+    }
+
+    private void failRemaining(SQLException error) {
+        boolean[] failed = new boolean[items.size()];
+        for (Failure<T> failure : failures) failed[failure.index] = true;
+
+        for (int i = 0; i < items.size(); i++) {
+            generatedKeys[i] = -1;
+            if (!failed[i]) failures.add(new Failure<>(i, items.get(i), error));
+        }
+        failures.sort(Comparator.comparingInt(Failure::getIndex));
+    }
+
+    // GETTERS
+    public int size() { return items.size(); }
+    public int getSuccessCount() { return items.size() - failures.size(); }
+    public int getFailureCount() { return failures.size(); }
+    public boolean hasFailures() { return !failures.isEmpty(); }
+    public List<Failure<T>> getFailures() { return Collections.unmodifiableList(failures); }
+    public int[] getGeneratedKeys() { return generatedKeys.clone(); } // -1 for failed rows and tables without keys
+
+    public boolean isSuccess(int index) {
+        for (Failure<T> failure : failures) {
+            if (failure.index == index) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[rows=" + items.size() + ", failed=" + failures.size() + "]";
+    }
+
+    public static class Failure<T> {
+        private final int index;
+        private final T item;
+        private final SQLException error;
+
+        private Failure(int index, T item, SQLException error) {
+            this.index = index;
+            this.item = item;
+            this.error = error;
+        }
+
+        public int getIndex() { return index; }
+        public T getItem() { return item; }
+        public SQLException getError() { return error; }
+
+        @Override
+        public String toString() {
+            return "row " + index + ": " + error.getMessage();
+        }
+    }
+}
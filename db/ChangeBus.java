@@ -0,0 +1,88 @@
+package db;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process publish/subscribe of ChangeEvents. DAOs publish from their row write methods and the
+// event is delivered once the write has committed (right away under autocommit, after the commit of
+// a manual transaction or write group, never if it rolls back).
+//
+// Listeners are called on the committing thread, which may be the DB writer thread, so they should
+// only record the event. The bus holds listeners weakly so a closed screen is not kept alive by its
+// subscription: keep a reference to the listener for as long as it should receive events.
+public final class ChangeBus {
+    private static final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // METRICS
+    private static final AtomicLong published = new AtomicLong();
+    private static final AtomicLong delivered = new AtomicLong();
+
+    private ChangeBus() {}
+
+    @FunctionalInterface
+    public interface Listener {
+        void onChange(ChangeEvent event);
+    }
+
+    // no topics means every topic, ALL_CHANGED reaches every listener
+    public static Subscription subscribe(Listener listener, ChangeEvent.Topic... topics) {
+        Set<ChangeEvent.Topic> filter = topics.length == 0
+            ? EnumSet.allOf(ChangeEvent.Topic.class)
+            : EnumSet.copyOf(Arrays.asList(topics));
+
+        Subscription subscription = new Subscription(listener, filter);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public static void publish(ChangeEvent event) {
+        published.incrementAndGet();
+        WriteQueue.afterCommit(() -> deliver(event));
+    }
+
+    static void publish(ChangeEvent.Kind kind, int id, int courseId) {
+        publish(new ChangeEvent(kind, id, courseId));
+    }
+
+    private static void deliver(ChangeEvent event) {
+        for (Subscription subscription : subscriptions) {
+            Listener listener = subscription.listener.get();
+            if (listener == null) {
+                subscriptions.remove(subscription); // its screen was garbage collected
+                continue;
+            }
+            if (!event.isAllChanged() && !subscription.topics.contains(event.getTopic())) continue;
+
+            try {
+                listener.onChange(event);
+                delivered.incrementAndGet();
+            } catch (RuntimeException e) {
+                System.err.println("Error delivering " + event + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // GETTERS
+    public static long getPublishedCount() { return published.get(); }
+    public static long getDeliveredCount() { return delivered.get(); }
+    public static int getSubscriberCount() { return subscriptions.size(); }
+
+    public static final class Subscription implements AutoCloseable {
+        private final WeakReference<Listener> listener;
+        private final Set<ChangeEvent.Topic> topics;
+
+        private Subscription(Listener listener, Set<ChangeEvent.Topic> topics) {
+            this.listener = new WeakReference<>(listener);
+            this.topics = topics;
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package db;
+
+// One committed change to the domain, published by the DAOs on the ChangeBus so screens can
+// update the affected rows instead of re-reading everything.
+public final class ChangeEvent {
+    // what a listener subscribes to
+    public enum Topic { USERS, COURSES, ASSIGNMENTS, SUBMISSIONS, ENROLLMENTS, TEMPLATES }
+
+    public enum Kind {
+        USER_CREATED(Topic.USERS), USER_UPDATED(Topic.USERS), USER_DELETED(Topic.USERS),
+        COURSE_CREATED(Topic.COURSES), COURSE_UPDATED(Topic.COURSES), COURSE_DELETED(Topic.COURSES),
+        ASSIGNMENT_CREATED(Topic.ASSIGNMENTS), ASSIGNMENT_UPDATED(Topic.ASSIGNMENTS), ASSIGNMENT_DELETED(Topic.ASSIGNMENTS),
+        SUBMISSION_CREATED(Topic.SUBMISSIONS), SUBMISSION_UPDATED(Topic.SUBMISSIONS), SUBMISSION_GRADED(Topic.SUBMISSIONS),
+        SUBMISSION_DELETED(Topic.SUBMISSIONS),
+        USER_ENROLLED(Topic.ENROLLMENTS), ENROLLMENT_UPDATED(Topic.ENROLLMENTS), USER_UNENROLLED(Topic.ENROLLMENTS),
+        TEMPLATE_CHANGED(Topic.TEMPLATES), // course or assignment template created, updated or deleted
+        ALL_CHANGED(null); // tables were written outside the DAOs, every listener must reload
+
+        private final Topic topic;
+
+        Kind(Topic topic) { this.topic = topic; }
+
+        public Topic getTopic() { return topic; }
+    }
+
+    private final Kind kind;
+    private final int id; // row id, the user id for enrollments
+    private final int courseId; // owning course when known without a query, otherwise -1
+
+    ChangeEvent(Kind kind, int id, int courseId) {
+        this.kind = kind;
+        this.id = id;
+        this.courseId = courseId;
+    }
+
+    public static ChangeEvent allChanged() { return new ChangeEvent(Kind.ALL_CHANGED, -1, -1); }
+
+    // GETTERS
+    public Kind getKind() { return kind; }
+    public Topic getTopic() { return kind.getTopic(); }
+    public int getId() { return id; }
+    public int getCourseId() { return courseId; }
+    public boolean hasCourse() { return courseId != -1; }
+    public boolean isAllChanged() { return kind == Kind.ALL_CHANGED; }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent[" + kind + ", id=" + id + (hasCourse() ? ", course=" + courseId : "") + "]";
+    }
+}
@@ -0,0 +1,70 @@
+package db;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+// A whitelisted column of an entity table, declared as a constant on the entity's DAO.
+// Criteria only ever concatenate these names into SQL; values of type V are always bound.
+public final class Column<T, V> {
+    private final String name;
+    private final Function<V, Object> toSql;
+    private final Reader<V> reader;
+
+    private Column(String name, Function<V, Object> toSql, Reader<V> reader) {
+        this.name = name;
+        this.toSql = toSql;
+        this.reader = reader;
+    }
+
+    // FACTORIES, package-private so only DAOs can declare columns
+    static <T> Column<T, Integer> integer(String name) {
+        return new Column<>(name, v -> v, (rs, col) -> rs.getInt(col));
+    }
+
+    static <T> Column<T, Double> real(String name) {
+        return new Column<>(name, v -> v, (rs, col) -> rs.getDouble(col));
+    }
+
+    static <T> Column<T, String> text(String name) {
+        return new Column<>(name, v -> v, (rs, col) -> rs.getString(col));
+    }
+
+    static <T> Column<T, Boolean> bool(String name) {
+        return new Column<>(name, v -> v, (rs, col) -> rs.getBoolean(col));
+    }
+
+    static <T> Column<T, Timestamp> timestamp(String name) {
+        return new Column<>(name, v -> v, (rs, col) -> rs.getTimestamp(col));
+    }
+
+    // enums stored as their ordinal, the way every DAO writes them
+    static <T, E extends Enum<E>> Column<T, E> ordinal(String name, Class<E> type) {
+        E[] values = type.getEnumConstants();
+        return new Column<>(name, Enum::ordinal, (rs, col) -> values[rs.getInt(col)]);
+    }
+
+    // values stored through a custom int mapping, e.g. Assignment.Type.toInt()
+    static <T, E> Column<T, E> mapped(String name, Function<E, Integer> toInt, IntFunction<E> fromInt) {
+        return new Column<>(name, toInt::apply, (rs, col) -> fromInt.apply(rs.getInt(col)));
+    }
+
+    public String getName() { return name; }
+
+    Object toSql(V value) {
+        return value == null ? null : toSql.apply(value);
+    }
+
+    V read(ResultSet rs) throws SQLException {
+        return reader.read(rs, name);
+    }
+
+    @Override
+    public String toString() { return name; }
+
+    @FunctionalInterface
+    private interface Reader<V> {
+        V read(ResultSet rs, String column) throws SQLException;
+    }
+}
@@ -0,0 +1,389 @@
+package db;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded pool of long-lived connections. Connections are opened and initialised once,
+// then leased out as proxies whose close() hands the physical connection back to the pool.
+// Each physical connection keeps its own cache of prepared statements. While a lease has autocommit
+// off, WriteQueue.afterCommit callbacks are held until it commits and dropped if it rolls back.
+// Leases are reentrant per thread: acquiring again while holding a lease joins it instead of
+// waiting for a second connection, which on the single-writer pool would never come.
+public class ConnectionPool {
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final String url;
+    private final int size;
+    private final List<String> initStatements;
+    private final long acquireTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    private final BlockingQueue<Connection> idle;
+    private final Map<Connection, Lease> leased = new ConcurrentHashMap<>();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final ThreadLocal<LeasedConnection> held = new ThreadLocal<>(); // outermost lease of each thread
+    private final ScheduledExecutorService leakDetector;
+    private volatile boolean closed = false;
+
+    // METRICS
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong totalAcquireNanos = new AtomicLong();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String url, int size, List<String> initStatements, long acquireTimeoutMillis, long leakThresholdMillis) throws SQLException {
+        if (size <= 0) throw new IllegalArgumentException("pool size must be positive");
+
+        this.url = url;
+        this.size = size;
+        this.initStatements = initStatements;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        // pre-initialise every connection so no caller ever pays the setup cost
+        for (int i = 0; i < size; i++) idle.add(openPhysical());
+
+        this.leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-leak-detector");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, leakThresholdMillis / 2);
+        leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // lease a connection, blocking up to the acquire timeout if all are in use
+    public Connection acquire() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed.");
+
+        LeasedConnection outer = held.get();
+        if (outer != null && !outer.returned) return outer.nest(); // this thread already holds one
+
+        long start = System.nanoTime();
+        Connection physical;
+        try {
+            physical = idle.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        if (physical == null) {
+            timeoutCount.incrementAndGet();
+            throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for a database connection (" + leased.size() + " leased).");
+        }
+
+        long elapsed = System.nanoTime() - start;
+        acquireCount.incrementAndGet();
+        totalAcquireNanos.addAndGet(elapsed);
+        maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+
+        try {
+            if (physical.isClosed()) physical = openPhysical(); // replace connections the driver dropped
+        } catch (SQLException e) {
+            idle.offer(physical);
+            throw e;
+        }
+
+        leased.put(physical, new Lease(Thread.currentThread().getName(), System.currentTimeMillis()));
+        LeasedConnection lease = new LeasedConnection(physical);
+        lease.proxy = (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            lease);
+        held.set(lease);
+        return lease.proxy;
+    }
+
+    // whether the calling thread holds a lease of this pool, so acquire() would join it
+    public boolean isHeldByCurrentThread() {
+        LeasedConnection lease = held.get();
+        return lease != null && !lease.returned;
+    }
+
+    // return a physical connection to the pool, undoing any per-lease state
+    private void release(Connection physical) {
+        leased.remove(physical);
+
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback(); // discard anything the borrower did not commit
+                physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Discarding broken pooled connection: " + e.getMessage());
+            closeQuietly(physical);
+            try {
+                physical = openPhysical();
+            } catch (SQLException reopen) {
+                System.err.println("Error replacing pooled connection: " + reopen.getMessage());
+                return;
+            }
+        }
+
+        if (closed || !idle.offer(physical)) closeQuietly(physical);
+    }
+
+    public void close() {
+        closed = true;
+        leakDetector.shutdownNow();
+
+        Connection physical;
+        while ((physical = idle.poll()) != null) closeQuietly(physical);
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : initStatements) stmt.execute(sql);
+        } catch (SQLException e) {
+            closeQuietly(conn);
+            throw e;
+        }
+        statementCaches.put(conn, new StatementCache(conn, STATEMENT_CACHE_SIZE));
+        return conn;
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leased.values()) {
+            long held = now - lease.leasedAt;
+            if (held > leakThresholdMillis && !lease.reported) {
+                lease.reported = true;
+                leakCount.incrementAndGet();
+                System.err.println("Possible connection leak: connection leased by thread '" + lease.threadName + "' has been held for " + held + "ms.");
+            }
+        }
+    }
+
+    private void closeQuietly(Connection conn) {
+        StatementCache cache = statementCaches.remove(conn);
+        if (cache != null) cache.closeAll();
+
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    // GETTERS
+    public int getSize() { return size; }
+    public int getIdleCount() { return idle.size(); }
+    public int getLeasedCount() { return leased.size(); }
+    public long getAcquireCount() { return acquireCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getLeakCount() { return leakCount.get(); }
+    public double getAverageAcquireMicros() {
+        long count = acquireCount.get();
+        return count == 0 ? 0.0 : totalAcquireNanos.get() / 1000.0 / count;
+    }
+    public double getMaxAcquireMicros() { return maxAcquireNanos.get() / 1000.0; }
+    public long getStatementCacheHits() { return statementCaches.values().stream().mapToLong(StatementCache::getHitCount).sum(); }
+    public long getStatementCacheMisses() { return statementCaches.values().stream().mapToLong(StatementCache::getMissCount).sum(); }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[size=%d, idle=%d, leased=%d, acquired=%d, avgAcquire=%.1fus, maxAcquire=%.1fus, timeouts=%d, leaks=%d, stmtHits=%d, stmtMisses=%d]",
+            size, getIdleCount(), getLeasedCount(), getAcquireCount(), getAverageAcquireMicros(), getMaxAcquireMicros(), getTimeoutCount(), getLeakCount(),
+            getStatementCacheHits(), getStatementCacheMisses());
+    }
+
+    private static class Lease {
+        private final String threadName;
+        private final long leasedAt;
+        private volatile boolean reported = false;
+
+        private Lease(String threadName, long leasedAt) {
+            this.threadName = threadName;
+            this.leasedAt = leasedAt;
+        }
+    }
+
+    // Proxy handed to callers: close() returns the connection instead of closing it
+    private class LeasedConnection implements InvocationHandler {
+        private final Connection physical;
+        private Connection proxy;
+        private volatile boolean returned = false;
+        private List<Runnable> commitCallbacks; // of the open manual transaction, null under autocommit
+
+        private LeasedConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        if (held.get() == this) held.remove();
+                        endTransaction(); // release() rolls back whatever was not committed
+                        release(physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) throw new SQLException("Connection has already been returned to the pool.");
+
+            switch (method.getName()) {
+                case "setAutoCommit":
+                    boolean autoCommit = (Boolean) args[0];
+                    physical.setAutoCommit(autoCommit);
+                    if (!autoCommit && commitCallbacks == null) commitCallbacks = WriteQueue.beginTransaction();
+                    if (autoCommit && commitCallbacks != null) {
+                        WriteQueue.transactionCommitted(commitCallbacks); // switching autocommit on commits
+                        endTransaction();
+                    }
+                    return null;
+                case "commit":
+                    physical.commit();
+                    if (commitCallbacks != null) WriteQueue.transactionCommitted(commitCallbacks);
+                    return null;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        physical.rollback();
+                        if (commitCallbacks != null) commitCallbacks.clear();
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) go through the cache
+            if (method.getName().equals("prepareStatement") && args.length <= 2
+                    && (args.length == 1 || method.getParameterTypes()[1] == int.class)) {
+                StatementCache cache = statementCaches.get(physical);
+                if (cache != null) {
+                    int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                    return cache.prepare((String) args[0], autoGeneratedKeys);
+                }
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void endTransaction() {
+            if (commitCallbacks == null) return;
+            WriteQueue.endTransaction(commitCallbacks);
+            commitCallbacks = null;
+        }
+
+        // a lease joining this one: inside a manual transaction it runs in a savepoint of it
+        private Connection nest() throws SQLException {
+            Savepoint savepoint = physical.getAutoCommit() ? null : proxy.setSavepoint();
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new NestedLease(proxy, savepoint));
+        }
+    }
+
+    // Proxy handed to a thread that already holds a lease. Within the holder's manual transaction,
+    // commit/setAutoCommit are left to the holder and rollback only undoes to the savepoint taken when
+    // joining. Under autocommit it behaves like its own lease, and close() ends any transaction it opened.
+    private static class NestedLease implements InvocationHandler {
+        private final Connection outer;
+        private final Savepoint savepoint; // null when joined under autocommit
+        private boolean returned = false;
+        private boolean rolledBack = false;
+
+        private NestedLease(Connection outer, Savepoint savepoint) {
+            this.outer = outer;
+            this.savepoint = savepoint;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        close();
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || outer.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "NestedConnection[" + outer + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) throw new SQLException("Connection has already been returned to the pool.");
+
+            if (savepoint != null) {
+                switch (method.getName()) {
+                    case "commit":
+                    case "setAutoCommit":
+                        return null;
+                    case "rollback":
+                        if (args == null || args.length == 0) {
+                            if (!rolledBack) outer.rollback(savepoint);
+                            rolledBack = true;
+                            return null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            try {
+                return method.invoke(outer, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void close() {
+            try {
+                if (outer.isClosed()) return;
+                if (savepoint != null) {
+                    outer.releaseSavepoint(savepoint);
+                } else if (!outer.getAutoCommit()) {
+                    outer.rollback(); // discard what this lease left uncommitted, as release() would
+                    outer.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error returning nested connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package db;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import model.Assignment;
+import model.Course;
+import model.CourseTemplate;
+
+// Resolves the template and assignments of a batch of courses read together. The first course
+// to touch an association loads it for the whole batch, so N courses cost one query, not N.
+class CourseBatchLoader {
+    private final List<Course> courses;
+    private Map<Integer, List<Assignment>> assignmentsByCourse;
+    private Map<Integer, CourseTemplate> templatesById;
+
+    private CourseBatchLoader(List<Course> courses) {
+        this.courses = courses;
+    }
+
+    // load what the plan asks for now and defer the rest to first access
+    static void attach(List<Course> courses, FetchPlan plan) {
+        if (courses.isEmpty()) return;
+        CourseBatchLoader loader = new CourseBatchLoader(new ArrayList<>(courses));
+
+        for (Course course : courses) {
+            int courseId = course.getId();
+            int templateId = course.getCourseTemplateId();
+
+            if (plan.fetchesAssignments()) course.setAssignments(new ArrayList<>(loader.assignmentsFor(courseId)));
+            else course.setAssignmentsLoader(() -> loader.assignmentsFor(courseId));
+
+            if (plan.fetchesTemplate()) course.setCourseTemplate(loader.templateFor(templateId));
+            else course.setCourseTemplateLoader(() -> loader.templateFor(templateId));
+        }
+    }
+
+    private synchronized List<Assignment> assignmentsFor(int courseId) {
+        if (assignmentsByCourse == null) {
+            Set<Integer> courseIds = new LinkedHashSet<>();
+            for (Course course : courses) courseIds.add(course.getId());
+            assignmentsByCourse = AssignmentDAO.getInstance().readAllForCourses(courseIds);
+        }
+        return assignmentsByCourse.getOrDefault(courseId, Collections.emptyList());
+    }
+
+    private synchronized CourseTemplate templateFor(int templateId) {
+        if (templateId <= 0) return null;
+
+        if (templatesById == null) {
+            Set<Integer> templateIds = new LinkedHashSet<>();
+            for (Course course : courses) {
+                if (course.getCourseTemplateId() > 0) templateIds.add(course.getCourseTemplateId());
+            }
+            templatesById = CourseTemplateDAO.getInstance().readAllByIds(templateIds);
+        }
+        return templatesById.get(templateId);
+    }
+}
@@ -1,28 +1,69 @@
 package db;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import model.Assignment;
 import model.Course;
-import model.CourseTemplate;
 import model.User;
 
-public class CourseDAO implements CrudDAO<Course> {
+public class CourseDAO implements IdDAO<Course> {
     // SINGLETON ACCESS
     private static final CourseDAO instance = new CourseDAO();
 
-    private CourseDAO() {}
+    private CourseDAO() {
+        EntityCache.register(this);
+    }
 
     public static CourseDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria
+    public static final Column<Course, Integer> ID = Column.integer("id");
+    public static final Column<Course, Integer> COURSE_TEMPLATE_ID = Column.integer("course_template_id");
+    public static final Column<Course, String> NAME = Column.text("name");
+    public static final Column<Course, Boolean> ACTIVE = Column.bool("active");
+
+    // DASHBOARD QUERIES, package-private so the query plan test explains exactly what runs
+    static final String TEACHER_COURSES_QUERY = "SELECT id, course_template_id, name, active FROM courses c "
+                                              + "JOIN user_courses uc ON c.id = uc.course_id "
+                                              + "WHERE uc.user_id = ?";
+    static final String STUDENT_COURSES_QUERY = "SELECT c.* FROM courses c "
+                                              + "JOIN user_courses uc ON c.id = uc.course_id "
+                                              + "WHERE uc.user_id = ?";
+    static final String ACTIVE_COURSES_COUNT_QUERY = "SELECT COUNT(*) FROM courses c "
+                                                   + "JOIN user_courses uc ON c.id = uc.course_id "
+                                                   + "WHERE uc.user_id = ? AND c.active = 1";
+    static final String TOTAL_STUDENTS_COUNT_QUERY = "SELECT COUNT(u.id) FROM users u "
+                                                   + "JOIN user_courses uc ON u.id = uc.user_id "
+                                                   + "JOIN courses c ON uc.course_id = c.id "
+                                                   + "JOIN user_courses tc ON c.id = tc.course_id "
+                                                   + "WHERE tc.user_id = ? AND u.role = ?";
+    static final String COURSE_STUDENT_COUNT_QUERY = "SELECT COUNT(*) FROM user_courses uc "
+                                                   + "JOIN users u ON uc.user_id = u.id "
+                                                   + "WHERE uc.course_id = ? AND u.role = ?";
+    static final String COURSE_STUDENTS_QUERY = "SELECT u.* FROM users u "
+                                              + "JOIN user_courses uc ON u.id = uc.user_id "
+                                              + "WHERE uc.course_id = ? AND u.role = ?";
+
+    @Override
+    public String getTableName() { return "courses"; }
+
     // ABSTRACT CRUD OPERATIONS
     @Override
     public void create(Course course) {
+        try (Connection connection = DBConnection.getConnection()) {
+            createRow(connection, course);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int createRow(Connection connection, Course course) throws SQLException {
         String query = "INSERT INTO courses (course_template_id, name, active) VALUES (?, ?, ?)";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
 
             if (course.getCourseTemplateId() == -1) stmt.setNull(1, Types.INTEGER);
             else stmt.setInt(1, course.getCourseTemplateId());
@@ -36,26 +77,41 @@ public class CourseDAO implements CrudDAO<Course> {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     course.setId(generatedKeys.getInt(1));
+                    EntityCache.invalidate(this, course.getId());
+                    ChangeBus.publish(ChangeEvent.Kind.COURSE_CREATED, course.getId(), course.getId());
                 } else {
                     throw new SQLException("Creating course failed, no ID obtained.");
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        return course.getId();
     }
 
     @Override
     public Course read(int id) {
+        return read(id, FetchPlan.LAZY);
+    }
+
+    public Course read(int id, FetchPlan plan) {
+        Course cached = IdentityScope.find(this, id);
+        if (cached != null) return cached; // already loaded in this unit of work, associations load on first use
+
+        cached = EntityCache.get(this, id);
+        if (cached != null) return IdentityScope.remember(this, id, cached); // loaded by an earlier action
+
+        long stamp = EntityCache.stamp(this);
+
         String query = "SELECT * FROM courses WHERE id = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
     
             if (rs.next()) {
-                return buildFromResultSet(rs);
+                Course course = buildFromResultSet(rs);
+                CourseBatchLoader.attach(Collections.singletonList(course), plan);
+                return IdentityScope.remember(this, id, EntityCache.put(this, id, course, stamp));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -65,17 +121,16 @@ public class CourseDAO implements CrudDAO<Course> {
 
     @Override
     public List<Course> readAll() {
+        return readAll(FetchPlan.LAZY);
+    }
+
+    public List<Course> readAll(FetchPlan plan) {
         List<Course> courses = new ArrayList<>();
         String query = "SELECT * FROM courses";
         
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-        
-        try {
-            connection = DBConnection.getConnection();
-            stmt = connection.prepareStatement(query);
-            rs = stmt.executeQuery();
+        try (Connection connection = DBConnection.getReadConnection();
+            PreparedStatement stmt = connection.prepareStatement(query);
+            ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
                 // Store all data from ResultSet locally before processing
@@ -99,40 +154,27 @@ public class CourseDAO implements CrudDAO<Course> {
                 course.setCourseTemplateId(courseTemplateId);
                 course.setActive(active);
                 
-                // Get course template separately
-                if (courseTemplateId > 0) {
-                    CourseTemplateDAO courseTemplateDAO = CourseTemplateDAO.getInstance();
-                    CourseTemplate template = courseTemplateDAO.read(courseTemplateId);
-                    course.setCourseTemplate(template);
-                }
-                
                 // Add course to list
                 courses.add(course);
             }
         } catch (SQLException e) {
             System.err.println("Error reading all courses: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            // Close resources in reverse order
-            try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
-                // Don't close connection as it's a singleton
-            } catch (SQLException e) {
-                System.err.println("Error closing resources: " + e.getMessage());
-            }
         }
 
+        // templates and assignments are loaded for all courses at once, when first needed
+        CourseBatchLoader.attach(courses, plan);
         return courses;
     }
 
 
     @Override
+    @Deprecated
     public List<Course> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM courses WHERE " + columnName.trim() + " = ?";
         List<Course> courses = new ArrayList<>();
         
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
             PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setObject(1, value);
@@ -145,15 +187,24 @@ public class CourseDAO implements CrudDAO<Course> {
             System.err.println("Error reading courses: " + e.getMessage());
         }
         
+        CourseBatchLoader.attach(courses, FetchPlan.LAZY);
         return courses;
     }
 
     @Override
     public void update(Course course) {
+        try (Connection connection = DBConnection.getConnection()) {
+            updateRow(connection, course);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void updateRow(Connection connection, Course course) throws SQLException {
         String query = "UPDATE courses SET course_template_id = ?, name = ?, active = ? WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             if (course.getCourseTemplateId() == -1) stmt.setNull(1, Types.INTEGER);
             else stmt.setInt(1, course.getCourseTemplateId());
@@ -166,17 +217,26 @@ public class CourseDAO implements CrudDAO<Course> {
             if (affectedRows == 0) {
                 throw new SQLException("Updating course failed, no rows affected.");
             }
+            EntityCache.invalidate(this, course.getId());
+            ChangeBus.publish(ChangeEvent.Kind.COURSE_UPDATED, course.getId(), course.getId());
+        }
+    }
+
+    @Override
+    public void delete(int courseId) {       
+        try (Connection connection = DBConnection.getConnection()) {
+            deleteRow(connection, courseId);
+            IdentityScope.forget(this, courseId);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
     @Override
-    public void delete(int courseId) {       
+    public void deleteRow(Connection connection, int courseId) throws SQLException {
         String query = "DELETE FROM courses WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, courseId);
 
@@ -184,8 +244,9 @@ public class CourseDAO implements CrudDAO<Course> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting course failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            EntityCache.invalidate(this, courseId);
+            EntityCache.invalidateAll(AssignmentDAO.getInstance()); // its assignments are deleted by cascade
+            ChangeBus.publish(ChangeEvent.Kind.COURSE_DELETED, courseId, courseId);
         }
     }
 
@@ -196,27 +257,29 @@ public class CourseDAO implements CrudDAO<Course> {
         String name = rs.getString("name");
         boolean active = rs.getBoolean("active");
         
-        // Set course template
-        CourseTemplateDAO courseTemplateDAO = CourseTemplateDAO.getInstance();
-        CourseTemplate template = courseTemplateDAO.read(templateId);
-        
-        // Load assignments for this course
-        AssignmentDAO assignmentDAO = AssignmentDAO.getInstance();
-        List<Assignment> assignments = assignmentDAO.readAllCondition("course_id", id);
-        
-        return new Course(id, templateId, name, active, assignments, template);
+        // template and assignments are attached by the caller through CourseBatchLoader
+        Course course = new Course(id, templateId, name, active, new ArrayList<>(), null);
+        course.setCourseTemplateLoader(() -> templateId > 0 ? CourseTemplateDAO.getInstance().read(templateId) : null);
+        course.setAssignmentsLoader(() -> AssignmentDAO.getInstance().find(Criteria.where(AssignmentDAO.COURSE_ID, id)));
+        return course;
+    }
+    
+    // streamed batches share one lazy loader for their templates and assignments
+    @Override
+    public void completeBatch(Connection connection, List<Course> batch) {
+        CourseBatchLoader.attach(batch, FetchPlan.LAZY);
     }
     
     // DASHBOARD DATA METHODS
     public List<Course> getCoursesForTeacher(int teacherId) {
+        return getCoursesForTeacher(teacherId, FetchPlan.LAZY);
+    }
+
+    public List<Course> getCoursesForTeacher(int teacherId, FetchPlan plan) {
         List<Course> courses = new ArrayList<>();
         
-        String query = "SELECT id, course_template_id, name, active FROM courses c "
-               + "JOIN user_courses uc ON c.id = uc.course_id "
-               + "WHERE uc.user_id = ?";
-
-               try (Connection con = DBConnection.getConnection();
-               PreparedStatement ps = con.prepareStatement(query)) {
+               try (Connection con = DBConnection.getReadConnection();
+               PreparedStatement ps = con.prepareStatement(TEACHER_COURSES_QUERY)) {
       
               ps.setInt(1, teacherId);
               try (ResultSet rs = ps.executeQuery()) {
@@ -232,26 +295,19 @@ public class CourseDAO implements CrudDAO<Course> {
               }
           } catch (SQLException ex) { ex.printStackTrace(); }
       
-          CourseTemplateDAO tplDAO = CourseTemplateDAO.getInstance();
-          AssignmentDAO     asnDAO = AssignmentDAO.getInstance();
-      
-          for (Course c : courses) {
-              if (c.getCourseTemplateId() > 0)
-                  c.setCourseTemplate(tplDAO.read(c.getCourseTemplateId()));
-              c.setAssignments(asnDAO.readAllCondition("course_id", c.getId()));
-          }
+          CourseBatchLoader.attach(courses, plan);
           return courses;
     }
     
     public List<Course> getCoursesForStudent(int studentId) {
+        return getCoursesForStudent(studentId, FetchPlan.LAZY);
+    }
+
+    public List<Course> getCoursesForStudent(int studentId, FetchPlan plan) {
         List<Course> courses = new ArrayList<>();
         
-        String query = "SELECT c.* FROM courses c " +
-                       "JOIN user_courses uc ON c.id = uc.course_id " +
-                       "WHERE uc.user_id = ?";
-
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(STUDENT_COURSES_QUERY)) {
 
             stmt.setInt(1, studentId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -263,16 +319,13 @@ public class CourseDAO implements CrudDAO<Course> {
             System.err.println("Error in getCoursesForStudent: " + e.getMessage());
         }
     
+        CourseBatchLoader.attach(courses, plan);
         return courses;
     }
     
     public int getActiveCoursesCount(int teacherId) {
-        String query = "SELECT COUNT(*) FROM courses c " +
-                       "JOIN user_courses uc ON c.id = uc.course_id " +
-                       "WHERE uc.user_id = ? AND c.active = 1";
-
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(ACTIVE_COURSES_COUNT_QUERY)) {
 
             stmt.setInt(1, teacherId);
             ResultSet rs = stmt.executeQuery();
@@ -288,14 +341,8 @@ public class CourseDAO implements CrudDAO<Course> {
     }
     
     public int getTotalStudentsCount(int teacherId) {
-        String query = "SELECT COUNT(u.id) FROM users u " +
-                       "JOIN user_courses uc ON u.id = uc.user_id " +
-                       "JOIN courses c ON uc.course_id = c.id " +
-                       "JOIN user_courses tc ON c.id = tc.course_id " +
-                       "WHERE tc.user_id = ? AND u.role = ?";
-
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(TOTAL_STUDENTS_COUNT_QUERY)) {
 
             stmt.setInt(1, teacherId);
             stmt.setInt(2, User.Role.STUDENT.ordinal());
@@ -312,12 +359,8 @@ public class CourseDAO implements CrudDAO<Course> {
     }
     
     public int getStudentCountForCourse(int courseId) {
-        String query = "SELECT COUNT(*) FROM user_courses uc " +
-                       "JOIN users u ON uc.user_id = u.id " +
-                       "WHERE uc.course_id = ? AND u.role = ?";
-
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(COURSE_STUDENT_COUNT_QUERY)) {
 
             stmt.setInt(1, courseId);
             stmt.setInt(2, User.Role.STUDENT.ordinal());
@@ -336,12 +379,8 @@ public class CourseDAO implements CrudDAO<Course> {
     public List<User> getStudentsInCourse(int courseId) {
         List<User> students = new ArrayList<>();
         
-        String query = "SELECT u.* FROM users u " +
-                       "JOIN user_courses uc ON u.id = uc.user_id " +
-                       "WHERE uc.course_id = ? AND u.role = ?";
-    
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(COURSE_STUDENTS_QUERY)) {
     
             stmt.setInt(1, courseId);
             stmt.setInt(2, User.Role.STUDENT.ordinal());
@@ -349,12 +388,8 @@ public class CourseDAO implements CrudDAO<Course> {
     
             UserDAO userDAO = UserDAO.getInstance();
             while (rs.next()) {
-                // Get the user ID and use UserDAO's read method instead
-                int userId = rs.getInt("id");
-                User user = userDAO.read(userId);
-                if (user != null) {
-                    students.add(user);
-                }
+                // the row already holds every user column, no need to read each user again
+                students.add(userDAO.buildFromResultSet(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -392,6 +427,8 @@ public class CourseDAO implements CrudDAO<Course> {
             
             // Add assignment to course's list
             course.addAssignment(assignment);
+            EntityCache.invalidate(this, course.getId());
+            ChangeBus.publish(ChangeEvent.Kind.ASSIGNMENT_CREATED, assignment.getId(), course.getId());
             
         } catch (SQLException e) {
             e.printStackTrace();
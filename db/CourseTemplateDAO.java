@@ -1,66 +1,40 @@
 package db;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import model.AssignmentTemplate;
 import model.CourseTemplate;
 
-public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
+public class CourseTemplateDAO implements IdDAO<CourseTemplate> {
     // SINGLETON ACCESS
     private static final CourseTemplateDAO instance = new CourseTemplateDAO();
 
-    private CourseTemplateDAO() {}
+    private CourseTemplateDAO() {
+        EntityCache.register(this);
+    }
 
     public static CourseTemplateDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria
+    public static final Column<CourseTemplate, Integer> ID = Column.integer("id");
+    public static final Column<CourseTemplate, String> NAME = Column.text("name");
+
+    @Override
+    public String getTableName() { return "course_templates"; }
+
     // ABSTRACT CRUD OPERATION IMPLEMENTATIONS
     @Override
     public void create(CourseTemplate template) {
-        String courseTemplateQuery = "INSERT INTO course_templates (name) VALUES (?)";
-        String assignmentTemplatesQuery = "INSERT INTO assignment_templates (course_template_id, weight, type, submission_types) VALUES (?, ?, ?, ?)";
-
         try (Connection connection = DBConnection.getConnection()) {
             connection.setAutoCommit(false); // BEGIN TRANSACTION
 
-            try (PreparedStatement stmt = connection.prepareStatement(courseTemplateQuery, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setString(1, template.getName());
-
-                int affectedRows = stmt.executeUpdate();
-                if (affectedRows == 0) throw new SQLException("Creating course template failed, no rows affected.");
-
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int templateId = generatedKeys.getInt(1);
-                        template.setId(templateId);
-
-                        // now insert all assignment templates
-                        try (PreparedStatement assignTempStmt = connection.prepareStatement(assignmentTemplatesQuery, Statement.RETURN_GENERATED_KEYS)) {
-                            for (AssignmentTemplate assignTemp : template.getAssignmentTemplates()) {
-                                assignTempStmt.setInt(1, templateId);
-                                assignTempStmt.setDouble(2, assignTemp.getWeight());
-                                assignTempStmt.setInt(3, assignTemp.getType().ordinal());
-                                assignTempStmt.setString(4, assignTemp.getSubmissionTypes().stream().collect(Collectors.joining(","))); // csv of file extensions
-                                assignTempStmt.addBatch();
-                            }
-                            assignTempStmt.executeBatch();
-
-                            // populate each assignmentTemplate with its generated ID
-                            try (ResultSet assignKeys = assignTempStmt.getGeneratedKeys()) {
-                                int index = 0;
-                                while (assignKeys.next() && index < template.getAssignmentTemplates().size()) {
-                                    int assignId = assignKeys.getInt(1);
-                                    template.getAssignmentTemplates().get(index).setId(assignId);
-                                    index++;
-                                }
-                            }
-                        }
-                    } else {
-                        throw new SQLException("Creating submission failed, no ID obtained.");
-                    }
-                }
-
+            try {
+                createRow(connection, template);
                 connection.commit(); // COMMIT if everything succeeds
             } catch (SQLException e) {
                 connection.rollback(); // ROLLBACK on any error
@@ -71,16 +45,76 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
         }
     }
 
+    @Override
+    public int createRow(Connection connection, CourseTemplate template) throws SQLException {
+        String courseTemplateQuery = "INSERT INTO course_templates (name) VALUES (?)";
+        String assignmentTemplatesQuery = "INSERT INTO assignment_templates (course_template_id, weight, type, submission_types) VALUES (?, ?, ?, ?)";
+
+        try (PreparedStatement stmt = connection.prepareStatement(courseTemplateQuery, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, template.getName());
+
+            int affectedRows = stmt.executeUpdate();
+            if (affectedRows == 0) throw new SQLException("Creating course template failed, no rows affected.");
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    int templateId = generatedKeys.getInt(1);
+                    template.setId(templateId);
+                    evict(templateId);
+                    ChangeBus.publish(ChangeEvent.Kind.TEMPLATE_CHANGED, templateId, -1);
+
+                    // now insert all assignment templates
+                    try (PreparedStatement assignTempStmt = connection.prepareStatement(assignmentTemplatesQuery, Statement.RETURN_GENERATED_KEYS)) {
+                        for (AssignmentTemplate assignTemp : template.getAssignmentTemplates()) {
+                            assignTempStmt.setInt(1, templateId);
+                            assignTempStmt.setDouble(2, assignTemp.getWeight());
+                            assignTempStmt.setInt(3, assignTemp.getType().ordinal());
+                            assignTempStmt.setString(4, assignTemp.getSubmissionTypes().stream().collect(Collectors.joining(","))); // csv of file extensions
+                            assignTempStmt.addBatch();
+                        }
+                        assignTempStmt.executeBatch();
+
+                        // populate each assignmentTemplate with its generated ID
+                        try (ResultSet assignKeys = assignTempStmt.getGeneratedKeys()) {
+                            int index = 0;
+                            while (assignKeys.next() && index < template.getAssignmentTemplates().size()) {
+                                int assignId = assignKeys.getInt(1);
+                                template.getAssignmentTemplates().get(index).setId(assignId);
+                                index++;
+                            }
+                        }
+                    }
+                } else {
+                    throw new SQLException("Creating submission failed, no ID obtained.");
+                }
+            }
+        }
+        return template.getId();
+    }
+
     @Override
     public CourseTemplate read(int id) {
+        CourseTemplate cached = IdentityScope.find(this, id);
+        if (cached != null) return cached; // already loaded in this unit of work
+
+        cached = EntityCache.get(this, id);
+        if (cached != null) return IdentityScope.remember(this, id, cached); // loaded by an earlier action
+
+        long stamp = EntityCache.stamp(this);
+
         String query = "SELECT * FROM course_templates WHERE id = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-    
-            if (rs.next()) return buildFromResultSet(rs);
+            List<CourseTemplate> templates = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) templates.add(buildFromResultSet(rs));
+            }
+            if (templates.isEmpty()) return null;
+
+            completeBatch(connection, templates);
+            return IdentityScope.remember(this, id, EntityCache.put(this, id, templates.get(0), stamp));
         } catch (SQLException e) {
             System.err.println("Error reading course template: " + e.getMessage());
         }
@@ -88,16 +122,18 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
     }
 
     @Override
+    @Deprecated
     public List<CourseTemplate> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM course_templates WHERE " + columnName.trim() + " = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setObject(1, value);
-            ResultSet rs = stmt.executeQuery();
             List<CourseTemplate> templates = new ArrayList<>();
-    
-            while (rs.next()) templates.add(buildFromResultSet(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) templates.add(buildFromResultSet(rs));
+            }
+            completeBatch(connection, templates);
             return templates;
         } catch (SQLException e) {
             System.err.println("Error reading course template: " + e.getMessage());
@@ -105,16 +141,45 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
         return null;
     }
     
+    // templates by id with their assignment templates, two queries per MAX_IN_PARAMS templates
+    public Map<Integer, CourseTemplate> readAllByIds(Collection<Integer> templateIds) {
+        Map<Integer, CourseTemplate> templatesById = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(templateIds);
+
+        try (Connection connection = DBConnection.getReadConnection()) {
+            for (int from = 0; from < ids.size(); from += DBConnection.MAX_IN_PARAMS) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + DBConnection.MAX_IN_PARAMS));
+                List<CourseTemplate> templates = new ArrayList<>();
+
+                try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM course_templates WHERE id IN (" + DBConnection.placeholders(chunk.size()) + ")")) {
+                    for (int i = 0; i < chunk.size(); i++) stmt.setInt(i + 1, chunk.get(i));
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) templates.add(buildFromResultSet(rs));
+                    }
+                }
+                completeBatch(connection, templates);
+                for (CourseTemplate template : templates) templatesById.put(template.getId(), template);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading course templates: " + e.getMessage());
+        }
+
+        return templatesById;
+    }
+    
     @Override
     public List<CourseTemplate> readAll() {
         List<CourseTemplate> templates = new ArrayList<>();
         String query = "SELECT * FROM course_templates";
 
-        try (Connection connection = DBConnection.getConnection();
-            PreparedStatement stmt = connection.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery()) {
+        try (Connection connection = DBConnection.getReadConnection();
+            PreparedStatement stmt = connection.prepareStatement(query)) {
 
-            while (rs.next()) templates.add(buildFromResultSet(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) templates.add(buildFromResultSet(rs));
+            }
+            completeBatch(connection, templates);
         } catch (SQLException e) {
             System.err.println("Error reading all course templates: " + e.getMessage());
         }
@@ -124,49 +189,11 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
     
     @Override
     public void update(CourseTemplate template) {
-        String updateCourseTemplatesQuery = "UPDATE course_templates SET name = ? WHERE id = ?";
-        String deleteAssignmentTemplatesQuery = "DELETE FROM assignment_templates WHERE course_template_id = ?";
-        String addAssignmentTemplatesQuery = "INSERT INTO assignment_templates (course_template_id, weight, type, submission_types) VALUES (?, ?, ?, ?)";
-
         try (Connection connection = DBConnection.getConnection()) {
             connection.setAutoCommit(false); // start transaction
 
             try {
-                // update course template record
-                try (PreparedStatement stmt = connection.prepareStatement(updateCourseTemplatesQuery)) {
-                    stmt.setString(1, template.getName());
-                    stmt.setInt(2, template.getId());
-                    stmt.executeUpdate();
-                }
-
-                // delete old assignment templates
-                try (PreparedStatement stmt = connection.prepareStatement(deleteAssignmentTemplatesQuery)) {
-                    stmt.setInt(1, template.getId());
-                    stmt.executeUpdate();
-                }
-
-                // insert new assignment templates
-                try (PreparedStatement stmt = connection.prepareStatement(addAssignmentTemplatesQuery, Statement.RETURN_GENERATED_KEYS)) {
-                    for (AssignmentTemplate assignTemp : template.getAssignmentTemplates()) {
-                        stmt.setInt(1, assignTemp.getCourseTemplateId());
-                        stmt.setDouble(2, assignTemp.getWeight());
-                        stmt.setInt(3, assignTemp.getType().ordinal());
-                        stmt.setString(4, assignTemp.getSubmissionTypes().stream().collect(Collectors.joining(","))); // csv of file extensions
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-
-                    // populate each assignmentTemplate with its generated ID
-                    try (ResultSet assignKeys = stmt.getGeneratedKeys()) {
-                        int index = 0;
-                        while (assignKeys.next() && index < template.getAssignmentTemplates().size()) {
-                            int assignId = assignKeys.getInt(1);
-                            template.getAssignmentTemplates().get(index).setId(assignId);
-                            index++;
-                        }
-                    }
-                }
-
+                updateRow(connection, template);
                 connection.commit(); // commit transaction
             } catch (SQLException e) {
                 connection.rollback(); // rollback on any half deleted states
@@ -176,13 +203,66 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
             System.err.println("Error updating submission: " + e.getMessage());
         }
     }
+
+    @Override
+    public void updateRow(Connection connection, CourseTemplate template) throws SQLException {
+        String updateCourseTemplatesQuery = "UPDATE course_templates SET name = ? WHERE id = ?";
+        String deleteAssignmentTemplatesQuery = "DELETE FROM assignment_templates WHERE course_template_id = ?";
+        String addAssignmentTemplatesQuery = "INSERT INTO assignment_templates (course_template_id, weight, type, submission_types) VALUES (?, ?, ?, ?)";
+
+        // update course template record
+        try (PreparedStatement stmt = connection.prepareStatement(updateCourseTemplatesQuery)) {
+            stmt.setString(1, template.getName());
+            stmt.setInt(2, template.getId());
+            stmt.executeUpdate();
+        }
+
+        // delete old assignment templates
+        try (PreparedStatement stmt = connection.prepareStatement(deleteAssignmentTemplatesQuery)) {
+            stmt.setInt(1, template.getId());
+            stmt.executeUpdate();
+        }
+
+        // insert new assignment templates
+        try (PreparedStatement stmt = connection.prepareStatement(addAssignmentTemplatesQuery, Statement.RETURN_GENERATED_KEYS)) {
+            for (AssignmentTemplate assignTemp : template.getAssignmentTemplates()) {
+                stmt.setInt(1, assignTemp.getCourseTemplateId());
+                stmt.setDouble(2, assignTemp.getWeight());
+                stmt.setInt(3, assignTemp.getType().ordinal());
+                stmt.setString(4, assignTemp.getSubmissionTypes().stream().collect(Collectors.joining(","))); // csv of file extensions
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            // populate each assignmentTemplate with its generated ID
+            try (ResultSet assignKeys = stmt.getGeneratedKeys()) {
+                int index = 0;
+                while (assignKeys.next() && index < template.getAssignmentTemplates().size()) {
+                    int assignId = assignKeys.getInt(1);
+                    template.getAssignmentTemplates().get(index).setId(assignId);
+                    index++;
+                }
+            }
+        }
+        evict(template.getId());
+        ChangeBus.publish(ChangeEvent.Kind.TEMPLATE_CHANGED, template.getId(), -1);
+    }
     
     @Override
     public void delete(int id) {
+        try (Connection connection = DBConnection.getConnection()) {
+            deleteRow(connection, id);
+            IdentityScope.forget(this, id);
+        } catch (SQLException e) {
+            System.err.println("Error deleting course template: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteRow(Connection connection, int id) throws SQLException {
         String query = "DELETE FROM course_templates WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, id);
 
@@ -190,9 +270,16 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting course template failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting course template: " + e.getMessage());
         }
+        evict(id);
+        ChangeBus.publish(ChangeEvent.Kind.TEMPLATE_CHANGED, id, -1);
+    }
+
+    // a template write replaces its assignment templates and changes the template courses hold
+    private void evict(int id) {
+        EntityCache.invalidate(this, id);
+        EntityCache.invalidateAll(AssignmentTemplateDAO.getInstance());
+        EntityCache.invalidateAll(CourseDAO.getInstance());
     }
     
     @Override
@@ -200,7 +287,35 @@ public class CourseTemplateDAO implements CrudDAO<CourseTemplate> {
         int id = rs.getInt("id");
         String name = rs.getString("name");
 
-        AssignmentTemplateDAO templateDAO = AssignmentTemplateDAO.getInstance();
-        return new CourseTemplate(id, name, templateDAO.readAllCondition("course_template_id", id));
+        // assignment templates are filled in for the whole batch by completeBatch, on the same connection
+        return new CourseTemplate(id, name, new ArrayList<>());
+    }
+
+    // assignment templates of the batch, one IN query per MAX_IN_PARAMS templates once their rows are read
+    @Override
+    public void completeBatch(Connection connection, List<CourseTemplate> batch) throws SQLException {
+        AssignmentTemplateDAO assignmentTemplateDAO = AssignmentTemplateDAO.getInstance();
+        for (int from = 0; from < batch.size(); from += DBConnection.MAX_IN_PARAMS) {
+            List<CourseTemplate> chunk = batch.subList(from, Math.min(batch.size(), from + DBConnection.MAX_IN_PARAMS));
+            Map<Integer, CourseTemplate> templatesById = new HashMap<>();
+            for (CourseTemplate template : chunk) templatesById.put(template.getId(), template);
+
+            try (PreparedStatement stmt = connection.prepareStatement(batchAssignmentTemplatesQuery(chunk.size()))) {
+                for (int i = 0; i < chunk.size(); i++) stmt.setInt(i + 1, chunk.get(i).getId());
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        AssignmentTemplate assignmentTemplate = assignmentTemplateDAO.buildFromResultSet(rs);
+                        CourseTemplate template = templatesById.get(assignmentTemplate.getCourseTemplateId());
+                        if (template != null) template.getAssignmentTemplates().add(assignmentTemplate);
+                    }
+                }
+            }
+        }
+    }
+
+    static String batchAssignmentTemplatesQuery(int templateCount) {
+        return "SELECT * FROM assignment_templates WHERE course_template_id IN (" + DBConnection.placeholders(templateCount) + ") "
+             + "ORDER BY course_template_id, id";
     }
 }
@@ -0,0 +1,201 @@
+package db;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Typed filter over one DAO's table, compiled to a parameterized SELECT. Predicates are ANDed, e.g.
+// Criteria.<Submission>where().in(SubmissionDAO.ASSIGNMENT_ID, ids).eq(SubmissionDAO.STATUS, Submission.Status.GRADED)
+//         .orderByDesc(SubmissionDAO.SUBMITTED_AT).limit(10)
+// Column names come from the DAO's Column constants, never from callers, and every value is bound.
+public final class Criteria<T> {
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> params = new ArrayList<>();
+    private final List<String> ordering = new ArrayList<>();
+    private int limit = -1;
+
+    private Criteria() {}
+
+    public static <T> Criteria<T> where() { return new Criteria<>(); }
+    public static <T, V> Criteria<T> where(Column<T, V> column, V value) { return new Criteria<T>().eq(column, value); }
+
+    // PREDICATES
+    public <V> Criteria<T> eq(Column<T, V> column, V value) {
+        if (value == null) return isNull(column);
+        return condition(column.getName() + " = ?", column.toSql(value));
+    }
+
+    public <V> Criteria<T> ne(Column<T, V> column, V value) {
+        if (value == null) return condition(column.getName() + " IS NOT NULL");
+        return condition(column.getName() + " <> ?", column.toSql(value));
+    }
+
+    public <V> Criteria<T> isNull(Column<T, V> column) {
+        return condition(column.getName() + " IS NULL");
+    }
+
+    // an empty list matches nothing; callers with very large id sets should chunk by MAX_IN_PARAMS
+    public <V> Criteria<T> in(Column<T, V> column, Collection<? extends V> values) {
+        if (values.isEmpty()) return condition("0 = 1");
+
+        List<Object> bound = new ArrayList<>();
+        for (V value : values) bound.add(column.toSql(value));
+        return condition(column.getName() + " IN (" + DBConnection.placeholders(bound.size()) + ")", bound.toArray());
+    }
+
+    public <V extends Comparable<? super V>> Criteria<T> gt(Column<T, V> column, V value) { return compare(column, " > ", value); }
+    public <V extends Comparable<? super V>> Criteria<T> ge(Column<T, V> column, V value) { return compare(column, " >= ", value); }
+    public <V extends Comparable<? super V>> Criteria<T> lt(Column<T, V> column, V value) { return compare(column, " < ", value); }
+    public <V extends Comparable<? super V>> Criteria<T> le(Column<T, V> column, V value) { return compare(column, " <= ", value); }
+
+    // inclusive range, a null bound leaves that side open
+    public <V extends Comparable<? super V>> Criteria<T> between(Column<T, V> column, V from, V to) {
+        if (from != null) ge(column, from);
+        if (to != null) le(column, to);
+        return this;
+    }
+
+    // AND in every predicate of another criteria, e.g. a DAO-specific one like SubmissionDAO.hasCollaborator
+    public Criteria<T> and(Criteria<T> other) {
+        conditions.addAll(other.conditions);
+        params.addAll(other.params);
+        return this;
+    }
+
+    // ORDERING AND LIMITS
+    public Criteria<T> orderBy(Column<T, ?> column) {
+        ordering.add(column.getName());
+        return this;
+    }
+
+    public Criteria<T> orderByDesc(Column<T, ?> column) {
+        ordering.add(column.getName() + " DESC");
+        return this;
+    }
+
+    public Criteria<T> limit(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        this.limit = limit;
+        return this;
+    }
+
+    // raw predicate for DAOs that need a subquery, sql must not contain caller-supplied text
+    Criteria<T> condition(String sql, Object... values) {
+        conditions.add(sql);
+        Collections.addAll(params, values);
+        return this;
+    }
+
+    private <V> Criteria<T> compare(Column<T, V> column, String operator, V value) {
+        return condition(column.getName() + operator + "?", column.toSql(value));
+    }
+
+    // EXECUTION, called through the CrudDAO find/count/project defaults
+    List<T> fetch(CrudDAO<T> dao) {
+        List<T> rows = new ArrayList<>();
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = prepare(connection, "*", dao)) {
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) rows.add(dao.buildFromResultSet(rs));
+            }
+            dao.completeBatch(connection, rows);
+        } catch (SQLException e) {
+            System.err.println("Error reading " + dao.getTableName() + " by criteria: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    int count(CrudDAO<T> dao) {
+        String query = "SELECT COUNT(*) FROM (" + toSql("1", dao) + ")";
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+
+            bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error counting " + dao.getTableName() + " by criteria: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    // rows fetchSize at a time on a cursor, see CrudDAO.stream
+    Stream<T> stream(CrudDAO<T> dao, int fetchSize) {
+        return RowCursor.stream(dao, toSql("*", dao), fetchSize, params.toArray());
+    }
+
+    // read only the given columns, one array per row in column order
+    List<Object[]> project(CrudDAO<T> dao, List<Column<T, ?>> columns) {
+        if (columns.isEmpty()) throw new IllegalArgumentException("at least one column must be projected");
+
+        List<String> names = new ArrayList<>();
+        for (Column<T, ?> column : columns) names.add(column.getName());
+
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = prepare(connection, String.join(", ", names), dao)) {
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = new Object[columns.size()];
+                    for (int i = 0; i < row.length; i++) row[i] = columns.get(i).read(rs);
+                    rows.add(row);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error projecting " + dao.getTableName() + " by criteria: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    <V> List<V> values(CrudDAO<T> dao, Column<T, V> column) {
+        List<V> values = new ArrayList<>();
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = prepare(connection, column.getName(), dao)) {
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) values.add(column.read(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error projecting " + dao.getTableName() + " by criteria: " + e.getMessage());
+        }
+        return values;
+    }
+
+    private PreparedStatement prepare(Connection connection, String selectList, CrudDAO<T> dao) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(toSql(selectList, dao));
+        try {
+            bind(stmt);
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
+
+    String toSql(String selectList, CrudDAO<T> dao) {
+        return "SELECT " + selectList + " FROM " + dao.getTableName()
+             + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+             + (ordering.isEmpty() ? "" : " ORDER BY " + String.join(", ", ordering))
+             + (limit > 0 ? " LIMIT " + limit : "");
+    }
+
+    void bind(PreparedStatement stmt) throws SQLException {
+        for (int i = 0; i < params.size(); i++) stmt.setObject(i + 1, params.get(i));
+    }
+
+    @Override
+    public String toString() {
+        return "Criteria[where=" + conditions + ", params=" + params + ", order=" + ordering + ", limit=" + limit + "]";
+    }
+}
@@ -1,14 +1,72 @@
 package db;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface CrudDAO<T> {
+    int DEFAULT_FETCH_SIZE = 500;
+
     void create(T t);
     T read(int id); // read one row with given id
+    @Deprecated // concatenates the column name into SQL, use find(Criteria) with the DAO's Column constants
     List<T> readAllCondition(String columnName, Object value); // get all rows following given constraint
     List<T> readAll(); // get every single row in table
     void update(T t);
     void delete(int id);
     T buildFromResultSet(ResultSet rs) throws SQLException;
+    String getTableName();
+
+    // typed criteria queries, filtering, ordering and limits all run in SQLite
+    default List<T> find(Criteria<T> criteria) { return criteria.fetch(this); }
+    default int count(Criteria<T> criteria) { return criteria.count(this); }
+    default <V> List<V> findValues(Criteria<T> criteria, Column<T, V> column) { return criteria.values(this, column); }
+    default List<Object[]> findColumns(Criteria<T> criteria, List<Column<T, ?>> columns) { return criteria.project(this, columns); }
+
+    // single-row statements on the caller's connection, throwing so batches can report each failing row
+    int createRow(Connection connection, T t) throws SQLException; // returns the generated id
+    void updateRow(Connection connection, T t) throws SQLException;
+
+    // bulk writes in one transaction, reusing each cached prepared statement for every row
+    default BatchResult<T> createAll(List<T> items) { return BatchResult.execute(items, this::createRow); }
+    default BatchResult<T> updateAll(List<T> items) { return BatchResult.execute(items, (connection, t) -> { updateRow(connection, t); return -1; }); }
+
+    // streaming reads, rows are built fetchSize at a time and the stream must be closed (try-with-resources)
+    default Stream<T> streamAll() { return streamAll(DEFAULT_FETCH_SIZE); }
+    default Stream<T> streamAll(int fetchSize) { return RowCursor.stream(this, "SELECT * FROM " + getTableName(), fetchSize); }
+    default Stream<T> stream(Criteria<T> criteria) { return stream(criteria, DEFAULT_FETCH_SIZE); }
+    default Stream<T> stream(Criteria<T> criteria, int fetchSize) { return criteria.stream(this, fetchSize); }
+    @Deprecated // concatenates the column name into SQL, use stream(Criteria) with the DAO's Column constants
+    default Stream<T> streamAllCondition(String columnName, Object value) { return streamAllCondition(columnName, value, DEFAULT_FETCH_SIZE); }
+    @Deprecated
+    default Stream<T> streamAllCondition(String columnName, Object value, int fetchSize) {
+        return RowCursor.stream(this, "SELECT * FROM " + getTableName() + " WHERE " + columnName.trim() + " = ?", fetchSize, value);
+    }
+
+    // callback form of streamAll that always releases the cursor
+    default void forEachRow(int fetchSize, Consumer<? super T> action) {
+        try (Stream<T> rows = streamAll(fetchSize)) {
+            rows.forEach(action);
+        }
+    }
+
+    // called by the cursor for each batch of streamed rows, on the cursor's connection
+    default void completeBatch(Connection connection, List<T> batch) throws SQLException {}
+
+    // reads on the DB reader executor, so independent queries run in parallel and compose as futures
+    default CompletableFuture<T> readAsync(int id) { return DBConnection.submitRead(() -> read(id)); }
+    default CompletableFuture<List<T>> readAllAsync() { return DBConnection.submitRead(this::readAll); }
+    default CompletableFuture<List<T>> findAsync(Criteria<T> criteria) { return DBConnection.submitRead(() -> find(criteria)); }
+    default CompletableFuture<Integer> countAsync(Criteria<T> criteria) { return DBConnection.submitRead(() -> count(criteria)); }
+    default <V> CompletableFuture<List<V>> findValuesAsync(Criteria<T> criteria, Column<T, V> column) {
+        return DBConnection.submitRead(() -> findValues(criteria, column));
+    }
+
+    // queued writes, group committed with other writes by the DB writer queue
+    default CompletableFuture<Void> createAsync(T t) { return DBConnection.submitWrite(connection -> { create(t); return null; }); }
+    default CompletableFuture<Void> updateAsync(T t) { return DBConnection.submitWrite(connection -> { update(t); return null; }); }
+    default CompletableFuture<Void> deleteAsync(int id) { return DBConnection.submitWrite(connection -> { delete(id); return null; }); }
 }
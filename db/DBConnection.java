@@ -1,17 +1,136 @@
 package db;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class DBConnection {
-    private static final String DATABASE_URL = "jdbc:sqlite:./data/database.db";
+    private static final String DATABASE_URL = System.getProperty("db.url", "jdbc:sqlite:./data/database.db"); // tests point it at a scratch file
+    private static final int WRITER_POOL_SIZE = 1; // SQLite allows a single writer at a time
+    private static final long ACQUIRE_TIMEOUT_MILLIS = 10_000;
+    private static final long LEAK_THRESHOLD_MILLIS = 30_000;
+    public static final int MAX_IN_PARAMS = 500; // well under SQLite's bound parameter limit
 
-    // Singleton connection to the DB
+    private static StorageProfile profile = StorageProfile.fromEnv();
+    private static ConnectionPool writePool;
+    private static ConnectionPool readPool;
+    private static WriteQueue writeQueue;
+    private static ExecutorService readExecutor;
+    private static final AtomicInteger readerThreads = new AtomicInteger();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DBConnection::shutdown, "db-pool-shutdown"));
+    }
+
+    // Singleton pools of connections to the DB
     private DBConnection() {}
 
+    // lease the writer connection, closing it returns it to the pool. A thread already holding it
+    // joins its lease (and open transaction) rather than waiting on the single writer.
     public static Connection getConnection() throws SQLException {
-        Connection conn = DriverManager.getConnection(DATABASE_URL);
-        conn.createStatement().execute("PRAGMA foreign_keys = ON;");
-        return conn;
-    }    
-}
\ No newline at end of file
+        Connection group = WriteQueue.currentGroupConnection();
+        if (group != null) return group; // inside a queued write, join its transaction
+
+        return getWritePool().acquire();
+    }
+
+    // lease a read-only connection, these run concurrently with the writer under WAL
+    public static Connection getReadConnection() throws SQLException {
+        Connection group = WriteQueue.currentGroupConnection();
+        if (group != null) return group; // queued writes read their own uncommitted rows
+
+        return getReadPool().acquire();
+    }
+
+    // run a write through the writer queue, the future completes once it has been committed
+    public static <T> CompletableFuture<T> submitWrite(SqlWork<T> work) {
+        try {
+            return getWriteQueue().submit(work);
+        } catch (SQLException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    // run a read on the reader executor, which has one thread per reader connection so queued reads
+    // wait for a thread instead of a connection. Compose the futures, joining one inside a read can deadlock.
+    public static <T> CompletableFuture<T> submitRead(Supplier<T> read) {
+        return CompletableFuture.supplyAsync(read, getReadExecutor());
+    }
+
+    // pools are created lazily so a pending backup restore can replace the DB file first
+    public static synchronized ConnectionPool getWritePool() throws SQLException {
+        if (writePool == null) {
+            writePool = new ConnectionPool(DATABASE_URL, WRITER_POOL_SIZE, profile.getWriterPragmas(), ACQUIRE_TIMEOUT_MILLIS, LEAK_THRESHOLD_MILLIS);
+        }
+        return writePool;
+    }
+
+    public static synchronized ConnectionPool getReadPool() throws SQLException {
+        if (readPool == null) {
+            getWritePool(); // writer sets the journal mode before any reader opens the file
+            readPool = new ConnectionPool(DATABASE_URL, profile.getReaderPoolSize(), profile.getReaderPragmas(), ACQUIRE_TIMEOUT_MILLIS, LEAK_THRESHOLD_MILLIS);
+        }
+        return readPool;
+    }
+
+    static synchronized ExecutorService getReadExecutor() {
+        if (readExecutor == null) {
+            readExecutor = Executors.newFixedThreadPool(profile.getReaderPoolSize(), runnable -> {
+                Thread thread = new Thread(runnable, "db-reader-" + readerThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return readExecutor;
+    }
+
+    public static synchronized WriteQueue getWriteQueue() throws SQLException {
+        if (writeQueue == null) {
+            writeQueue = new WriteQueue(getWritePool(), profile.isWriteBehind(), profile.getGroupCommitWindowMillis());
+        }
+        return writeQueue;
+    }
+
+    // "?, ?, ?" for an IN list of count values
+    public static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    public static StorageProfile getProfile() { return profile; }
+
+    // swap the storage profile, pools are reopened with it on next use
+    public static synchronized void setProfile(StorageProfile newProfile) {
+        shutdown();
+        profile = newProfile;
+    }
+
+    // fold the WAL back into the main DB file so it can be copied on its own
+    public static void checkpoint() {
+        if (!profile.isWal()) return;
+
+        try (Connection connection = getConnection();
+            Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE);");
+        } catch (SQLException e) {
+            System.err.println("Error checkpointing database: " + e.getMessage());
+        }
+    }
+
+    public static synchronized void shutdown() {
+        if (writeQueue != null) writeQueue.shutdown(); // flush queued writes before the pools close
+        if (readExecutor != null) readExecutor.shutdown(); // queued reads still run, on pools reopened if needed
+        if (readPool != null) readPool.close();
+        if (writePool != null) writePool.close();
+        writeQueue = null;
+        readExecutor = null;
+        readPool = null;
+        writePool = null;
+    }
+}
@@ -91,6 +91,9 @@ public class DBSetup {
         } catch (SQLException e) {
             System.err.println("Error creating all tables: " + e.getMessage());
         }
+
+        // bring older databases up to the current schema (indexes etc.)
+        SchemaMigrations.migrate();
     }
 
     public static void checkForPendingRestore() {
@@ -104,6 +107,10 @@ public class DBSetup {
                     dbFile.toPath(),
                     java.nio.file.StandardCopyOption.REPLACE_EXISTING
                 );
+
+                // a WAL left behind by the replaced DB must not be replayed onto the restored one
+                new File("./data/database.db-wal").delete();
+                new File("./data/database.db-shm").delete();
                 System.out.println("Database restored from pending backup.");
             } catch (IOException e) {
                 System.err.println("Failed to restore pending backup: " + e.getMessage());
@@ -0,0 +1,48 @@
+package db;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.User;
+import model.UserCourse;
+
+// Filter over user_courses used by the UserCourseDAO enrollment queries. Unset fields match
+// everything, e.g. EnrollmentQuery.forCourse(id).role(User.Role.STUDENT).status(UserCourse.Status.ACTIVE)
+public class EnrollmentQuery {
+    private Integer courseId;
+    private Integer userId;
+    private User.Role role;
+    private UserCourse.Status status;
+
+    public static EnrollmentQuery forCourse(int courseId) { return new EnrollmentQuery().course(courseId); }
+    public static EnrollmentQuery forUser(int userId) { return new EnrollmentQuery().user(userId); }
+
+    public EnrollmentQuery course(int courseId) { this.courseId = courseId; return this; }
+    public EnrollmentQuery user(int userId) { this.userId = userId; return this; }
+    public EnrollmentQuery role(User.Role role) { this.role = role; return this; }
+    public EnrollmentQuery status(UserCourse.Status status) { this.status = status; return this; }
+
+    // WHERE clause over the "uc" alias, values are bound separately by bind()
+    String whereClause() {
+        List<String> conditions = new ArrayList<>();
+        if (courseId != null) conditions.add("uc.course_id = ?");
+        if (userId != null) conditions.add("uc.user_id = ?");
+        if (role != null) conditions.add("uc.role = ?");
+        if (status != null) conditions.add("uc.status = ?");
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    void bind(PreparedStatement stmt) throws SQLException {
+        int i = 1;
+        if (courseId != null) stmt.setInt(i++, courseId);
+        if (userId != null) stmt.setInt(i++, userId);
+        if (role != null) stmt.setInt(i++, role.ordinal());
+        if (status != null) stmt.setInt(i++, status.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        return "EnrollmentQuery[course=" + courseId + ", user=" + userId + ", role=" + role + ", status=" + status + "]";
+    }
+}
@@ -0,0 +1,211 @@
+package db;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+// Process-wide read-through cache of entities by id, one region per registered DAO table. Regions keep
+// at most maxEntries rows in LRU order and drop rows older than the TTL, so dashboards reopening the
+// same users, courses and templates are answered from memory. Every row write of a cached DAO
+// invalidates the id (createRow/updateRow/deleteRow, so batches and queued writes are covered too).
+// Settings come from the .env file: DB_ENTITY_CACHE (true/false), DB_ENTITY_CACHE_SIZE, DB_ENTITY_CACHE_TTL_MS.
+//
+// Cached entities are shared between callers, a caller that changes one must write it back through its DAO.
+public final class EntityCache {
+    private static final int DEFAULT_MAX_ENTRIES = 2000;
+    private static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final Map<String, Region> regions = new ConcurrentHashMap<>(); // table -> cached rows
+    private static volatile boolean enabled;
+    private static final int maxEntries;
+    private static final long ttlMillis;
+
+    static {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        boolean on = true;
+        int size = DEFAULT_MAX_ENTRIES;
+        long ttl = DEFAULT_TTL_MILLIS;
+        try {
+            on = Boolean.parseBoolean(dotenv.get("DB_ENTITY_CACHE", "true"));
+            size = Integer.parseInt(dotenv.get("DB_ENTITY_CACHE_SIZE", String.valueOf(DEFAULT_MAX_ENTRIES)));
+            ttl = Long.parseLong(dotenv.get("DB_ENTITY_CACHE_TTL_MS", String.valueOf(DEFAULT_TTL_MILLIS)));
+            if (size <= 0 || ttl <= 0) throw new IllegalArgumentException("size and TTL must be positive");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid entity cache settings in .env, using defaults: " + e.getMessage());
+            on = true;
+            size = DEFAULT_MAX_ENTRIES;
+            ttl = DEFAULT_TTL_MILLIS;
+        }
+        enabled = on;
+        maxEntries = size;
+        ttlMillis = ttl;
+    }
+
+    private EntityCache() {}
+
+    // called once by each DAO whose rows may be cached
+    static void register(CrudDAO<?> dao) {
+        regions.putIfAbsent(dao.getTableName(), new Region(dao.getTableName()));
+    }
+
+    // cached entity for this id, or null when it is not cached, expired or caching is off
+    static <T> T get(CrudDAO<T> dao, int id) {
+        Region region = regions.get(dao.getTableName());
+        if (!enabled || region == null) return null;
+
+        @SuppressWarnings("unchecked")
+        T entity = (T) region.get(id);
+        return entity;
+    }
+
+    // taken before reading a row, put() drops the row when the table was written in the meantime
+    static long stamp(CrudDAO<?> dao) {
+        Region region = regions.get(dao.getTableName());
+        return region == null ? 0 : region.generation();
+    }
+
+    // cache a freshly read entity and return it
+    static <T> T put(CrudDAO<T> dao, int id, T entity, long stamp) {
+        Region region = regions.get(dao.getTableName());
+        if (enabled && region != null && entity != null) region.put(id, entity, stamp);
+        return entity;
+    }
+
+    // drop one row now and again once the enclosing transaction commits (queued write group or manual
+    // transaction), so a reader that re-cached the old row before the commit cannot keep it
+    static void invalidate(CrudDAO<?> dao, int id) {
+        Region region = regions.get(dao.getTableName());
+        if (region == null) return;
+
+        region.remove(id);
+        WriteQueue.afterCommit(() -> region.remove(id)); // runs now under autocommit
+    }
+
+    // drop every row of one table, for writes whose affected ids are not known (cascades)
+    static void invalidateAll(CrudDAO<?> dao) {
+        Region region = regions.get(dao.getTableName());
+        if (region == null) return;
+
+        region.clear();
+        WriteQueue.afterCommit(region::clear);
+    }
+
+    // drop everything, e.g. after tables were cleared outside the DAOs
+    public static void clear() {
+        for (Region region : regions.values()) region.clear();
+    }
+
+    public static boolean isEnabled() { return enabled; }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+        if (!on) clear(); // nothing cached while off can be trusted when switched back on
+    }
+
+    // GETTERS
+    public static int getMaxEntries() { return maxEntries; }
+    public static long getTtlMillis() { return ttlMillis; }
+
+    // hits / (hits + misses) for one table, 0 when it has not been read through the cache
+    public static double getHitRatio(String table) {
+        Region region = regions.get(table);
+        return region == null ? 0.0 : region.hitRatio();
+    }
+
+    public static boolean isUsed() {
+        for (Region region : regions.values()) {
+            if (region.isUsed()) return true;
+        }
+        return false;
+    }
+
+    public static String summary() {
+        List<String> parts = new ArrayList<>();
+        for (Region region : regions.values()) {
+            if (region.isUsed()) parts.add(region.toString());
+        }
+        return "EntityCache[enabled=" + enabled + ", maxEntries=" + maxEntries + ", ttlMs=" + ttlMillis + "] " + String.join(", ", parts);
+    }
+
+    // rows of one table in access order, guarded by its own lock
+    private static class Region {
+        private final String table;
+        private final LinkedHashMap<Integer, Cached> rows = new LinkedHashMap<Integer, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Cached> eldest) {
+                if (size() <= maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+        private long generation = 0; // bumped by every invalidation
+        private long hits = 0;
+        private long misses = 0;
+        private long evictions = 0;
+        private long expirations = 0;
+        private long invalidations = 0;
+
+        private Region(String table) {
+            this.table = table;
+        }
+
+        private synchronized Object get(int id) {
+            Cached entry = rows.get(id);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+                rows.remove(id);
+                expirations++;
+                entry = null;
+            }
+
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.entity;
+        }
+
+        private synchronized void put(int id, Object entity, long stamp) {
+            if (stamp != generation) return; // written while it was being read, the row may be stale
+            rows.put(id, new Cached(entity, System.currentTimeMillis()));
+        }
+
+        private synchronized void remove(int id) {
+            generation++;
+            if (rows.remove(id) != null) invalidations++;
+        }
+
+        private synchronized void clear() {
+            generation++;
+            invalidations += rows.size();
+            rows.clear();
+        }
+
+        private synchronized long generation() { return generation; }
+        private synchronized boolean isUsed() { return hits + misses > 0; }
+
+        private synchronized double hitRatio() {
+            long reads = hits + misses;
+            return reads == 0 ? 0.0 : (double) hits / reads;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s[size=%d, hitRatio=%.2f, hits=%d, misses=%d, evictions=%d, expirations=%d, invalidations=%d]",
+                table, rows.size(), hitRatio(), hits, misses, evictions, expirations, invalidations);
+        }
+    }
+
+    private static class Cached {
+        private final Object entity;
+        private final long loadedAt;
+
+        private Cached(Object entity, long loadedAt) {
+            this.entity = entity;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
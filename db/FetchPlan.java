@@ -0,0 +1,21 @@
+package db;
+
+// Which Course associations to load together with the course rows. Anything not fetched
+// is loaded on first access, in one query for every course returned by the same call.
+public enum FetchPlan {
+    LAZY(false, false),
+    TEMPLATE(true, false),
+    ASSIGNMENTS(false, true),
+    FULL(true, true);
+
+    private final boolean template;
+    private final boolean assignments;
+
+    FetchPlan(boolean template, boolean assignments) {
+        this.template = template;
+        this.assignments = assignments;
+    }
+
+    public boolean fetchesTemplate() { return template; }
+    public boolean fetchesAssignments() { return assignments; }
+}
@@ -0,0 +1,137 @@
+package db;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import model.GradingStrategy;
+
+// Dense grade sheet of one course: every enrolled student against every assignment, holding the points
+// of the student's most recent graded submission. Built by GradebookDAO.readSheet in one query and kept
+// in primitive arrays so stats, histograms and exports can share it without boxing. Cells are stored
+// row-major per student; a cell with no submission is marked in missing, one whose submissions are not
+// graded yet in ungraded, and both hold 0 points. A 5,000 x 60 course takes about 2.5 MB.
+public final class GradeSheet {
+    private final int courseId;
+    private final int[] studentIds; // ascending, so ids are found by binary search
+    private final String[] studentNames;
+    private final boolean[] active; // enrollment is ACTIVE
+    private final int[] assignmentIds; // in due date order
+    private final String[] assignmentNames;
+    private final double[] maxPoints;
+    private final double[] weights;
+    private final double[] earned; // studentCount * assignmentCount
+    private final BitSet missing;
+    private final BitSet ungraded;
+    private final BitSet graded; // neither missing nor ungraded
+    private final int[] sortedAssignmentIds; // assignmentIds ascending, with their positions
+    private final int[] assignmentPositions;
+
+    GradeSheet(int courseId, int[] studentIds, String[] studentNames, boolean[] active, int[] assignmentIds,
+               String[] assignmentNames, double[] maxPoints, double[] weights, double[] earned, BitSet missing, BitSet ungraded) {
+        this.courseId = courseId;
+        this.studentIds = studentIds;
+        this.studentNames = studentNames;
+        this.active = active;
+        this.assignmentIds = assignmentIds;
+        this.assignmentNames = assignmentNames;
+        this.maxPoints = maxPoints;
+        this.weights = weights;
+        this.earned = earned;
+        this.missing = missing;
+        this.ungraded = ungraded;
+        this.graded = new BitSet(earned.length);
+        graded.set(0, earned.length);
+        graded.andNot(missing);
+        graded.andNot(ungraded);
+
+        long[] keyed = new long[assignmentIds.length]; // id in the high bits, position in the low bits
+        for (int i = 0; i < keyed.length; i++) keyed[i] = ((long) assignmentIds[i] << 32) | i;
+        Arrays.sort(keyed);
+        sortedAssignmentIds = new int[keyed.length];
+        assignmentPositions = new int[keyed.length];
+        for (int i = 0; i < keyed.length; i++) {
+            sortedAssignmentIds[i] = (int) (keyed[i] >>> 32);
+            assignmentPositions[i] = (int) keyed[i];
+        }
+    }
+
+    // GETTERS
+    public int getCourseId() { return courseId; }
+    public int getStudentCount() { return studentIds.length; }
+    public int getAssignmentCount() { return assignmentIds.length; }
+    public int getStudentId(int student) { return studentIds[student]; }
+    public String getStudentName(int student) { return studentNames[student]; }
+    public boolean isActive(int student) { return active[student]; }
+    public int getAssignmentId(int assignment) { return assignmentIds[assignment]; }
+    public String getAssignmentName(int assignment) { return assignmentNames[assignment]; }
+    public double getMaxPoints(int assignment) { return maxPoints[assignment]; }
+    public double getWeight(int assignment) { return weights[assignment]; }
+
+    // points of the latest graded submission, 0 when there is none
+    public double getEarned(int student, int assignment) {
+        return earned[student * assignmentIds.length + assignment];
+    }
+
+    public boolean isMissing(int student, int assignment) { return missing.get(student * assignmentIds.length + assignment); }
+    public boolean isUngraded(int student, int assignment) { return ungraded.get(student * assignmentIds.length + assignment); }
+
+    public boolean isGraded(int student, int assignment) { return graded.get(student * assignmentIds.length + assignment); }
+
+    // position of a student in the sheet, -1 when they are not enrolled as a student
+    public int indexOfStudent(int studentId) {
+        int i = Arrays.binarySearch(studentIds, studentId);
+        return i < 0 ? -1 : i;
+    }
+
+    // position of an assignment in the sheet, -1 when it is not part of the course
+    public int indexOfAssignment(int assignmentId) {
+        int i = Arrays.binarySearch(sortedAssignmentIds, assignmentId);
+        return i < 0 ? -1 : assignmentPositions[i];
+    }
+
+    // earned points over the student's graded assignments
+    public double getTotalEarned(int student) {
+        double total = 0;
+        for (int cell = student * assignmentIds.length, end = cell + assignmentIds.length; cell < end; cell++) total += earned[cell];
+        return total;
+    }
+
+    // max points over the student's graded assignments
+    public double getTotalMax(int student) {
+        double total = 0;
+        for (int offset = student * assignmentIds.length, i = 0; i < assignmentIds.length; i++) {
+            if (graded.get(offset + i)) total += maxPoints[i];
+        }
+        return total;
+    }
+
+    // getTotalEarned of every student, in sheet order
+    public double[] totalEarned() {
+        double[] totals = new double[studentIds.length];
+        for (int s = 0; s < totals.length; s++) totals[s] = getTotalEarned(s);
+        return totals;
+    }
+
+    // getTotalMax of every student, in sheet order
+    public double[] totalMax() {
+        double[] totals = new double[studentIds.length];
+        for (int s = 0; s < totals.length; s++) totals[s] = getTotalMax(s);
+        return totals;
+    }
+
+    // grade students [from, to) with the strategy's batch form over the graded cells, out is indexed by student
+    public void calculateGrades(GradingStrategy strategy, int from, int to, double[] out) {
+        strategy.calculateGrades(earned, graded, maxPoints, weights, from, to, out);
+    }
+
+    // approximate heap size of the arrays, names excluded
+    public long estimateBytes() {
+        return 4L * (studentIds.length + 3L * assignmentIds.length) + active.length
+             + 8L * (maxPoints.length + weights.length + earned.length)
+             + (missing.size() + ungraded.size() + graded.size()) / 8;
+    }
+
+    @Override
+    public String toString() {
+        return "GradeSheet[course=" + courseId + ", students=" + studentIds.length + ", assignments=" + assignmentIds.length + "]";
+    }
+}
@@ -0,0 +1,408 @@
+package db;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import model.Submission;
+import model.User;
+import model.UserCourse;
+
+// Materialized gradebook. gradebook_entries keeps each student's latest submission (and latest graded
+// submission) per assignment, gradebook keeps their per-course totals over those entries. Both are
+// maintained in the same transaction as the submission and assignment writes that change them, so
+// course grade views are one indexed read. rebuild() recomputes everything from the submissions and
+// check() reports rows that drifted from them.
+public class GradebookDAO {
+    private static final int GRADED = Submission.Status.GRADED.ordinal();
+
+    private static final String ENTRY_COLUMNS = "user_id, assignment_id, course_id, submission_id, status, points_earned, "
+                                              + "submitted_at, graded_submission_id, graded_points";
+    private static final String SUMMARY_COLUMNS = "user_id, course_id, earned_points, max_points, weighted_grade, graded_count, "
+                                                + "submitted_count, last_assignment_id, last_submitted_at";
+    // summary columns with the sums rounded, so check() is not tripped by floating point noise
+    private static final String ROUNDED_SUMMARY_COLUMNS = "user_id, course_id, ROUND(earned_points, 6), ROUND(max_points, 6), "
+                                                        + "ROUND(weighted_grade, 6), graded_count, submitted_count, "
+                                                        + "last_assignment_id, last_submitted_at";
+
+    // QUERIES, package-private so the query plan test explains exactly what runs
+    static final String REFRESH_ENTRY_QUERY = "INSERT INTO gradebook_entries (" + ENTRY_COLUMNS + ") "
+                                            + entrySelect(" WHERE us.user_id = ? AND s.assignment_id = ?");
+    static final String REFRESH_SUMMARY_QUERY = "INSERT INTO gradebook (" + SUMMARY_COLUMNS + ") "
+                                              + summarySelect(" WHERE e.user_id = ? AND e.course_id = ?");
+    static final String REFRESH_COURSE_QUERY = "INSERT INTO gradebook (" + SUMMARY_COLUMNS + ") " + summarySelect(" WHERE e.course_id = ?");
+    static final String MOVE_ENTRIES_QUERY = "UPDATE gradebook_entries SET course_id = ? WHERE assignment_id = ?";
+    static final String READ_QUERY = "SELECT * FROM gradebook WHERE user_id = ? AND course_id = ?";
+    static final String COURSE_QUERY = "SELECT * FROM gradebook WHERE course_id = ?";
+    static final String ENTRIES_QUERY = "SELECT * FROM gradebook_entries WHERE user_id = ? AND course_id = ?";
+    static final String SHEET_ASSIGNMENTS_QUERY = "SELECT id, name, max_points, weight FROM assignments WHERE course_id = ? ORDER BY due_date, id";
+    static final String SHEET_GRADES_QUERY = "WITH ranked AS ("
+                                           + "SELECT us.user_id, s.assignment_id, "
+                                           + "ROW_NUMBER() OVER (PARTITION BY us.user_id, s.assignment_id ORDER BY s.submitted_at DESC, s.id DESC) AS latest_rank, "
+                                           + "FIRST_VALUE(CASE WHEN s.status = " + GRADED + " THEN s.points_earned END) OVER ("
+                                           + "PARTITION BY us.user_id, s.assignment_id ORDER BY s.status = " + GRADED + " DESC, s.submitted_at DESC, s.id DESC) AS graded_points "
+                                           + "FROM assignments a "
+                                           + "JOIN submissions s ON s.assignment_id = a.id "
+                                           + "JOIN user_submissions us ON us.submission_id = s.id "
+                                           + "WHERE a.course_id = ?) "
+                                           + "SELECT uc.user_id, u.name, uc.status, r.assignment_id, r.graded_points "
+                                           + "FROM user_courses uc "
+                                           + "JOIN users u ON u.id = uc.user_id "
+                                           + "LEFT JOIN ranked r ON r.user_id = uc.user_id AND r.latest_rank = 1 "
+                                           + "WHERE uc.course_id = ? AND uc.role = ? "
+                                           + "ORDER BY uc.user_id";
+
+    // SINGLETON ACCESS
+    private static final GradebookDAO instance = new GradebookDAO();
+
+    private GradebookDAO() {}
+
+    public static GradebookDAO getInstance() { return instance; }
+
+    // MAINTENANCE, called by the submission and assignment row writes on their connection
+    // recompute the entries of these users on one assignment and their totals in its course
+    void refresh(Connection connection, int assignmentId, Collection<Integer> userIds) throws SQLException {
+        if (userIds.isEmpty()) return;
+
+        int courseId = -1;
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT course_id FROM assignments WHERE id = ?")) {
+            stmt.setInt(1, assignmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) courseId = rs.getInt(1);
+            }
+        }
+
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM gradebook_entries WHERE user_id = ? AND assignment_id = ?");
+             PreparedStatement insert = connection.prepareStatement(REFRESH_ENTRY_QUERY)) {
+            for (int userId : new LinkedHashSet<>(userIds)) {
+                delete.setInt(1, userId);
+                delete.setInt(2, assignmentId);
+                delete.addBatch();
+                insert.setInt(1, userId);
+                insert.setInt(2, assignmentId);
+                insert.addBatch();
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        }
+        if (courseId == -1) return; // assignment is gone, its entries went with it
+
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM gradebook WHERE user_id = ? AND course_id = ?");
+             PreparedStatement insert = connection.prepareStatement(REFRESH_SUMMARY_QUERY)) {
+            for (int userId : new LinkedHashSet<>(userIds)) {
+                delete.setInt(1, userId);
+                delete.setInt(2, courseId);
+                delete.addBatch();
+                insert.setInt(1, userId);
+                insert.setInt(2, courseId);
+                insert.addBatch();
+            }
+            delete.executeBatch();
+            insert.executeBatch();
+        }
+    }
+
+    // an assignment's points, weight or course changed (or it was deleted): move its entries to the
+    // course it is in now and recompute the totals of both courses
+    void assignmentChanged(Connection connection, int assignmentId, int oldCourseId) throws SQLException {
+        int courseId = -1;
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT course_id FROM assignments WHERE id = ?")) {
+            stmt.setInt(1, assignmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) courseId = rs.getInt(1);
+            }
+        }
+
+        if (courseId != -1 && courseId != oldCourseId) {
+            try (PreparedStatement stmt = connection.prepareStatement(MOVE_ENTRIES_QUERY)) {
+                stmt.setInt(1, courseId);
+                stmt.setInt(2, assignmentId);
+                stmt.executeUpdate();
+            }
+            refreshCourse(connection, courseId);
+        }
+        if (oldCourseId != -1) refreshCourse(connection, oldCourseId);
+    }
+
+    // recompute the totals of every student in one course from its entries
+    void refreshCourse(Connection connection, int courseId) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM gradebook WHERE course_id = ?")) {
+            stmt.setInt(1, courseId);
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(REFRESH_COURSE_QUERY)) {
+            stmt.setInt(1, courseId);
+            stmt.executeUpdate();
+        }
+    }
+
+    // statements that recompute both tables from scratch with the current queries, run by rebuild()
+    static String[] rebuildStatements() {
+        return new String[] {
+            "DELETE FROM gradebook;",
+            "DELETE FROM gradebook_entries;",
+            "INSERT INTO gradebook_entries (" + ENTRY_COLUMNS + ") " + entrySelect("") + ";",
+            "INSERT INTO gradebook (" + SUMMARY_COLUMNS + ") " + summarySelect("") + ";"
+        };
+    }
+
+    // READS
+    // one student's totals in a course, null when they have not submitted anything there
+    public GradebookRow read(int userId, int courseId) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(READ_QUERY)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) return buildRowFromResultSet(rs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading gradebook row: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // totals of every student with a submission in the course, keyed by user id
+    public Map<Integer, GradebookRow> readCourse(int courseId) {
+        Map<Integer, GradebookRow> rows = new HashMap<>();
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(COURSE_QUERY)) {
+
+            stmt.setInt(1, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    GradebookRow row = buildRowFromResultSet(rs);
+                    rows.put(row.getUserId(), row);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading course gradebook: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    // one student's entries in a course keyed by assignment id, assignments without a submission are absent
+    public Map<Integer, GradebookEntry> readEntries(int userId, int courseId) {
+        Map<Integer, GradebookEntry> entries = new HashMap<>();
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(ENTRIES_QUERY)) {
+
+            stmt.setInt(1, userId);
+            stmt.setInt(2, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    GradebookEntry entry = buildEntryFromResultSet(rs);
+                    entries.put(entry.getAssignmentId(), entry);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading gradebook entries: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    // dense sheet of every student enrolled in the course against its assignments. The latest submission and
+    // the most recent graded one per (student, assignment) are picked by one ranked pass over the course's
+    // submissions instead of one lookup per student and assignment.
+    public GradeSheet readSheet(int courseId) {
+        List<Integer> assignmentIds = new ArrayList<>();
+        List<String> assignmentNames = new ArrayList<>();
+        List<Double> maxPoints = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        Map<Integer, Integer> assignmentIndex = new HashMap<>();
+
+        int students = 0;
+        int[] studentIds = new int[64];
+        String[] studentNames = new String[64];
+        boolean[] active = new boolean[64];
+        double[] earned = new double[0];
+        BitSet missing = new BitSet();
+        BitSet ungraded = new BitSet();
+
+        try (Connection connection = DBConnection.getReadConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement(SHEET_ASSIGNMENTS_QUERY)) {
+                stmt.setInt(1, courseId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        assignmentIndex.put(rs.getInt("id"), assignmentIds.size());
+                        assignmentIds.add(rs.getInt("id"));
+                        assignmentNames.add(rs.getString("name"));
+                        maxPoints.add(rs.getDouble("max_points"));
+                        weights.add(rs.getDouble("weight"));
+                    }
+                }
+            }
+            int assignments = assignmentIds.size();
+            earned = new double[64 * assignments];
+
+            try (PreparedStatement stmt = connection.prepareStatement(SHEET_GRADES_QUERY)) {
+                stmt.setInt(1, courseId);
+                stmt.setInt(2, courseId);
+                stmt.setInt(3, User.Role.STUDENT.ordinal());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int userId = rs.getInt(1);
+                        if (students == 0 || studentIds[students - 1] != userId) {
+                            if (students == studentIds.length) {
+                                studentIds = Arrays.copyOf(studentIds, students * 2);
+                                studentNames = Arrays.copyOf(studentNames, students * 2);
+                                active = Arrays.copyOf(active, students * 2);
+                                earned = Arrays.copyOf(earned, students * 2 * assignments);
+                            }
+                            studentIds[students] = userId;
+                            studentNames[students] = rs.getString(2);
+                            active[students] = rs.getInt(3) == UserCourse.Status.ACTIVE.ordinal();
+                            missing.set(students * assignments, (students + 1) * assignments); // cleared per submitted cell below
+                            students++;
+                        }
+
+                        Integer assignment = assignmentIndex.get(rs.getInt(4));
+                        if (rs.wasNull() || assignment == null) continue;
+
+                        int cell = (students - 1) * assignments + assignment;
+                        missing.clear(cell);
+                        double points = rs.getDouble(5);
+                        if (rs.wasNull()) ungraded.set(cell);
+                        else earned[cell] = points;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading grade sheet: " + e.getMessage());
+        }
+
+        int assignments = assignmentIds.size();
+        return new GradeSheet(courseId,
+            Arrays.copyOf(studentIds, students), Arrays.copyOf(studentNames, students), Arrays.copyOf(active, students),
+            assignmentIds.stream().mapToInt(Integer::intValue).toArray(), assignmentNames.toArray(new String[0]),
+            maxPoints.stream().mapToDouble(Double::doubleValue).toArray(), weights.stream().mapToDouble(Double::doubleValue).toArray(),
+            Arrays.copyOf(earned, students * assignments), missing, ungraded);
+    }
+
+    // ADMINISTRATION
+    // recompute both tables from the submissions, e.g. after rows were changed outside the DAOs
+    public boolean rebuild() {
+        try (Connection connection = DBConnection.getConnection()) {
+            connection.setAutoCommit(false); // BEGIN TRANSACTION
+
+            try (Statement stmt = connection.createStatement()) {
+                for (String query : rebuildStatements()) stmt.execute(query);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error rebuilding gradebook: " + e.getMessage());
+            return false;
+        }
+        ChangeBus.publish(ChangeEvent.allChanged());
+        return true;
+    }
+
+    // compare both tables with what rebuild() would produce and describe each difference, empty when consistent
+    public List<String> check() {
+        List<String> problems = new ArrayList<>();
+        String entries = "SELECT " + ENTRY_COLUMNS + " FROM gradebook_entries";
+        String expectedSummary = "SELECT " + ROUNDED_SUMMARY_COLUMNS + " FROM (" + summarySelect("") + ")";
+        String summary = "SELECT " + ROUNDED_SUMMARY_COLUMNS + " FROM gradebook";
+
+        try (Connection connection = DBConnection.getReadConnection()) {
+            int missing = countRows(connection, entrySelect("") + " EXCEPT " + entries);
+            int extra = countRows(connection, entries + " EXCEPT " + entrySelect(""));
+            if (missing > 0) problems.add("gradebook_entries: " + missing + " rows missing or out of date");
+            if (extra > 0) problems.add("gradebook_entries: " + extra + " rows that should not exist or are out of date");
+
+            // totals are checked against the entries as stored, so a bad entry is reported once
+            missing = countRows(connection, expectedSummary + " EXCEPT " + summary);
+            extra = countRows(connection, summary + " EXCEPT " + expectedSummary);
+            if (missing > 0) problems.add("gradebook: " + missing + " totals missing or out of date");
+            if (extra > 0) problems.add("gradebook: " + extra + " totals that should not exist or are out of date");
+        } catch (SQLException e) {
+            System.err.println("Error checking gradebook: " + e.getMessage());
+            problems.add("gradebook could not be checked: " + e.getMessage());
+        }
+        return problems;
+    }
+
+    private int countRows(Connection connection, String query) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM (" + query + ")")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // latest submission and latest graded submission of every (user, assignment) pair the filter keeps, in
+    // ENTRY_COLUMNS order. One pass over user_submissions joined with submissions, ranked per pair with window functions;
+    // the filter can refer to us (user_submissions), s (submissions) and a (assignments)
+    private static String entrySelect(String filter) {
+        return "SELECT " + ENTRY_COLUMNS + " FROM ("
+             + "SELECT us.user_id, s.assignment_id, a.course_id, s.id AS submission_id, s.status, s.points_earned, s.submitted_at, "
+             + "ROW_NUMBER() OVER latest AS latest_rank, "
+             + "FIRST_VALUE(CASE WHEN s.status = " + GRADED + " THEN s.id END) OVER latest_graded AS graded_submission_id, "
+             + "FIRST_VALUE(CASE WHEN s.status = " + GRADED + " THEN s.points_earned END) OVER latest_graded AS graded_points "
+             + "FROM user_submissions us "
+             + "JOIN submissions s ON s.id = us.submission_id "
+             + "JOIN assignments a ON a.id = s.assignment_id" + filter + " "
+             + "WINDOW latest AS (PARTITION BY us.user_id, s.assignment_id ORDER BY s.submitted_at DESC, s.id DESC), "
+             + "latest_graded AS (PARTITION BY us.user_id, s.assignment_id ORDER BY s.status = " + GRADED + " DESC, s.submitted_at DESC, s.id DESC)"
+             + ") WHERE latest_rank = 1";
+    }
+
+    // per (user, course) totals over gradebook_entries in SUMMARY_COLUMNS order; the filter can refer to e (the entries).
+    // Points, weights and the graded count all come from the latest graded submission of each assignment, like
+    // GradeSheet, so an ungraded resubmission keeps the earlier grade until it is graded itself
+    private static String summarySelect(String filter) {
+        String graded = "e.graded_submission_id IS NOT NULL";
+        return "SELECT e.user_id, e.course_id, "
+             + "SUM(CASE WHEN " + graded + " THEN e.graded_points ELSE 0 END) AS earned_points, "
+             + "SUM(CASE WHEN " + graded + " THEN a.max_points ELSE 0 END) AS max_points, "
+             + "SUM(CASE WHEN " + graded + " AND a.max_points > 0 THEN e.graded_points / a.max_points * a.weight ELSE 0 END) AS weighted_grade, "
+             + "SUM(CASE WHEN " + graded + " THEN 1 ELSE 0 END) AS graded_count, "
+             + "COUNT(*) AS submitted_count, "
+             + "(SELECT l.assignment_id FROM gradebook_entries l WHERE l.user_id = e.user_id AND l.course_id = e.course_id "
+             + "ORDER BY l.submitted_at DESC, l.submission_id DESC LIMIT 1) AS last_assignment_id, "
+             + "MAX(e.submitted_at) AS last_submitted_at "
+             + "FROM gradebook_entries e JOIN assignments a ON a.id = e.assignment_id" + filter + " "
+             + "GROUP BY e.user_id, e.course_id";
+    }
+
+    private GradebookRow buildRowFromResultSet(ResultSet rs) throws SQLException {
+        return new GradebookRow(
+            rs.getInt("user_id"),
+            rs.getInt("course_id"),
+            rs.getDouble("earned_points"),
+            rs.getDouble("max_points"),
+            rs.getDouble("weighted_grade"),
+            rs.getInt("graded_count"),
+            rs.getInt("submitted_count"),
+            rs.getInt("last_assignment_id"),
+            rs.getTimestamp("last_submitted_at"));
+    }
+
+    private GradebookEntry buildEntryFromResultSet(ResultSet rs) throws SQLException {
+        int gradedSubmissionId = rs.getInt("graded_submission_id");
+        if (rs.wasNull()) gradedSubmissionId = -1;
+
+        return new GradebookEntry(
+            rs.getInt("user_id"),
+            rs.getInt("assignment_id"),
+            rs.getInt("course_id"),
+            rs.getInt("submission_id"),
+            Submission.Status.values()[rs.getInt("status")],
+            rs.getDouble("points_earned"),
+            rs.getTimestamp("submitted_at"),
+            gradedSubmissionId,
+            rs.getDouble("graded_points"));
+    }
+}
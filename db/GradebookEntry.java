@@ -0,0 +1,49 @@
+package db;
+import java.sql.Timestamp;
+
+import model.Submission;
+
+// One student's standing on one assignment as kept in gradebook_entries: their latest submission
+// of any status, plus the latest one that was graded (which may be an older submission).
+public final class GradebookEntry {
+    private final int userId;
+    private final int assignmentId;
+    private final int courseId;
+    private final int submissionId;
+    private final Submission.Status status;
+    private final double pointsEarned;
+    private final Timestamp submittedAt;
+    private final int gradedSubmissionId; // -1 when no submission was graded yet
+    private final double gradedPoints;
+
+    GradebookEntry(int userId, int assignmentId, int courseId, int submissionId, Submission.Status status,
+                   double pointsEarned, Timestamp submittedAt, int gradedSubmissionId, double gradedPoints) {
+        this.userId = userId;
+        this.assignmentId = assignmentId;
+        this.courseId = courseId;
+        this.submissionId = submissionId;
+        this.status = status;
+        this.pointsEarned = pointsEarned;
+        this.submittedAt = submittedAt;
+        this.gradedSubmissionId = gradedSubmissionId;
+        this.gradedPoints = gradedPoints;
+    }
+
+    // GETTERS
+    public int getUserId() { return userId; }
+    public int getAssignmentId() { return assignmentId; }
+    public int getCourseId() { return courseId; }
+    public int getSubmissionId() { return submissionId; }
+    public Submission.Status getStatus() { return status; }
+    public double getPointsEarned() { return pointsEarned; }
+    public Timestamp getSubmittedAt() { return submittedAt; }
+    public int getGradedSubmissionId() { return gradedSubmissionId; }
+    public double getGradedPoints() { return gradedPoints; }
+    public boolean isGraded() { return status == Submission.Status.GRADED; }
+    public boolean hasGradedSubmission() { return gradedSubmissionId != -1; }
+
+    @Override
+    public String toString() {
+        return "GradebookEntry[user=" + userId + ", assignment=" + assignmentId + ", submission=" + submissionId + ", status=" + status + "]";
+    }
+}
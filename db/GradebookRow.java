@@ -0,0 +1,52 @@
+package db;
+import java.sql.Timestamp;
+
+// One student's totals in one course as kept in the gradebook table, summed over their
+// gradebook_entries so course grade views read a single row instead of every submission.
+public final class GradebookRow {
+    private final int userId;
+    private final int courseId;
+    private final double earnedPoints; // over the latest graded submission of each assignment
+    private final double maxPoints; // of the assignments with a graded submission
+    private final double weightedGrade; // sum of earned / max * weight, 1.0 when every weight is fully earned
+    private final int gradedCount;
+    private final int submittedCount;
+    private final int lastAssignmentId;
+    private final Timestamp lastSubmittedAt;
+
+    GradebookRow(int userId, int courseId, double earnedPoints, double maxPoints, double weightedGrade, int gradedCount,
+                 int submittedCount, int lastAssignmentId, Timestamp lastSubmittedAt) {
+        this.userId = userId;
+        this.courseId = courseId;
+        this.earnedPoints = earnedPoints;
+        this.maxPoints = maxPoints;
+        this.weightedGrade = weightedGrade;
+        this.gradedCount = gradedCount;
+        this.submittedCount = submittedCount;
+        this.lastAssignmentId = lastAssignmentId;
+        this.lastSubmittedAt = lastSubmittedAt;
+    }
+
+    // GETTERS
+    public int getUserId() { return userId; }
+    public int getCourseId() { return courseId; }
+    public double getEarnedPoints() { return earnedPoints; }
+    public double getMaxPoints() { return maxPoints; }
+    public double getWeightedGrade() { return weightedGrade; }
+    public int getGradedCount() { return gradedCount; }
+    public int getSubmittedCount() { return submittedCount; }
+    public int getLastAssignmentId() { return lastAssignmentId; }
+    public Timestamp getLastSubmittedAt() { return lastSubmittedAt; }
+
+    // earned / max of the graded assignments in percent, 0 when nothing is graded
+    public double getPercent() {
+        return maxPoints > 0 ? 100.0 * earnedPoints / maxPoints : 0.0;
+    }
+
+    public double getWeightedPercent() { return weightedGrade * 100; }
+
+    @Override
+    public String toString() {
+        return "GradebookRow[user=" + userId + ", course=" + courseId + ", earned=" + earnedPoints + "/" + maxPoints + ", graded=" + gradedCount + "]";
+    }
+}
@@ -0,0 +1,27 @@
+package db;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// DAO of a table keyed by a single integer id column, so rows can be batch read and deleted by id.
+// Tables with a composite key (user_courses) implement CrudDAO only and offer their own keyed reads and deletes.
+public interface IdDAO<T> extends CrudDAO<T> {
+    void deleteRow(Connection connection, int id) throws SQLException; // on the caller's connection, like createRow
+
+    // bulk delete in one transaction, ids that were deleted are dropped from the current IdentityScope
+    default BatchResult<Integer> deleteAll(List<Integer> ids) {
+        BatchResult<Integer> result = BatchResult.execute(ids, (connection, id) -> { deleteRow(connection, id); return -1; });
+        for (int i = 0; i < ids.size(); i++) {
+            if (result.isSuccess(i)) IdentityScope.forget(this, ids.get(i));
+        }
+        return result;
+    }
+
+    // several rows by id, inside an IdentityScope only ids it has not loaded yet are queried
+    default Map<Integer, T> readByIds(Collection<Integer> ids) { return IdentityScope.readByIds(this, ids); }
+
+    default CompletableFuture<Map<Integer, T>> readByIdsAsync(Collection<Integer> ids) { return DBConnection.submitRead(() -> readByIds(ids)); }
+}
@@ -0,0 +1,179 @@
+package db;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Identity map for one UI action (unit of work). While a scope is open on the current thread,
+// DAO reads by id return the instance already loaded in the scope instead of querying again:
+//
+//     IdentityScope scope = IdentityScope.open();
+//     try {
+//         ... every UserDAO.read(5) in here returns the same User ...
+//     } finally {
+//         scope.close();
+//     }
+//
+// Opening a scope inside an open scope joins the outer one. Entities are shared, not copied,
+// so a scope should not outlive the refresh or action that opened it.
+public final class IdentityScope implements AutoCloseable {
+    private static final ThreadLocal<IdentityScope> current = new ThreadLocal<>();
+
+    // METRICS, across all scopes since startup
+    private static final AtomicLong totalScopes = new AtomicLong();
+    private static final AtomicLong totalHits = new AtomicLong(); // reads answered from the map
+    private static final AtomicLong totalMisses = new AtomicLong();
+    private static final AtomicLong totalBatchQueries = new AtomicLong();
+    private static final AtomicLong totalBatchedIds = new AtomicLong(); // ids that would each have been a read
+
+    private final Map<String, Map<Integer, Object>> entities = new HashMap<>(); // table -> id -> entity
+    private int depth = 1;
+    private long hits = 0;
+    private long misses = 0;
+    private long batchQueries = 0;
+    private long batchedIds = 0;
+
+    private IdentityScope() {}
+
+    public static IdentityScope open() {
+        IdentityScope scope = current.get();
+        if (scope != null) {
+            scope.depth++;
+            return scope;
+        }
+
+        scope = new IdentityScope();
+        current.set(scope);
+        totalScopes.incrementAndGet();
+        return scope;
+    }
+
+    // the scope open on this thread, or null
+    public static IdentityScope current() {
+        return current.get();
+    }
+
+    @Override
+    public void close() {
+        if (--depth == 0) current.remove();
+    }
+
+    // entity already loaded for this id in the open scope, or null (also when no scope is open)
+    static <T> T find(CrudDAO<T> dao, int id) {
+        IdentityScope scope = current.get();
+        if (scope == null) return null;
+
+        Map<Integer, Object> table = scope.entities.get(dao.getTableName());
+        @SuppressWarnings("unchecked")
+        T entity = table == null ? null : (T) table.get(id);
+
+        if (entity != null) {
+            scope.hits++;
+            totalHits.incrementAndGet();
+        } else {
+            scope.misses++;
+            totalMisses.incrementAndGet();
+        }
+        return entity;
+    }
+
+    // record a freshly read entity in the open scope and return the instance callers should use
+    static <T> T remember(CrudDAO<T> dao, int id, T entity) {
+        IdentityScope scope = current.get();
+        if (scope == null || entity == null) return entity;
+
+        @SuppressWarnings("unchecked")
+        T existing = (T) scope.entities.computeIfAbsent(dao.getTableName(), k -> new HashMap<>()).putIfAbsent(id, entity);
+        return existing != null ? existing : entity;
+    }
+
+    // drop a deleted row so the scope never hands it out again
+    static void forget(CrudDAO<?> dao, int id) {
+        IdentityScope scope = current.get();
+        if (scope == null) return;
+
+        Map<Integer, Object> table = scope.entities.get(dao.getTableName());
+        if (table != null) table.remove(id);
+    }
+
+    // rows for the given ids keyed by id. Ids already in the open scope or the EntityCache are served
+    // from memory and the rest are read with one IN query per MAX_IN_PARAMS ids.
+    static <T> Map<Integer, T> readByIds(IdDAO<T> dao, Collection<Integer> ids) {
+        Map<Integer, T> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int id : new LinkedHashSet<>(ids)) {
+            T entity = find(dao, id);
+            if (entity == null && (entity = EntityCache.get(dao, id)) != null) entity = remember(dao, id, entity);
+
+            if (entity != null) found.put(id, entity);
+            else missing.add(id);
+        }
+        if (missing.isEmpty()) return found;
+
+        long stamp = EntityCache.stamp(dao);
+
+        IdentityScope scope = current.get();
+        try (Connection connection = DBConnection.getReadConnection()) {
+            for (int from = 0; from < missing.size(); from += DBConnection.MAX_IN_PARAMS) {
+                List<Integer> chunk = missing.subList(from, Math.min(missing.size(), from + DBConnection.MAX_IN_PARAMS));
+                String query = "SELECT * FROM " + dao.getTableName() + " WHERE id IN (" + DBConnection.placeholders(chunk.size()) + ")";
+
+                List<T> rows = new ArrayList<>();
+                List<Integer> rowIds = new ArrayList<>();
+                try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                    for (int i = 0; i < chunk.size(); i++) stmt.setInt(i + 1, chunk.get(i));
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            rowIds.add(rs.getInt("id"));
+                            rows.add(dao.buildFromResultSet(rs));
+                        }
+                    }
+                }
+                dao.completeBatch(connection, rows);
+
+                for (int i = 0; i < rows.size(); i++) found.put(rowIds.get(i), remember(dao, rowIds.get(i), EntityCache.put(dao, rowIds.get(i), rows.get(i), stamp)));
+                if (scope != null) {
+                    scope.batchQueries++;
+                    scope.batchedIds += chunk.size();
+                }
+                totalBatchQueries.incrementAndGet();
+                totalBatchedIds.addAndGet(chunk.size());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading " + dao.getTableName() + " by ids: " + e.getMessage());
+        }
+        return found;
+    }
+
+    // GETTERS
+    public long getHitCount() { return hits; }
+    public long getMissCount() { return misses; }
+    public long getBatchQueryCount() { return batchQueries; }
+    public long getQueriesAvoided() { return hits + batchedIds - batchQueries; }
+    public int getEntityCount() { return entities.values().stream().mapToInt(Map::size).sum(); }
+
+    public static long getTotalScopes() { return totalScopes.get(); }
+    public static long getTotalHits() { return totalHits.get(); }
+    public static long getTotalMisses() { return totalMisses.get(); }
+    public static long getTotalBatchQueries() { return totalBatchQueries.get(); }
+    public static long getTotalQueriesAvoided() { return totalHits.get() + totalBatchedIds.get() - totalBatchQueries.get(); }
+
+    public static String summary() {
+        return String.format("IdentityScope[scopes=%d, queriesAvoided=%d, misses=%d, batchQueries=%d]",
+            getTotalScopes(), getTotalQueriesAvoided(), getTotalMisses(), getTotalBatchQueries());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IdentityScope[entities=%d, queriesAvoided=%d, hits=%d, misses=%d, batchQueries=%d]",
+            getEntityCount(), getQueriesAvoided(), hits, misses, batchQueries);
+    }
+}
@@ -0,0 +1,116 @@
+package db;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// One screen of rows from a keyset (seek) query. The cursor token encodes the sort key and id
+// of the last row, so fetching the next page is an index seek no matter how deep it is.
+public class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    private Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // GETTERS
+    public List<T> getItems() { return Collections.unmodifiableList(items); }
+    public String getNextCursor() { return nextCursor; } // null on the last page
+    public boolean hasMore() { return nextCursor != null; }
+
+    // run "SELECT * FROM table WHERE filter AND (key, id) > cursor ORDER BY key, id LIMIT n" for a DAO
+    static <T> Page<T> seek(CrudDAO<T> dao, String filter, Object[] filterParams, PageOrder order, String cursor, int limit,
+                            Function<T, Object> sortKey, ToIntFunction<T> id) {
+        return seek(dao.getTableName(), dao.getTableName(), dao::buildFromResultSet, dao::completeBatch,
+                    filter, filterParams, order, cursor, limit, sortKey, id);
+    }
+
+    // same seek over any row source, e.g. a parenthesised join whose result columns include id and the sort key
+    static <T> Page<T> seek(String source, String description, RowReader<T> reader, BatchCompleter<T> completer,
+                            String filter, Object[] filterParams, PageOrder order, String cursor, int limit,
+                            Function<T, Object> sortKey, ToIntFunction<T> id) {
+        if (limit <= 0) throw new IllegalArgumentException("page size must be positive");
+
+        List<Object> params = new ArrayList<>();
+        if (filter != null) Collections.addAll(params, filterParams);
+
+        if (cursor != null) {
+            String[] position = decodeCursor(cursor);
+            if (order != PageOrder.ID) params.add(order.parseKey(position[0]));
+            params.add(Integer.parseInt(position[1]));
+        }
+
+        String query = seekQuery(source, filter, order, cursor != null);
+        params.add(limit + 1); // one extra row tells us whether another page exists
+
+        List<T> rows = new ArrayList<>();
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+
+            for (int i = 0; i < params.size(); i++) stmt.setObject(i + 1, params.get(i));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) rows.add(reader.read(rs));
+            }
+            completer.complete(connection, rows);
+        } catch (SQLException e) {
+            System.err.println("Error reading page of " + description + ": " + e.getMessage());
+            return new Page<>(new ArrayList<>(), null);
+        }
+
+        if (rows.size() <= limit) return new Page<>(rows, null);
+
+        rows.remove(limit);
+        T last = rows.get(limit - 1);
+        return new Page<>(rows, encodeCursor(order.formatKey(sortKey.apply(last)), id.applyAsInt(last)));
+    }
+
+    // the seek statement, bound with the filter's parameters, then the cursor's key and id when continuing, then the row limit
+    static String seekQuery(String source, String filter, PageOrder order, boolean continued) {
+        String direction = order.isDescending() ? " DESC" : "";
+        String comparison = order.isDescending() ? " < " : " > ";
+        List<String> conditions = new ArrayList<>();
+
+        if (filter != null) conditions.add(filter);
+        if (continued) conditions.add(order == PageOrder.ID ? "id" + comparison + "?" : "(" + order.getColumn() + ", id)" + comparison + "(?, ?)");
+
+        return "SELECT * FROM " + source
+             + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+             + " ORDER BY " + (order == PageOrder.ID ? "" : order.getColumn() + direction + ", ") + "id" + direction
+             + " LIMIT ?";
+    }
+
+    @FunctionalInterface
+    interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface BatchCompleter<T> {
+        void complete(Connection connection, List<T> rows) throws SQLException;
+    }
+
+    private static String encodeCursor(String key, int id) {
+        String raw = key + "\n" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf('\n');
+            if (split < 0) throw new IllegalArgumentException("Malformed page cursor: " + cursor);
+            return new String[] { raw.substring(0, split), raw.substring(split + 1) };
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page cursor: " + cursor, e);
+        }
+    }
+}
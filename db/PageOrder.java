@@ -0,0 +1,37 @@
+package db;
+import java.sql.Timestamp;
+
+// Sort orders supported by keyset pagination. Every order breaks ties on id so the
+// (sort key, id) pair of the last row on a page identifies exactly where the next page starts.
+public enum PageOrder {
+    ID("id", false),
+    NAME("name", false),
+    SUBMITTED_AT("submitted_at", true); // newest first
+
+    private final String column;
+    private final boolean descending;
+
+    PageOrder(String column, boolean descending) {
+        this.column = column;
+        this.descending = descending;
+    }
+
+    public String getColumn() { return column; }
+    public boolean isDescending() { return descending; }
+
+    // cursor tokens carry the sort key as text, timestamps as epoch millis
+    String formatKey(Object key) {
+        return key instanceof Timestamp ? String.valueOf(((Timestamp) key).getTime()) : String.valueOf(key);
+    }
+
+    Object parseKey(String raw) {
+        switch (this) {
+            case SUBMITTED_AT:
+                return new Timestamp(Long.parseLong(raw));
+            case NAME:
+                return raw;
+            default:
+                return Integer.parseInt(raw);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package db;
+import java.sql.Timestamp;
+
+import model.User;
+import model.UserCourse;
+
+// Read-only view of one enrollment for roster tables, joining user_courses with the user and
+// course so a roster is one query rather than every user plus per-course enrollment lookups.
+public final class RosterRow {
+    private final int userId;
+    private final int courseId;
+    private final String name;
+    private final String email;
+    private final User.Role role; // account role, not the role in the course
+    private final Timestamp lastUpdated;
+    private final String courseName;
+    private final UserCourse.Status status;
+
+    RosterRow(int userId, int courseId, String name, String email, User.Role role, Timestamp lastUpdated,
+              String courseName, UserCourse.Status status) {
+        this.userId = userId;
+        this.courseId = courseId;
+        this.name = name;
+        this.email = email;
+        this.role = role;
+        this.lastUpdated = lastUpdated;
+        this.courseName = courseName;
+        this.status = status;
+    }
+
+    // GETTERS
+    public int getUserId() { return userId; }
+    public int getCourseId() { return courseId; }
+    public String getName() { return name; }
+    public String getEmail() { return email; }
+    public User.Role getRole() { return role; }
+    public Timestamp getLastUpdated() { return lastUpdated; }
+    public String getCourseName() { return courseName; }
+    public UserCourse.Status getStatus() { return status; }
+    public boolean isActive() { return status == UserCourse.Status.ACTIVE; }
+
+    @Override
+    public String toString() {
+        return "RosterRow[user=" + userId + ", course=" + courseId + ", status=" + status + "]";
+    }
+}
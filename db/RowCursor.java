@@ -0,0 +1,107 @@
+package db;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Forward-only cursor over a query's rows, read fetchSize rows at a time. It holds a read
+// connection until it is closed, which happens when the last row is consumed, when the
+// stream is closed, or when reading fails. Each batch goes through CrudDAO.completeBatch
+// so DAOs can load associations for the batch in one query instead of one per row.
+class RowCursor<T> implements Iterator<T>, AutoCloseable {
+    private final CrudDAO<T> dao;
+    private final int fetchSize;
+    private final ArrayDeque<T> buffer;
+    private Connection connection;
+    private PreparedStatement stmt;
+    private ResultSet rs;
+    private boolean closed = false;
+
+    private RowCursor(CrudDAO<T> dao, int fetchSize) {
+        this.dao = dao;
+        this.fetchSize = fetchSize;
+        this.buffer = new ArrayDeque<>(fetchSize);
+    }
+
+    // the stream must be closed (try-with-resources) unless it is consumed to the end
+    static <T> Stream<T> stream(CrudDAO<T> dao, String query, int fetchSize, Object... params) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetch size must be positive");
+
+        RowCursor<T> cursor = new RowCursor<>(dao, fetchSize);
+        try {
+            cursor.open(query, params);
+        } catch (SQLException e) {
+            System.err.println("Error opening cursor for " + query + ": " + e.getMessage());
+            cursor.close();
+            return Stream.empty();
+        }
+
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(cursor::close);
+    }
+
+    private void open(String query, Object[] params) throws SQLException {
+        connection = DBConnection.getReadConnection();
+        stmt = connection.prepareStatement(query);
+        stmt.setFetchSize(fetchSize);
+        for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+        rs = stmt.executeQuery();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffer.isEmpty() && !closed) fill();
+        return !buffer.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return buffer.poll();
+    }
+
+    private void fill() {
+        try {
+            List<T> batch = new ArrayList<>(fetchSize);
+            while (batch.size() < fetchSize && rs.next()) batch.add(dao.buildFromResultSet(rs));
+
+            if (!batch.isEmpty()) dao.completeBatch(connection, batch);
+            buffer.addAll(batch);
+
+            if (batch.size() < fetchSize) close(); // result set exhausted, give the connection back early
+        } catch (SQLException e) {
+            System.err.println("Error reading from cursor: " + e.getMessage());
+            buffer.clear();
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        // reverse order, a failing close is reported and the rest still run so the connection always goes back
+        closeQuietly(rs);
+        closeQuietly(stmt);
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception e) {
+            System.err.println("Error closing cursor: " + e.getMessage());
+        }
+    }
+}
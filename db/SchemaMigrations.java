@@ -0,0 +1,167 @@
+package db;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Ordered schema changes applied on top of DBSetup's base tables. The version of the
+// last applied migration is stored in PRAGMA user_version, so each one runs exactly once.
+public class SchemaMigrations {
+    private static final Migration[] migrations = {
+        new Migration(1, "indexes for foreign key lookups",
+            // submission_id is the second PK column, so the PK index cannot serve collaborator lookups
+            "CREATE INDEX IF NOT EXISTS idx_user_submissions_submission ON user_submissions (submission_id, user_id);",
+            "CREATE INDEX IF NOT EXISTS idx_submissions_assignment ON submissions (assignment_id, submitted_at);",
+            "CREATE INDEX IF NOT EXISTS idx_user_courses_course ON user_courses (course_id, role, status, user_id);",
+            "CREATE INDEX IF NOT EXISTS idx_assignments_course ON assignments (course_id, due_date);",
+            "CREATE INDEX IF NOT EXISTS idx_assignment_templates_course_template ON assignment_templates (course_template_id);",
+            "CREATE INDEX IF NOT EXISTS idx_courses_course_template ON courses (course_template_id);"),
+        new Migration(2, "indexes for keyset pagination",
+            "CREATE INDEX IF NOT EXISTS idx_users_name ON users (name, id);",
+            "CREATE INDEX IF NOT EXISTS idx_submissions_submitted_at ON submissions (submitted_at, id);"),
+        new Migration(3, "materialized gradebook",
+            "CREATE TABLE IF NOT EXISTS gradebook_entries ("
+                + "user_id INTEGER NOT NULL,"
+                + "assignment_id INTEGER NOT NULL,"
+                + "course_id INTEGER NOT NULL,"
+                + "submission_id INTEGER NOT NULL," // latest submission of any status
+                + "status INTEGER NOT NULL,"
+                + "points_earned REAL NOT NULL,"
+                + "submitted_at TIMESTAMP,"
+                + "graded_submission_id INTEGER," // latest graded submission, NULL when none
+                + "graded_points REAL,"
+                + "PRIMARY KEY (user_id, assignment_id),"
+                + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,"
+                + "FOREIGN KEY (assignment_id) REFERENCES assignments(id) ON DELETE CASCADE);",
+            "CREATE INDEX IF NOT EXISTS idx_gradebook_entries_course ON gradebook_entries (course_id, user_id);",
+            "CREATE INDEX IF NOT EXISTS idx_gradebook_entries_assignment ON gradebook_entries (assignment_id);",
+            "CREATE TABLE IF NOT EXISTS gradebook ("
+                + "user_id INTEGER NOT NULL,"
+                + "course_id INTEGER NOT NULL,"
+                + "earned_points REAL NOT NULL,"
+                + "max_points REAL NOT NULL,"
+                + "weighted_grade REAL NOT NULL,"
+                + "graded_count INTEGER NOT NULL,"
+                + "submitted_count INTEGER NOT NULL,"
+                + "latest_graded_points REAL NOT NULL,"
+                + "latest_graded_max_points REAL NOT NULL,"
+                + "last_assignment_id INTEGER,"
+                + "last_submitted_at TIMESTAMP,"
+                + "PRIMARY KEY (user_id, course_id),"
+                + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,"
+                + "FOREIGN KEY (course_id) REFERENCES courses(id) ON DELETE CASCADE);",
+            "CREATE INDEX IF NOT EXISTS idx_gradebook_course ON gradebook (course_id);",
+            // fill both tables from the existing submissions. Frozen as of this version (status 1 is GRADED),
+            // later changes to GradebookDAO's queries reach old databases through GradebookDAO.rebuild()
+            "INSERT INTO gradebook_entries (user_id, assignment_id, course_id, submission_id, status, points_earned, "
+                + "submitted_at, graded_submission_id, graded_points) "
+                + "SELECT user_id, assignment_id, course_id, submission_id, status, points_earned, "
+                + "submitted_at, graded_submission_id, graded_points FROM ("
+                + "SELECT us.user_id, s.assignment_id, a.course_id, s.id AS submission_id, s.status, s.points_earned, s.submitted_at, "
+                + "ROW_NUMBER() OVER latest AS latest_rank, "
+                + "FIRST_VALUE(CASE WHEN s.status = 1 THEN s.id END) OVER latest_graded AS graded_submission_id, "
+                + "FIRST_VALUE(CASE WHEN s.status = 1 THEN s.points_earned END) OVER latest_graded AS graded_points "
+                + "FROM user_submissions us "
+                + "JOIN submissions s ON s.id = us.submission_id "
+                + "JOIN assignments a ON a.id = s.assignment_id "
+                + "WINDOW latest AS (PARTITION BY us.user_id, s.assignment_id ORDER BY s.submitted_at DESC, s.id DESC), "
+                + "latest_graded AS (PARTITION BY us.user_id, s.assignment_id ORDER BY s.status = 1 DESC, s.submitted_at DESC, s.id DESC)"
+                + ") WHERE latest_rank = 1;",
+            "INSERT INTO gradebook (user_id, course_id, earned_points, max_points, weighted_grade, graded_count, "
+                + "submitted_count, latest_graded_points, latest_graded_max_points, last_assignment_id, last_submitted_at) "
+                + "SELECT e.user_id, e.course_id, "
+                + "SUM(CASE WHEN e.status = 1 THEN e.points_earned ELSE 0 END), "
+                + "SUM(CASE WHEN e.status = 1 THEN a.max_points ELSE 0 END), "
+                + "SUM(CASE WHEN e.status = 1 AND a.max_points > 0 THEN e.points_earned / a.max_points * a.weight ELSE 0 END), "
+                + "SUM(CASE WHEN e.status = 1 THEN 1 ELSE 0 END), "
+                + "COUNT(*), "
+                + "SUM(CASE WHEN e.graded_submission_id IS NOT NULL THEN e.graded_points ELSE 0 END), "
+                + "SUM(CASE WHEN e.graded_submission_id IS NOT NULL THEN a.max_points ELSE 0 END), "
+                + "(SELECT l.assignment_id FROM gradebook_entries l WHERE l.user_id = e.user_id AND l.course_id = e.course_id "
+                + "ORDER BY l.submitted_at DESC, l.submission_id DESC LIMIT 1), "
+                + "MAX(e.submitted_at) "
+                + "FROM gradebook_entries e JOIN assignments a ON a.id = e.assignment_id "
+                + "GROUP BY e.user_id, e.course_id;"),
+        new Migration(4, "gradebook totals over the latest graded submission",
+            // earned and max points used to count only assignments whose latest submission was graded, next to
+            // separate latest_graded_* sums. Now every total uses the latest graded submission, so those columns go
+            "DROP TABLE gradebook;",
+            "CREATE TABLE gradebook ("
+                + "user_id INTEGER NOT NULL,"
+                + "course_id INTEGER NOT NULL,"
+                + "earned_points REAL NOT NULL,"
+                + "max_points REAL NOT NULL,"
+                + "weighted_grade REAL NOT NULL,"
+                + "graded_count INTEGER NOT NULL,"
+                + "submitted_count INTEGER NOT NULL,"
+                + "last_assignment_id INTEGER,"
+                + "last_submitted_at TIMESTAMP,"
+                + "PRIMARY KEY (user_id, course_id),"
+                + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,"
+                + "FOREIGN KEY (course_id) REFERENCES courses(id) ON DELETE CASCADE);",
+            "CREATE INDEX IF NOT EXISTS idx_gradebook_course ON gradebook (course_id);",
+            "INSERT INTO gradebook (user_id, course_id, earned_points, max_points, weighted_grade, graded_count, "
+                + "submitted_count, last_assignment_id, last_submitted_at) "
+                + "SELECT e.user_id, e.course_id, "
+                + "SUM(CASE WHEN e.graded_submission_id IS NOT NULL THEN e.graded_points ELSE 0 END), "
+                + "SUM(CASE WHEN e.graded_submission_id IS NOT NULL THEN a.max_points ELSE 0 END), "
+                + "SUM(CASE WHEN e.graded_submission_id IS NOT NULL AND a.max_points > 0 THEN e.graded_points / a.max_points * a.weight ELSE 0 END), "
+                + "SUM(CASE WHEN e.graded_submission_id IS NOT NULL THEN 1 ELSE 0 END), "
+                + "COUNT(*), "
+                + "(SELECT l.assignment_id FROM gradebook_entries l WHERE l.user_id = e.user_id AND l.course_id = e.course_id "
+                + "ORDER BY l.submitted_at DESC, l.submission_id DESC LIMIT 1), "
+                + "MAX(e.submitted_at) "
+                + "FROM gradebook_entries e JOIN assignments a ON a.id = e.assignment_id "
+                + "GROUP BY e.user_id, e.course_id;")
+    };
+
+    private SchemaMigrations() {}
+
+    public static int latestVersion() {
+        return migrations[migrations.length - 1].version;
+    }
+
+    // apply every migration newer than the DB's user_version, each in its own transaction
+    public static void migrate() {
+        try (Connection connection = DBConnection.getConnection()) {
+            int current = readUserVersion(connection);
+
+            for (Migration migration : migrations) {
+                if (migration.version <= current) continue;
+
+                connection.setAutoCommit(false);
+                try (Statement stmt = connection.createStatement()) {
+                    for (String sql : migration.statements) stmt.execute(sql);
+                    stmt.execute("PRAGMA user_version = " + migration.version + ";");
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw new SQLException("Migration " + migration.version + " (" + migration.description + ") failed: " + e.getMessage(), e);
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error migrating schema: " + e.getMessage());
+        }
+    }
+
+    private static int readUserVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        private Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+}
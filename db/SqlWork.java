@@ -0,0 +1,9 @@
+package db;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// A unit of database work run against a connection handed to it by the caller
+@FunctionalInterface
+public interface SqlWork<T> {
+    T execute(Connection connection) throws SQLException;
+}
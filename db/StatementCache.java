@@ -0,0 +1,160 @@
+package db;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// LRU cache of compiled statements for one physical connection, keyed by SQL text.
+// Callers get a proxy whose close() resets the statement and puts it back in the cache.
+public class StatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true); // access order for LRU
+    }
+
+    public synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+        } else if (cached != null) {
+            // same SQL already open further up the call stack, hand out a one-off statement
+            misses.incrementAndGet();
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        } else {
+            misses.incrementAndGet();
+            cached = new CachedStatement(connection.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+            evictOverflow();
+        }
+
+        cached.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(),
+            new Class<?>[] { PreparedStatement.class },
+            new StatementLease(cached));
+    }
+
+    public synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.evicted = true;
+            if (!cached.inUse) cached.closeQuietly();
+        }
+        statements.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            eldest.evicted = true;
+            if (!eldest.inUse) eldest.closeQuietly(); // in-use statements are closed when returned
+        }
+    }
+
+    private synchronized void release(CachedStatement cached) {
+        cached.inUse = false;
+        try {
+            cached.closeResultSets();
+            cached.statement.clearParameters();
+            cached.statement.clearBatch();
+        } catch (SQLException e) {
+            // a statement that cannot be reset is dropped rather than reused
+            statements.values().remove(cached);
+            cached.evicted = true;
+        }
+        if (cached.evicted) cached.closeQuietly();
+    }
+
+    // GETTERS
+    public synchronized int getSize() { return statements.size(); }
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private final List<ResultSet> openResultSets = new ArrayList<>();
+        private boolean inUse = false;
+        private boolean evicted = false;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        // callers often leave result sets to be closed with the statement, which never really closes here
+        private void closeResultSets() throws SQLException {
+            for (ResultSet rs : openResultSets) rs.close();
+            openResultSets.clear();
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+    }
+
+    private class StatementLease implements InvocationHandler {
+        private final CachedStatement cached;
+        private boolean returned = false;
+
+        private StatementLease(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(cached);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.statement + "]";
+                default:
+                    break;
+            }
+
+            if (returned) throw new SQLException("Statement has already been closed.");
+
+            Object result;
+            try {
+                result = method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof ResultSet) cached.openResultSets.add((ResultSet) result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package db;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+// SQLite storage settings applied to every pooled connection. Values can be overridden
+// in the .env file (DB_JOURNAL_MODE, DB_SYNCHRONOUS, DB_CACHE_SIZE, DB_MMAP_SIZE,
+// DB_TEMP_STORE, DB_BUSY_TIMEOUT_MS, DB_READER_POOL_SIZE, DB_WRITE_BEHIND, DB_GROUP_COMMIT_WINDOW_MS).
+public class StorageProfile {
+    private static final List<String> JOURNAL_MODES = Arrays.asList("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final List<String> SYNCHRONOUS_LEVELS = Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final List<String> TEMP_STORES = Arrays.asList("DEFAULT", "FILE", "MEMORY");
+
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize; // negative values are KiB, positive values are pages
+    private final long mmapSize;
+    private final String tempStore;
+    private final int busyTimeoutMillis;
+    private final int readerPoolSize;
+    private final boolean writeBehind; // queued writes are group committed on a writer thread
+    private final long groupCommitWindowMillis;
+
+    public StorageProfile(String journalMode, String synchronous, int cacheSize, long mmapSize, String tempStore, int busyTimeoutMillis,
+                          int readerPoolSize, boolean writeBehind, long groupCommitWindowMillis) {
+        this.journalMode = validate("journal_mode", journalMode, JOURNAL_MODES);
+        this.synchronous = validate("synchronous", synchronous, SYNCHRONOUS_LEVELS);
+        this.tempStore = validate("temp_store", tempStore, TEMP_STORES);
+
+        if (mmapSize < 0) throw new IllegalArgumentException("mmap_size must be >= 0");
+        if (busyTimeoutMillis < 0) throw new IllegalArgumentException("busy_timeout must be >= 0");
+        if (readerPoolSize <= 0) throw new IllegalArgumentException("reader pool size must be positive");
+        if (groupCommitWindowMillis < 0) throw new IllegalArgumentException("group commit window must be >= 0");
+
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.readerPoolSize = readerPoolSize;
+        this.writeBehind = writeBehind;
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    // WAL with NORMAL sync: readers never block on the writer and commits skip the per-transaction fsync of the WAL.
+    // Write-behind is opt-in (DB_WRITE_BEHIND=true), by default each write commits on the caller's thread.
+    public static StorageProfile defaultProfile() {
+        return new StorageProfile("WAL", "NORMAL", -16000, 256L * 1024 * 1024, "MEMORY", 5000, 6, false, 5);
+    }
+
+    public static StorageProfile fromEnv() {
+        StorageProfile defaults = defaultProfile();
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+
+        try {
+            return new StorageProfile(
+                dotenv.get("DB_JOURNAL_MODE", defaults.journalMode),
+                dotenv.get("DB_SYNCHRONOUS", defaults.synchronous),
+                Integer.parseInt(dotenv.get("DB_CACHE_SIZE", String.valueOf(defaults.cacheSize))),
+                Long.parseLong(dotenv.get("DB_MMAP_SIZE", String.valueOf(defaults.mmapSize))),
+                dotenv.get("DB_TEMP_STORE", defaults.tempStore),
+                Integer.parseInt(dotenv.get("DB_BUSY_TIMEOUT_MS", String.valueOf(defaults.busyTimeoutMillis))),
+                Integer.parseInt(dotenv.get("DB_READER_POOL_SIZE", String.valueOf(defaults.readerPoolSize))),
+                Boolean.parseBoolean(dotenv.get("DB_WRITE_BEHIND", String.valueOf(defaults.writeBehind))),
+                Long.parseLong(dotenv.get("DB_GROUP_COMMIT_WINDOW_MS", String.valueOf(defaults.groupCommitWindowMillis))));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid storage profile in .env, using defaults: " + e.getMessage());
+            return defaults;
+        }
+    }
+
+    // PRAGMAs for the single writer connection, journal_mode is persisted in the DB file
+    public List<String> getWriterPragmas() {
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("PRAGMA journal_mode = " + journalMode + ";");
+        pragmas.addAll(getConnectionPragmas());
+        return pragmas;
+    }
+
+    // PRAGMAs for read-only connections, query_only makes SQLite reject any write on them
+    public List<String> getReaderPragmas() {
+        List<String> pragmas = getConnectionPragmas();
+        pragmas.add("PRAGMA query_only = ON;");
+        return pragmas;
+    }
+
+    private List<String> getConnectionPragmas() {
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("PRAGMA foreign_keys = ON;");
+        pragmas.add("PRAGMA busy_timeout = " + busyTimeoutMillis + ";");
+        pragmas.add("PRAGMA synchronous = " + synchronous + ";");
+        pragmas.add("PRAGMA cache_size = " + cacheSize + ";");
+        pragmas.add("PRAGMA mmap_size = " + mmapSize + ";");
+        pragmas.add("PRAGMA temp_store = " + tempStore + ";");
+        return pragmas;
+    }
+
+    // only whitelisted keywords are ever concatenated into a PRAGMA
+    private static String validate(String pragma, String value, List<String> allowed) {
+        String normalized = value == null ? "" : value.trim().toUpperCase();
+        if (!allowed.contains(normalized)) throw new IllegalArgumentException("Unsupported " + pragma + ": " + value);
+        return normalized;
+    }
+
+    // GETTERS
+    public String getJournalMode() { return journalMode; }
+    public String getSynchronous() { return synchronous; }
+    public int getCacheSize() { return cacheSize; }
+    public long getMmapSize() { return mmapSize; }
+    public String getTempStore() { return tempStore; }
+    public int getBusyTimeoutMillis() { return busyTimeoutMillis; }
+    public int getReaderPoolSize() { return readerPoolSize; }
+    public boolean isWriteBehind() { return writeBehind; }
+    public long getGroupCommitWindowMillis() { return groupCommitWindowMillis; }
+    public boolean isWal() { return "WAL".equals(journalMode); }
+}
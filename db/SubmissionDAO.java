@@ -1,11 +1,28 @@
 package db;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import model.Submission;
 
-public class SubmissionDAO implements CrudDAO<Submission> {
+public class SubmissionDAO implements IdDAO<Submission> {
+    // QUERIES, package-private so the query plan test explains exactly what runs
+    // submissions joined with their assignment, course and first collaborator for SubmissionRow
+    static final String ROW_QUERY = "SELECT s.id, s.assignment_id, s.submitted_at, s.points_earned, s.grade, s.status, "
+                                          + "a.name AS assignment_name, a.max_points, a.course_id, c.name AS course_name, "
+                                          + "u.id AS student_id, u.name AS student_name, "
+                                          + "(SELECT COUNT(*) FROM user_submissions cs WHERE cs.submission_id = s.id) AS collaborator_count "
+                                          + "FROM submissions s "
+                                          + "JOIN assignments a ON a.id = s.assignment_id "
+                                          + "JOIN courses c ON c.id = a.course_id "
+                                          + "LEFT JOIN users u ON u.id = (SELECT MIN(us.user_id) FROM user_submissions us WHERE us.submission_id = s.id)";
+    static final String COLLABORATORS_QUERY = "SELECT submission_id, user_id FROM user_submissions WHERE submission_id = ? ORDER BY user_id";
+
     // SINGLETON ACCESS
     private static final SubmissionDAO instance = new SubmissionDAO();
 
@@ -13,48 +30,26 @@ public class SubmissionDAO implements CrudDAO<Submission> {
 
     public static SubmissionDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria
+    public static final Column<Submission, Integer> ID = Column.integer("id");
+    public static final Column<Submission, Integer> ASSIGNMENT_ID = Column.integer("assignment_id");
+    public static final Column<Submission, Integer> GRADER_ID = Column.integer("grader_id");
+    public static final Column<Submission, Timestamp> SUBMITTED_AT = Column.timestamp("submitted_at");
+    public static final Column<Submission, Double> POINTS_EARNED = Column.real("points_earned");
+    public static final Column<Submission, Double> GRADE = Column.real("grade");
+    public static final Column<Submission, Submission.Status> STATUS = Column.ordinal("status", Submission.Status.class);
+
+    @Override
+    public String getTableName() { return "submissions"; }
+
     // ABSTRACT CRUD OPERATIONS
     @Override
     public void create(Submission submission) {
-        String submissionQuery = "INSERT INTO submissions (assignment_id, grader_id, filepath, submitted_at, points_earned, grade, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        String userSubmissionsQuery = "INSERT INTO user_submissions (user_id, submission_id) VALUES (?, ?)";
-
         try (Connection connection = DBConnection.getConnection()) {
             connection.setAutoCommit(false); // BEGIN TRANSACTION
 
-            try (PreparedStatement stmt = connection.prepareStatement(submissionQuery, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setInt(1, submission.getAssignmentId());
-
-                if (submission.getGraderId() == -1) stmt.setNull(2, Types.INTEGER);
-                else stmt.setInt(2, submission.getGraderId());
-                
-                stmt.setString(3, submission.getFilepath());
-                stmt.setTimestamp(4, submission.getSubmittedAt());
-                stmt.setDouble(5, submission.getPointsEarned());
-                stmt.setDouble(6, submission.getGrade());
-                stmt.setInt(7, submission.getStatus().ordinal());
-
-                int affectedRows = stmt.executeUpdate();
-                if (affectedRows == 0) throw new SQLException("Creating submission failed, no rows affected.");
-
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int submissionId = generatedKeys.getInt(1);
-                        submission.setId(submissionId);
-
-                        try (PreparedStatement userSubStmt = connection.prepareStatement(userSubmissionsQuery)) {
-                            for (Integer collaborator_id : submission.getCollaboratorIds()) {
-                                userSubStmt.setInt(1, collaborator_id);
-                                userSubStmt.setInt(2, submissionId);
-                                userSubStmt.addBatch();
-                            }
-                            userSubStmt.executeBatch();
-                        }
-                    } else {
-                        throw new SQLException("Creating submission failed, no ID obtained.");
-                    }
-                }
-
+            try {
+                createRow(connection, submission);
                 connection.commit(); // COMMIT if everything succeeds
             } catch (SQLException e) {
                 connection.rollback(); // ROLLBACK on any error
@@ -64,18 +59,67 @@ public class SubmissionDAO implements CrudDAO<Submission> {
             System.err.println("Error creating submission: " + e.getMessage());
         }
     }
+
+    @Override
+    public int createRow(Connection connection, Submission submission) throws SQLException {
+        String submissionQuery = "INSERT INTO submissions (assignment_id, grader_id, filepath, submitted_at, points_earned, grade, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String userSubmissionsQuery = "INSERT INTO user_submissions (user_id, submission_id) VALUES (?, ?)";
+
+        try (PreparedStatement stmt = connection.prepareStatement(submissionQuery, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, submission.getAssignmentId());
+
+            if (submission.getGraderId() == -1) stmt.setNull(2, Types.INTEGER);
+            else stmt.setInt(2, submission.getGraderId());
+            
+            stmt.setString(3, submission.getFilepath());
+            stmt.setTimestamp(4, submission.getSubmittedAt());
+            stmt.setDouble(5, submission.getPointsEarned());
+            stmt.setDouble(6, submission.getGrade());
+            stmt.setInt(7, submission.getStatus().ordinal());
+
+            int affectedRows = stmt.executeUpdate();
+            if (affectedRows == 0) throw new SQLException("Creating submission failed, no rows affected.");
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    int submissionId = generatedKeys.getInt(1);
+                    submission.setId(submissionId);
+
+                    try (PreparedStatement userSubStmt = connection.prepareStatement(userSubmissionsQuery)) {
+                        for (Integer collaborator_id : submission.getCollaboratorIds()) {
+                            userSubStmt.setInt(1, collaborator_id);
+                            userSubStmt.setInt(2, submissionId);
+                            userSubStmt.addBatch();
+                        }
+                        userSubStmt.executeBatch();
+                    }
+                    GradebookDAO.getInstance().refresh(connection, submission.getAssignmentId(), submission.getCollaboratorIds());
+                    ChangeBus.publish(ChangeEvent.Kind.SUBMISSION_CREATED, submissionId, -1);
+                } else {
+                    throw new SQLException("Creating submission failed, no ID obtained.");
+                }
+            }
+        }
+        return submission.getId();
+    }
     
     @Override
     public Submission read(int id) {
+        Submission cached = IdentityScope.find(this, id);
+        if (cached != null) return cached; // already loaded in this unit of work
+
         String query = "SELECT * FROM submissions WHERE id = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
     
             if (rs.next()) {
-                return buildFromResultSet(rs);
+                List<Submission> submissions = new ArrayList<>();
+                submissions.add(buildFromResultSet(rs));
+                attachCollaborators(connection, submissions, COLLABORATORS_QUERY, id);
+                return IdentityScope.remember(this, id, submissions.get(0));
             }
         } catch (SQLException e) {
             System.out.println("Error reading submission: " + e.getMessage());
@@ -84,17 +128,23 @@ public class SubmissionDAO implements CrudDAO<Submission> {
     }
 
     @Override
+    @Deprecated
     public List<Submission> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM submissions WHERE " + columnName.trim() + " = ?";
         List<Submission> submissions = new ArrayList<>();
 
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setObject(1, value);
             ResultSet rs = stmt.executeQuery();
             
             while (rs.next()) submissions.add(buildFromResultSet(rs));
+
+            String collaboratorQuery = "SELECT submission_id, user_id FROM user_submissions "
+                                     + "WHERE submission_id IN (SELECT id FROM submissions WHERE " + columnName.trim() + " = ?) "
+                                     + "ORDER BY submission_id, user_id";
+            attachCollaborators(connection, submissions, collaboratorQuery, value);
             return submissions;
         } catch (SQLException e) {
             System.err.println("Error reading submissions: " + e.getMessage());
@@ -126,11 +176,13 @@ public class SubmissionDAO implements CrudDAO<Submission> {
         List<Submission> submissions = new ArrayList<>();
         String query = "SELECT * FROM submissions";
 
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
             PreparedStatement stmt = connection.prepareStatement(query);
             ResultSet rs = stmt.executeQuery()) {
 
-            while (rs.next()) submissions.add(buildFromResultSet(rs));           
+            while (rs.next()) submissions.add(buildFromResultSet(rs));
+
+            attachCollaborators(connection, submissions, "SELECT submission_id, user_id FROM user_submissions ORDER BY submission_id, user_id");
         } catch (SQLException e) {
             System.err.println("Error reading all submissions: " + e.getMessage());
         }
@@ -138,45 +190,120 @@ public class SubmissionDAO implements CrudDAO<Submission> {
         return submissions;
     }
 
+    // submissions the user is a collaborator on, to AND into other submission criteria
+    public static Criteria<Submission> hasCollaborator(int userId) {
+        return Criteria.<Submission>where().condition("id IN (SELECT submission_id FROM user_submissions WHERE user_id = ?)", userId);
+    }
+
+    // KEYSET PAGINATION
+    // one page of submissions ordered by id or newest submitted_at first; pass the previous page's cursor for the next one
+    public Page<Submission> readPage(PageOrder order, String cursor, int limit) {
+        if (order == PageOrder.NAME) throw new IllegalArgumentException("Submissions cannot be ordered by " + order);
+        return Page.seek(this, null, new Object[0], order, cursor, limit, Submission::getSubmittedAt, Submission::getId);
+    }
+
+    // TABLE ROWS
+    // every submission of an assignment as display rows, one query in total
+    public List<SubmissionRow> readRowsForAssignment(int assignmentId) {
+        List<SubmissionRow> rows = new ArrayList<>();
+        Map<String, String> names = new HashMap<>();
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(ROW_QUERY + " WHERE s.assignment_id = ? ORDER BY s.id")) {
+
+            stmt.setInt(1, assignmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) rows.add(buildRowFromResultSet(rs, names));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading submission rows: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    // display row of one submission, null when it no longer exists
+    public SubmissionRow readRow(int id) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(ROW_QUERY + " WHERE s.id = ?")) {
+
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) return buildRowFromResultSet(rs, new HashMap<>());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading submission row: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // newest first page of display rows for submissions in the given courses
+    public Page<SubmissionRow> readRowPage(Collection<Integer> courseIds, String cursor, int limit) {
+        Object[] ids = courseIds.toArray();
+        String filter = ids.length == 0 ? "0 = 1" : "course_id IN (" + DBConnection.placeholders(ids.length) + ")";
+        Map<String, String> names = new HashMap<>();
+
+        return Page.seek("(" + ROW_QUERY + ")", "submission rows", rs -> buildRowFromResultSet(rs, names), (connection, rows) -> {},
+                         filter, ids, PageOrder.SUBMITTED_AT, cursor, limit, SubmissionRow::getSubmittedAt, SubmissionRow::getId);
+    }
+
+    // newest first page of display rows for the latest submission of each (student, assignment) pair in the given
+    // courses, the pairs' latest submissions as kept by the gradebook. A null assignment name or status matches all
+    public Page<SubmissionRow> readLatestRowPage(Collection<Integer> courseIds, String assignmentName, Submission.Status status,
+                                                 String cursor, int limit) {
+        List<Object> params = new ArrayList<>(courseIds);
+        if (assignmentName != null) params.add(assignmentName);
+        if (status != null) params.add(status.ordinal());
+        String filter = latestRowFilter(courseIds.size(), assignmentName != null, status != null);
+        Map<String, String> names = new HashMap<>();
+
+        return Page.seek(LATEST_ROW_SOURCE, "submission rows", rs -> buildRowFromResultSet(rs, names), (connection, rows) -> {},
+                         filter, params.toArray(), PageOrder.SUBMITTED_AT, cursor, limit, SubmissionRow::getSubmittedAt, SubmissionRow::getId);
+    }
+
+    static final String LATEST_ROW_SOURCE = "(" + ROW_QUERY + ") r";
+
+    // readLatestRowPage filter over LATEST_ROW_SOURCE, parameters are the course ids, then the name and status when filtered
+    static String latestRowFilter(int courseCount, boolean byAssignmentName, boolean byStatus) {
+        return (courseCount == 0 ? "0 = 1" : "r.course_id IN (" + DBConnection.placeholders(courseCount) + ")")
+             + " AND r.id = (SELECT g.submission_id FROM gradebook_entries g WHERE g.user_id = r.student_id AND g.assignment_id = r.assignment_id)"
+             + (byAssignmentName ? " AND r.assignment_name = ?" : "")
+             + (byStatus ? " AND r.status = ?" : "");
+    }
+
+    // course, assignment and student names repeat across rows, so equal names share one String
+    private SubmissionRow buildRowFromResultSet(ResultSet rs, Map<String, String> names) throws SQLException {
+        int studentId = rs.getInt("student_id");
+        if (rs.wasNull()) studentId = -1;
+
+        return new SubmissionRow(
+            rs.getInt("id"),
+            rs.getInt("assignment_id"),
+            rs.getInt("course_id"),
+            studentId,
+            rs.getInt("collaborator_count"),
+            shared(names, rs.getString("student_name")),
+            shared(names, rs.getString("assignment_name")),
+            shared(names, rs.getString("course_name")),
+            rs.getDouble("max_points"),
+            rs.getDouble("points_earned"),
+            rs.getDouble("grade"),
+            rs.getTimestamp("submitted_at"),
+            Submission.Status.values()[rs.getInt("status")]);
+    }
+
+    private static String shared(Map<String, String> names, String name) {
+        if (name == null) return null;
+        String existing = names.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+
     @Override
     public void update(Submission submission) {
-        String updateSubmissionQuery = "UPDATE submissions SET grader_id = ?, filepath = ?, submitted_at = ?, points_earned = ?, grade = ?, status = ? WHERE id = ?";
-        String deleteUserSubmissionsQuery = "DELETE FROM user_submissions WHERE submission_id = ?";
-        String addUserSubmissionsQuery = "INSERT INTO user_submissions (user_id, submission_id) VALUES (?, ?)";
-
         try (Connection connection = DBConnection.getConnection()) {
             connection.setAutoCommit(false); // start transaction
 
             try {
-                // update submission record
-                try (PreparedStatement stmt = connection.prepareStatement(updateSubmissionQuery)) {
-                    stmt.setInt(1, submission.getGraderId());
-                    stmt.setString(2, submission.getFilepath());
-                    stmt.setTimestamp(3, submission.getSubmittedAt());
-                    stmt.setDouble(4, submission.getPointsEarned());
-                    stmt.setDouble(5, submission.getGrade());
-                    stmt.setInt(6, submission.getStatus().ordinal());
-                    stmt.setInt(7, submission.getId());
-
-                    stmt.executeUpdate();
-                }
-
-                // delete old collaborators
-                try (PreparedStatement stmt = connection.prepareStatement(deleteUserSubmissionsQuery)) {
-                    stmt.setInt(1, submission.getId());
-                    stmt.executeUpdate();
-                }
-
-                // insert new collaborators
-                try (PreparedStatement stmt = connection.prepareStatement(addUserSubmissionsQuery)) {
-                    for (Integer collaboratorId : submission.getCollaboratorIds()) {
-                        stmt.setInt(1, collaboratorId);
-                        stmt.setInt(2, submission.getId());
-                        stmt.addBatch();
-                    }
-                    stmt.executeBatch();
-                }
-
+                updateRow(connection, submission);
                 connection.commit(); // commit transaction
             } catch (SQLException e) {
                 connection.rollback(); // rollback on any half deleted states
@@ -187,12 +314,84 @@ public class SubmissionDAO implements CrudDAO<Submission> {
         }
     }
 
+    @Override
+    public void updateRow(Connection connection, Submission submission) throws SQLException {
+        String updateSubmissionQuery = "UPDATE submissions SET grader_id = ?, filepath = ?, submitted_at = ?, points_earned = ?, grade = ?, status = ? WHERE id = ?";
+        String deleteUserSubmissionsQuery = "DELETE FROM user_submissions WHERE submission_id = ?";
+        String addUserSubmissionsQuery = "INSERT INTO user_submissions (user_id, submission_id) VALUES (?, ?)";
+
+        // update submission record
+        try (PreparedStatement stmt = connection.prepareStatement(updateSubmissionQuery)) {
+            stmt.setInt(1, submission.getGraderId());
+            stmt.setString(2, submission.getFilepath());
+            stmt.setTimestamp(3, submission.getSubmittedAt());
+            stmt.setDouble(4, submission.getPointsEarned());
+            stmt.setDouble(5, submission.getGrade());
+            stmt.setInt(6, submission.getStatus().ordinal());
+            stmt.setInt(7, submission.getId());
+
+            stmt.executeUpdate();
+        }
+
+        // removed collaborators need their gradebook entries recomputed too
+        Set<Integer> affectedUsers = new HashSet<>(readCollaboratorIds(connection, submission.getId()));
+        affectedUsers.addAll(submission.getCollaboratorIds());
+
+        // delete old collaborators
+        try (PreparedStatement stmt = connection.prepareStatement(deleteUserSubmissionsQuery)) {
+            stmt.setInt(1, submission.getId());
+            stmt.executeUpdate();
+        }
+
+        // insert new collaborators
+        try (PreparedStatement stmt = connection.prepareStatement(addUserSubmissionsQuery)) {
+            for (Integer collaboratorId : submission.getCollaboratorIds()) {
+                stmt.setInt(1, collaboratorId);
+                stmt.setInt(2, submission.getId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        GradebookDAO.getInstance().refresh(connection, submission.getAssignmentId(), affectedUsers);
+
+        boolean graded = submission.getStatus() == Submission.Status.GRADED;
+        ChangeBus.publish(graded ? ChangeEvent.Kind.SUBMISSION_GRADED : ChangeEvent.Kind.SUBMISSION_UPDATED, submission.getId(), -1);
+    }
+
     @Override
     public void delete(int id) {
+        try (Connection connection = DBConnection.getConnection()) {
+            connection.setAutoCommit(false); // owner lookup, delete and gradebook refresh commit together
+
+            try {
+                deleteRow(connection, id);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            IdentityScope.forget(this, id);
+        } catch (SQLException e) {
+            System.err.println("Error deleting submission: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteRow(Connection connection, int id) throws SQLException {
         String query = "DELETE FROM submissions WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        // read what the gradebook needs before the cascade removes the collaborators
+        int assignmentId = -1;
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT assignment_id FROM submissions WHERE id = ?")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) assignmentId = rs.getInt(1);
+            }
+        }
+        List<Integer> collaboratorIds = readCollaboratorIds(connection, id);
+
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, id);
 
@@ -200,8 +399,8 @@ public class SubmissionDAO implements CrudDAO<Submission> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting submission failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting submission: " + e.getMessage());
+            GradebookDAO.getInstance().refresh(connection, assignmentId, collaboratorIds);
+            ChangeBus.publish(ChangeEvent.Kind.SUBMISSION_DELETED, id, -1);
         }
     }
 
@@ -216,22 +415,59 @@ public class SubmissionDAO implements CrudDAO<Submission> {
         double grade = rs.getDouble("grade");
         Submission.Status status = Submission.Status.values()[rs.getInt("status")];
 
-        // do query of all users in user_submissions for this submission id
+        // collaborators are filled in for the whole result set by attachCollaborators
+        return new Submission(id, assignmentId, graderId, filepath, submittedAt, pointsEarned, grade, status, new ArrayList<>());
+    }
+
+    // streamed batches load their collaborators with one IN query per batch
+    @Override
+    public void completeBatch(Connection connection, List<Submission> batch) throws SQLException {
+        for (int from = 0; from < batch.size(); from += DBConnection.MAX_IN_PARAMS) {
+            List<Submission> chunk = batch.subList(from, Math.min(batch.size(), from + DBConnection.MAX_IN_PARAMS));
+            Object[] ids = chunk.stream().map(Submission::getId).toArray();
+            attachCollaborators(connection, chunk, batchCollaboratorsQuery(ids.length), ids);
+        }
+    }
+
+    static String batchCollaboratorsQuery(int submissionCount) {
+        return "SELECT submission_id, user_id FROM user_submissions "
+             + "WHERE submission_id IN (" + DBConnection.placeholders(submissionCount) + ") "
+             + "ORDER BY submission_id, user_id";
+    }
+
+    private List<Integer> readCollaboratorIds(Connection connection, int submissionId) throws SQLException {
         List<Integer> collaboratorIds = new ArrayList<>();
-        String collaboratorQuery = "SELECT user_id FROM user_submissions WHERE submission_id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT user_id FROM user_submissions WHERE submission_id = ?")) {
+            stmt.setInt(1, submissionId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) collaboratorIds.add(rs.getInt("user_id"));
+            }
+        }
+        return collaboratorIds;
+    }
+
+    // load the collaborators of every submission in one query and stitch them onto the submissions in memory
+    private void attachCollaborators(Connection connection, List<Submission> submissions, String collaboratorQuery, Object... params) throws SQLException {
+        if (submissions.isEmpty()) return;
+
+        Map<Integer, List<Integer>> collaboratorsBySubmission = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(collaboratorQuery)) {
+            for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
 
-        try (Connection connection = DBConnection.getConnection();
-            PreparedStatement stmt = connection.prepareStatement(collaboratorQuery)) {
-            stmt.setInt(1, id);
             try (ResultSet collabRs = stmt.executeQuery()) {
                 while (collabRs.next()) {
                     int userId = collabRs.getInt("user_id");
-                    if (userId > -1) collaboratorIds.add(userId);
+                    if (userId > -1) {
+                        collaboratorsBySubmission.computeIfAbsent(collabRs.getInt("submission_id"), k -> new ArrayList<>()).add(userId);
+                    }
                 }
             }
         }
 
-        return new Submission(id, assignmentId, graderId, filepath, submittedAt, pointsEarned, grade, status, collaboratorIds);
+        for (Submission submission : submissions) {
+            List<Integer> collaboratorIds = collaboratorsBySubmission.get(submission.getId());
+            if (collaboratorIds != null) submission.setCollaborators(collaboratorIds);
+        }
     }
 //    public Submission buildFromResultSet(ResultSet rs) throws SQLException {
 //        int id = rs.getInt("id");
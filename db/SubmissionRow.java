@@ -0,0 +1,62 @@
+package db;
+import java.sql.Timestamp;
+
+import model.Submission;
+
+// Read-only view of one submission for table screens, built by a single query joining the
+// submission with its assignment, course and first collaborator instead of loading each entity.
+public final class SubmissionRow {
+    private final int id;
+    private final int assignmentId;
+    private final int courseId;
+    private final int studentId; // first collaborator, -1 when there is none
+    private final int collaboratorCount;
+    private final String studentName;
+    private final String assignmentName;
+    private final String courseName;
+    private final double maxPoints;
+    private final double pointsEarned;
+    private final double grade;
+    private final Timestamp submittedAt;
+    private final Submission.Status status;
+
+    SubmissionRow(int id, int assignmentId, int courseId, int studentId, int collaboratorCount, String studentName,
+                  String assignmentName, String courseName, double maxPoints, double pointsEarned, double grade,
+                  Timestamp submittedAt, Submission.Status status) {
+        this.id = id;
+        this.assignmentId = assignmentId;
+        this.courseId = courseId;
+        this.studentId = studentId;
+        this.collaboratorCount = collaboratorCount;
+        this.studentName = studentName;
+        this.assignmentName = assignmentName;
+        this.courseName = courseName;
+        this.maxPoints = maxPoints;
+        this.pointsEarned = pointsEarned;
+        this.grade = grade;
+        this.submittedAt = submittedAt;
+        this.status = status;
+    }
+
+    // GETTERS
+    public int getId() { return id; }
+    public int getAssignmentId() { return assignmentId; }
+    public int getCourseId() { return courseId; }
+    public int getStudentId() { return studentId; }
+    public int getCollaboratorCount() { return collaboratorCount; }
+    public String getStudentName() { return studentName; }
+    public String getAssignmentName() { return assignmentName; }
+    public String getCourseName() { return courseName; }
+    public double getMaxPoints() { return maxPoints; }
+    public double getPointsEarned() { return pointsEarned; }
+    public double getGrade() { return grade; }
+    public Timestamp getSubmittedAt() { return submittedAt; }
+    public Submission.Status getStatus() { return status; }
+    public boolean isGraded() { return status == Submission.Status.GRADED; }
+    public boolean hasStudent() { return studentId != -1; }
+
+    @Override
+    public String toString() {
+        return "SubmissionRow[id=" + id + ", student=" + studentName + ", assignment=" + assignmentName + ", status=" + status + "]";
+    }
+}
@@ -2,9 +2,11 @@ package db;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import model.User;
 import model.UserCourse;
@@ -17,13 +19,55 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
 
     public static UserCourseDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria
+    public static final Column<UserCourse, Integer> USER_ID = Column.integer("user_id");
+    public static final Column<UserCourse, Integer> COURSE_ID = Column.integer("course_id");
+    public static final Column<UserCourse, UserCourse.Status> STATUS = Column.ordinal("status", UserCourse.Status.class);
+    public static final Column<UserCourse, User.Role> ROLE = Column.ordinal("role", User.Role.class);
+
+    // QUERIES, package-private so the query plan test explains exactly what runs
+    static final String READ_QUERY = "SELECT * FROM user_courses WHERE user_id = ? AND course_id = ?";
+
+    static String enrollmentsQuery(EnrollmentQuery query) {
+        return "SELECT uc.* FROM user_courses uc" + query.whereClause() + " ORDER BY uc.course_id, uc.user_id";
+    }
+
+    static String enrolledUsersQuery(EnrollmentQuery query) {
+        return "SELECT u.* FROM user_courses uc JOIN users u ON u.id = uc.user_id" + query.whereClause() + " ORDER BY u.name, u.id";
+    }
+
+    static String enrollmentCountQuery(EnrollmentQuery query) {
+        return "SELECT COUNT(*) FROM user_courses uc" + query.whereClause();
+    }
+
+    static String rosterQuery(int courseCount, int roleCount) {
+        return "SELECT uc.user_id, uc.course_id, uc.status, u.name, u.email, u.role, u.last_updated, c.name AS course_name "
+             + "FROM user_courses uc "
+             + "JOIN users u ON u.id = uc.user_id "
+             + "JOIN courses c ON c.id = uc.course_id "
+             + "WHERE uc.course_id IN (" + DBConnection.placeholders(courseCount) + ") "
+             + "AND u.role IN (" + DBConnection.placeholders(roleCount) + ") "
+             + "ORDER BY uc.user_id, uc.course_id";
+    }
+
+    @Override
+    public String getTableName() { return "user_courses"; }
+
     // ABSTRACT CRUD OPERATION IMPLEMENTATIONS
     @Override
     public void create(UserCourse userCourse) {
+        try (Connection connection = DBConnection.getConnection()) {
+            createRow(connection, userCourse);
+        } catch (SQLException e) {
+            System.err.println("Error creating user course relationship: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int createRow(Connection connection, UserCourse userCourse) throws SQLException {
         String query = "INSERT INTO user_courses (user_id, course_id, status, role) VALUES (?, ?, ?, ?)";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, userCourse.getUserId());
             stmt.setInt(2, userCourse.getCourseId());
@@ -32,18 +76,30 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
 
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) throw new SQLException("Creating user course relationship failed, no rows affected.");
-        } catch (SQLException e) {
-            System.err.println("Error creating user course relationship: " + e.getMessage());
+            ChangeBus.publish(ChangeEvent.Kind.USER_ENROLLED, userCourse.getUserId(), userCourse.getCourseId());
         }
+        return -1; // keyed by user and course, there is no generated id
     }
     
     @Override
     public UserCourse read(int id) { return null; }
 
+    // one user's enrollments in the given courses keyed by course id, courses they are not enrolled in are left out.
+    // Enrollments are keyed by (user_id, course_id), so this takes the place of readByIds
+    public Map<Integer, UserCourse> readByKeys(int userId, Collection<Integer> courseIds) {
+        Map<Integer, UserCourse> found = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(courseIds));
+        for (int from = 0; from < ids.size(); from += DBConnection.MAX_IN_PARAMS) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + DBConnection.MAX_IN_PARAMS));
+            for (UserCourse userCourse : find(Criteria.where(USER_ID, userId).in(COURSE_ID, chunk)))
+                found.put(userCourse.getCourseId(), userCourse);
+        }
+        return found;
+    }
+
     public UserCourse read(int userId, int courseId) {
-        String query = "SELECT * FROM user_courses WHERE user_id = ? AND course_id = ?";
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(READ_QUERY)) {
     
             stmt.setInt(1, userId);
             stmt.setInt(2, courseId);
@@ -57,9 +113,10 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
     }
     
     @Override
+    @Deprecated
     public List<UserCourse> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM user_courses WHERE " + columnName.trim() + " = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setObject(1, value);
@@ -79,7 +136,7 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
         List<UserCourse> userCourses = new ArrayList<>();
         String query = "SELECT * FROM user_courses";
 
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
             PreparedStatement stmt = connection.prepareStatement(query);
             ResultSet rs = stmt.executeQuery()) {
 
@@ -93,10 +150,18 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
     
     @Override
     public void update(UserCourse userCourse) {
+        try (Connection connection = DBConnection.getConnection()) {
+            updateRow(connection, userCourse);
+        } catch (SQLException e) {
+            System.err.println("Error updating user course relationship: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void updateRow(Connection connection, UserCourse userCourse) throws SQLException {
         String query = "UPDATE user_courses SET status = ?, role = ? WHERE user_id = ? AND course_id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, userCourse.getStatus().ordinal());
             stmt.setInt(2, userCourse.getRole().ordinal());
@@ -105,8 +170,7 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
 
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) throw new SQLException("Updating user course relationship failed, no rows affected.");
-        } catch (SQLException e) {
-            System.err.println("Error updating user course relationship: " + e.getMessage());
+            ChangeBus.publish(ChangeEvent.Kind.ENROLLMENT_UPDATED, userCourse.getUserId(), userCourse.getCourseId());
         }
     }
     
@@ -114,10 +178,17 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
     public void delete(int id) {}
 
     public void delete(int userId, int courseId) {
+        try (Connection connection = DBConnection.getConnection()) {
+            deleteRow(connection, userId, courseId);
+        } catch (SQLException e) {
+            System.err.println("Error deleting user course relationship: " + e.getMessage());
+        }
+    }
+
+    public void deleteRow(Connection connection, int userId, int courseId) throws SQLException {
         String query = "DELETE FROM user_courses WHERE user_id = ? AND course_id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, userId);
             stmt.setInt(2, courseId);
@@ -126,10 +197,17 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting user course relationship failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            System.err.println("Error deleting user course relationship: " + e.getMessage());
+            ChangeBus.publish(ChangeEvent.Kind.USER_UNENROLLED, userId, courseId);
         }
     }
+
+    // batch form of delete(userId, courseId), one transaction with per-row failures
+    public BatchResult<UserCourse> deleteAllEnrollments(List<UserCourse> userCourses) {
+        return BatchResult.execute(userCourses, (connection, uc) -> {
+            deleteRow(connection, uc.getUserId(), uc.getCourseId());
+            return -1;
+        });
+    }
     
     @Override
     public UserCourse buildFromResultSet(ResultSet rs) throws SQLException {
@@ -141,24 +219,113 @@ public class UserCourseDAO implements CrudDAO<UserCourse> {
         return new UserCourse(userId, courseId, status, role);
     }
 
+    // ENROLLMENT QUERIES
+    public List<UserCourse> findEnrollments(EnrollmentQuery query) {
+        List<UserCourse> userCourses = new ArrayList<>();
+        String sql = enrollmentsQuery(query);
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+
+            query.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) userCourses.add(buildFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading enrollments for " + query + ": " + e.getMessage());
+        }
+
+        return userCourses;
+    }
+
+    // users behind the matching enrollments, built from the same joined row instead of one read per user
+    public List<User> findUsers(EnrollmentQuery query) {
+        List<User> users = new ArrayList<>();
+        String sql = enrolledUsersQuery(query);
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+
+            query.bind(stmt);
+            UserDAO userDAO = UserDAO.getInstance();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) users.add(userDAO.buildFromResultSet(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading enrolled users for " + query + ": " + e.getMessage());
+        }
+
+        return users;
+    }
+
+    public int countEnrollments(EnrollmentQuery query) {
+        String sql = enrollmentCountQuery(query);
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+
+            query.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error counting enrollments for " + query + ": " + e.getMessage());
+        }
+
+        return 0;
+    }
+
+    // enrollments in the given courses of users with one of the given account roles, joined with the
+    // user and course so a whole roster is read in one query
+    public List<RosterRow> readRosterRows(Collection<Integer> courseIds, Collection<User.Role> userRoles) {
+        List<RosterRow> rows = new ArrayList<>();
+        if (courseIds.isEmpty() || userRoles.isEmpty()) return rows;
+
+        String query = rosterQuery(courseIds.size(), userRoles.size());
+
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+
+            int i = 1;
+            for (int courseId : courseIds) stmt.setInt(i++, courseId);
+            for (User.Role role : userRoles) stmt.setInt(i++, role.ordinal());
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new RosterRow(
+                        rs.getInt("user_id"),
+                        rs.getInt("course_id"),
+                        rs.getString("name"),
+                        rs.getString("email"),
+                        User.Role.values()[rs.getInt("role")],
+                        rs.getTimestamp("last_updated"),
+                        rs.getString("course_name"),
+                        UserCourse.Status.values()[rs.getInt("status")]));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reading roster rows: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    public List<UserCourse> getEnrollmentsForUser(int userId) {
+        return findEnrollments(EnrollmentQuery.forUser(userId));
+    }
+
+    public List<UserCourse> getEnrollmentsForCourse(int courseId) {
+        return findEnrollments(EnrollmentQuery.forCourse(courseId));
+    }
+
     public List<User> getUsersInCourseByRole(int courseId, User.Role role) {
-        UserDAO userDAO = UserDAO.getInstance();
-        return readAll().stream()
-                .filter(uc -> uc.getCourseId() == courseId && uc.getRole() == role)
-                .map(uc -> userDAO.read(uc.getUserId()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        return findUsers(EnrollmentQuery.forCourse(courseId).role(role));
     }
 
     public List<User> getActiveUsersInCourseByRole(int courseId, User.Role role) {
-        UserDAO userDAO = UserDAO.getInstance();
-        return readAll().stream()
-                .filter(uc -> uc.getCourseId() == courseId
-                        && uc.getRole() == role
-                        && uc.getStatus() == UserCourse.Status.ACTIVE)
-                .map(uc -> userDAO.read(uc.getUserId()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        return findUsers(EnrollmentQuery.forCourse(courseId).role(role).status(UserCourse.Status.ACTIVE));
+    }
+
+    public int countUsersInCourseByRole(int courseId, User.Role role) {
+        return countEnrollments(EnrollmentQuery.forCourse(courseId).role(role));
     }
-    
 }
@@ -10,22 +10,50 @@ import model.Student;
 import model.Teacher;
 import model.User;
 
-public class UserDAO implements CrudDAO<User> {
+public class UserDAO implements IdDAO<User> {
     // SINGLETON ACCESS
     private static final UserDAO instance = new UserDAO();
 
-    private UserDAO() {}
+    private UserDAO() {
+        EntityCache.register(this);
+    }
 
     public static UserDAO getInstance() { return instance; }
 
+    // COLUMNS usable in Criteria, password_hash is deliberately not queryable
+    public static final Column<User, Integer> ID = Column.integer("id");
+    public static final Column<User, String> NAME = Column.text("name");
+    public static final Column<User, String> EMAIL = Column.text("email");
+    public static final Column<User, User.Role> ROLE = Column.ordinal("role", User.Role.class);
+    public static final Column<User, Timestamp> CREATED_AT = Column.timestamp("created_at");
+    public static final Column<User, Timestamp> LAST_UPDATED = Column.timestamp("last_updated");
+
+    // package-private so the query plan test explains exactly what runs
+    static final String EMAIL_QUERY = "SELECT * FROM users WHERE email = ?";
+
+    @Override
+    public String getTableName() { return "users"; }
+
     // ABSTRACT CRUD OPERATIONS
     @Override
     public void create(User user) {
+        try (Connection connection = DBConnection.getConnection()) {
+            createRow(connection, user);
+        } catch (SQLException e) {
+            if (e.getErrorCode() == 19 && e.getMessage().contains("UNIQUE")) {
+                System.err.println("Email already exists");
+            } else {
+                System.err.println("Error adding user");
+            }
+        }
+    }
+
+    @Override
+    public int createRow(Connection connection, User user) throws SQLException {
         String query = "INSERT INTO users (name, email, password_hash, role, created_at, last_updated) VALUES (?, ?, ?, ?, ?, ?)";
         Timestamp current = new Timestamp(System.currentTimeMillis());
 
-        try (Connection connection = DBConnection.getConnection();
-            PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
@@ -43,29 +71,34 @@ public class UserDAO implements CrudDAO<User> {
                     user.setId(generatedKeys.getInt(1)); // set the generated id here
                     user.setCreatedAt(current);
                     user.setLastUpdated(current);
+                    EntityCache.invalidate(this, user.getId()); // ids can be reused after the highest row is deleted
+                    ChangeBus.publish(ChangeEvent.Kind.USER_CREATED, user.getId(), -1);
                 } else {
                     throw new SQLException("Creating user failed, no ID obtained.");
                 }
             }
-        } catch (SQLException e) {
-            if (e.getErrorCode() == 19 && e.getMessage().contains("UNIQUE")) {
-                System.err.println("Email already exists");
-            } else {
-                System.err.println("Error adding user");
-            }
         }
+        return user.getId();
     }
 
     @Override
     public User read(int id) {
+        User cached = IdentityScope.find(this, id);
+        if (cached != null) return cached; // already loaded in this unit of work
+
+        cached = EntityCache.get(this, id);
+        if (cached != null) return IdentityScope.remember(this, id, cached); // loaded by an earlier action
+
+        long stamp = EntityCache.stamp(this);
+
         String query = "SELECT * FROM users WHERE id = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setInt(1, id);
             ResultSet rs = stmt.executeQuery();
     
-            if (rs.next()) return buildFromResultSet(rs);
+            if (rs.next()) return IdentityScope.remember(this, id, EntityCache.put(this, id, buildFromResultSet(rs), stamp));
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -73,9 +106,10 @@ public class UserDAO implements CrudDAO<User> {
     }
 
     @Override
+    @Deprecated
     public List<User> readAllCondition(String columnName, Object value) {
         String query = "SELECT * FROM assignment_templates WHERE " + columnName.trim() + " = ?";
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
              PreparedStatement stmt = connection.prepareStatement(query)) {
     
             stmt.setObject(1, value);
@@ -95,7 +129,7 @@ public class UserDAO implements CrudDAO<User> {
         List<User> users = new ArrayList<>();
         String query = "SELECT * FROM users";
 
-        try (Connection connection = DBConnection.getConnection();
+        try (Connection connection = DBConnection.getReadConnection();
             PreparedStatement stmt = connection.prepareStatement(query);
             ResultSet rs = stmt.executeQuery()) {
 
@@ -109,13 +143,35 @@ public class UserDAO implements CrudDAO<User> {
         return users;
     }
 
+    // KEYSET PAGINATION
+    public Page<User> readPage(PageOrder order, String cursor, int limit) {
+        return readPage(order, null, cursor, limit);
+    }
+
+    // one page of users ordered by id or name, optionally limited to one role; pass the previous page's cursor for the next one
+    public Page<User> readPage(PageOrder order, User.Role role, String cursor, int limit) {
+        if (order == PageOrder.SUBMITTED_AT) throw new IllegalArgumentException("Users cannot be ordered by " + order);
+
+        String filter = role == null ? null : "role = ?";
+        Object[] filterParams = role == null ? new Object[0] : new Object[] { role.ordinal() };
+        return Page.seek(this, filter, filterParams, order, cursor, limit, User::getName, User::getId);
+    }
+
     @Override
     public void update(User user) {
+        try (Connection connection = DBConnection.getConnection()) {
+            updateRow(connection, user);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void updateRow(Connection connection, User user) throws SQLException {
         String query = "UPDATE users SET name = ?, email = ?, password_hash = ?, role = ?, last_updated = ? WHERE id = ?";
         Timestamp current = new Timestamp(System.currentTimeMillis());
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setString(1, user.getName());
             stmt.setString(2, user.getEmail());
@@ -131,17 +187,26 @@ public class UserDAO implements CrudDAO<User> {
 
             // Update the lastUpdated field in the User object
             user.setLastUpdated(current);
+            EntityCache.invalidate(this, user.getId());
+            ChangeBus.publish(ChangeEvent.Kind.USER_UPDATED, user.getId(), -1);
+        }
+    }
+
+    @Override
+    public void delete(int userId) {
+        try (Connection connection = DBConnection.getConnection()) {
+            deleteRow(connection, userId);
+            IdentityScope.forget(this, userId);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
     @Override
-    public void delete(int userId) {
+    public void deleteRow(Connection connection, int userId) throws SQLException {
         String query = "DELETE FROM users WHERE id = ?";
 
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
 
             stmt.setInt(1, userId);
 
@@ -149,8 +214,8 @@ public class UserDAO implements CrudDAO<User> {
             if (affectedRows == 0) {
                 throw new SQLException("Deleting user failed, no rows affected.");
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            EntityCache.invalidate(this, userId);
+            ChangeBus.publish(ChangeEvent.Kind.USER_DELETED, userId, -1);
         }
     }
 
@@ -180,9 +245,8 @@ public class UserDAO implements CrudDAO<User> {
 
     // retrieves user data from table and returns a new User object
     public User readByEmail(String email) {
-        String query = "SELECT * FROM users WHERE email = ?";
-        try (Connection connection = DBConnection.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DBConnection.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(EMAIL_QUERY)) {
     
             stmt.setString(1, email);
             ResultSet rs = stmt.executeQuery();
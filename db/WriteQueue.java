@@ -0,0 +1,328 @@
+package db;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Funnels mutations to one writer thread that commits everything submitted within a short
+// window as a single transaction (group commit). Each write runs inside its own savepoint,
+// so a failing write is rolled back on its own without discarding the rest of the group.
+// With write-behind disabled, each submitted write is committed immediately on the caller's thread.
+public class WriteQueue {
+    private static final int MAX_GROUP_SIZE = 500;
+
+    // the open group transaction of the current thread, handed out by DBConnection while a write runs
+    private static final ThreadLocal<Connection> groupConnection = new ThreadLocal<>();
+    // callbacks registered by the write or manual transaction running on this thread, run once it has committed
+    private static final ThreadLocal<List<Runnable>> commitCallbacks = new ThreadLocal<>();
+
+    private final ConnectionPool writePool;
+    private final boolean writeBehind;
+    private final long windowMillis;
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // METRICS
+    private final AtomicLong groupCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong failedWriteCount = new AtomicLong();
+
+    public WriteQueue(ConnectionPool writePool, boolean writeBehind, long windowMillis) {
+        this.writePool = writePool;
+        this.writeBehind = writeBehind;
+        this.windowMillis = windowMillis;
+
+        if (writeBehind) {
+            this.writer = new Thread(this::run, "db-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        } else {
+            this.writer = null;
+        }
+    }
+
+    // queue a write, the future completes once the group containing it has committed
+    public <T> CompletableFuture<T> submit(SqlWork<T> work) {
+        Task<T> task = new Task<>(work);
+        if (!running) {
+            task.future.completeExceptionally(new SQLException("Write queue is shut down."));
+        } else if (!writeBehind || groupConnection.get() != null || writePool.isHeldByCurrentThread()) {
+            // run now, writes submitted from inside a queued write join its group. A caller holding the
+            // writer lease runs them on it, the writer thread could never get the connection while it waits.
+            List<Task<?>> group = new ArrayList<>();
+            group.add(task);
+            commitGroup(group);
+        } else {
+            queue.add(task);
+        }
+        return task.future;
+    }
+
+    // connection of the group being written, or null when not called from inside a queued write
+    public static Connection currentGroupConnection() {
+        return groupConnection.get();
+    }
+
+    // run once the transaction containing the current write has committed (the group of a queued write, or
+    // a pooled connection with autocommit off), dropped if it rolls back. Under autocommit the statement
+    // has already been committed, so the callback runs now.
+    public static void afterCommit(Runnable callback) {
+        List<Runnable> callbacks = commitCallbacks.get();
+        if (callbacks != null) callbacks.add(callback);
+        else callback.run();
+    }
+
+    // collect this thread's callbacks for a manual transaction, null when a queued write already collects them
+    static List<Runnable> beginTransaction() {
+        if (commitCallbacks.get() != null) return null;
+        List<Runnable> callbacks = new ArrayList<>();
+        commitCallbacks.set(callbacks);
+        return callbacks;
+    }
+
+    // the manual transaction committed: run what it collected, later callbacks wait for its next commit
+    static void transactionCommitted(List<Runnable> callbacks) {
+        List<Runnable> ready = new ArrayList<>(callbacks);
+        callbacks.clear();
+        commitCallbacks.remove(); // callbacks registered while running these have nothing left to wait for
+        try {
+            runCallbacks(ready);
+        } finally {
+            commitCallbacks.set(callbacks);
+        }
+    }
+
+    // the manual transaction ended (autocommit back on or connection returned), anything still collected was rolled back
+    static void endTransaction(List<Runnable> callbacks) {
+        callbacks.clear();
+        if (commitCallbacks.get() == callbacks) commitCallbacks.remove();
+    }
+
+    // stop accepting writes and commit whatever is already queued
+    public void shutdown() {
+        running = false;
+        if (writer == null) return;
+
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isWriteBehind() { return writeBehind; }
+
+    private void run() {
+        List<Task<?>> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Task<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+
+                // keep collecting until the window closes or the group is full
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                while (group.size() < MAX_GROUP_SIZE) {
+                    queue.drainTo(group, MAX_GROUP_SIZE - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= MAX_GROUP_SIZE || remaining <= 0) break;
+
+                    Task<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                queue.drainTo(group); // shutting down, flush what is left
+            }
+
+            if (!group.isEmpty()) commitGroup(group);
+            group.clear();
+        }
+    }
+
+    private void commitGroup(List<Task<?>> group) {
+        List<Task<?>> succeeded = new ArrayList<>();
+
+        Connection outer = groupConnection.get();
+        if (outer != null) {
+            // nested submit: run inside the enclosing group, which commits it
+            for (Task<?> task : group) {
+                if (runInSavepoint(outer, task)) task.complete();
+            }
+            return;
+        }
+
+        // a caller holding the writer lease in a manual transaction commits the group with it
+        List<Runnable> enclosing = writePool.isHeldByCurrentThread() ? commitCallbacks.get() : null;
+        List<Runnable> callbacks = new ArrayList<>();
+        commitCallbacks.set(callbacks); // tasks that succeed append theirs
+        try (Connection connection = writePool.acquire()) {
+            connection.setAutoCommit(false);
+
+            for (Task<?> task : group) {
+                if (runInSavepoint(connection, task)) succeeded.add(task);
+            }
+
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error committing write group: " + e.getMessage());
+            for (Task<?> task : group) task.future.completeExceptionally(e);
+            failedWriteCount.addAndGet(succeeded.size());
+            return;
+        } finally {
+            if (enclosing != null) commitCallbacks.set(enclosing);
+            else commitCallbacks.remove();
+        }
+
+        if (enclosing != null) enclosing.addAll(callbacks);
+        else runCallbacks(callbacks);
+
+        groupCount.incrementAndGet();
+        writeCount.addAndGet(succeeded.size());
+
+        // only complete after the connection is back in the pool so callbacks can write again
+        for (Task<?> task : succeeded) task.complete();
+    }
+
+    private static void runCallbacks(List<Runnable> callbacks) {
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error in after-commit callback: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean runInSavepoint(Connection connection, Task<?> task) {
+        Connection outer = groupConnection.get();
+        List<Runnable> groupCallbacks = commitCallbacks.get();
+        List<Runnable> taskCallbacks = new ArrayList<>();
+        GroupConnection handler;
+        try {
+            handler = new GroupConnection(connection, connection.setSavepoint());
+        } catch (SQLException e) {
+            failedWriteCount.incrementAndGet();
+            task.future.completeExceptionally(e);
+            return false;
+        }
+
+        groupConnection.set((Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            handler));
+        commitCallbacks.set(taskCallbacks);
+
+        try {
+            task.run(groupConnection.get());
+            if (handler.rolledBack) throw new SQLException("Write was rolled back.");
+            connection.releaseSavepoint(handler.savepoint);
+            groupCallbacks.addAll(taskCallbacks); // kept only for writes that made it into the group
+            return true;
+        } catch (Exception e) {
+            try {
+                if (!handler.rolledBack) connection.rollback(handler.savepoint);
+                connection.releaseSavepoint(handler.savepoint);
+            } catch (SQLException rollbackError) {
+                System.err.println("Error rolling back write: " + rollbackError.getMessage());
+            }
+            failedWriteCount.incrementAndGet();
+            task.future.completeExceptionally(e);
+            return false;
+        } finally {
+            commitCallbacks.set(groupCallbacks);
+            if (outer != null) groupConnection.set(outer);
+            else groupConnection.remove();
+        }
+    }
+
+    // GETTERS
+    public int getPendingCount() { return queue.size(); }
+    public long getGroupCount() { return groupCount.get(); }
+    public long getWriteCount() { return writeCount.get(); }
+    public long getFailedWriteCount() { return failedWriteCount.get(); }
+    public double getAverageGroupSize() {
+        long groups = groupCount.get();
+        return groups == 0 ? 0.0 : (double) writeCount.get() / groups;
+    }
+
+    private static class Task<T> {
+        private final SqlWork<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        private Task(SqlWork<T> work) {
+            this.work = work;
+        }
+
+        private void run(Connection connection) throws SQLException {
+            result = work.execute(connection);
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+
+    // Connection handed to queued work: transaction control is owned by the group,
+    // so commit/close are no-ops and rollback only undoes this task's savepoint
+    private static class GroupConnection implements InvocationHandler {
+        private final Connection connection;
+        private final Savepoint savepoint;
+        private boolean rolledBack = false;
+
+        private GroupConnection(Connection connection, Savepoint savepoint) {
+            this.connection = connection;
+            this.savepoint = savepoint;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "isClosed":
+                    return false;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        if (!rolledBack) connection.rollback(savepoint);
+                        rolledBack = true;
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "GroupConnection[" + connection + "]";
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package model;
 import java.util.*;
+import java.util.function.Supplier;
 // import java.util.stream.Collectors;
 
 public class Course {
@@ -10,6 +11,10 @@ public class Course {
     private List<Assignment> assignments;
     private CourseTemplate courseTemplate;
 
+    // set when an association is loaded on first access instead of with the course row
+    private Supplier<List<Assignment>> assignmentsLoader;
+    private Supplier<CourseTemplate> courseTemplateLoader;
+
     // Constructors
     public Course() {
         this.id = -1;
@@ -47,8 +52,19 @@ public class Course {
     }
     public void setCourseTemplateId(int courseTemplateId) {this.courseTemplateId = courseTemplateId;}
 
-    public CourseTemplate getCourseTemplate() { return courseTemplate; }
-    public void setCourseTemplate(CourseTemplate courseTemplate) { this.courseTemplate = courseTemplate; }
+    public synchronized CourseTemplate getCourseTemplate() {
+        if (courseTemplateLoader != null) {
+            courseTemplate = courseTemplateLoader.get();
+            courseTemplateLoader = null;
+        }
+        return courseTemplate;
+    }
+    public synchronized void setCourseTemplate(CourseTemplate courseTemplate) {
+        this.courseTemplate = courseTemplate;
+        this.courseTemplateLoader = null;
+    }
+    public synchronized void setCourseTemplateLoader(Supplier<CourseTemplate> loader) { this.courseTemplateLoader = loader; }
+    public synchronized boolean isCourseTemplateLoaded() { return courseTemplateLoader == null; }
     
     
     public String getName() { return name; }
@@ -57,16 +73,29 @@ public class Course {
     public boolean isActive() { return active; }
     public void setActive(boolean active) { this.active = active; }
     
-    public List<Assignment> getAssignments() { return Collections.unmodifiableList(assignments); }
-    public void setAssignments(List<Assignment> assignments) { this.assignments = assignments; }
+    public List<Assignment> getAssignments() { return Collections.unmodifiableList(loadedAssignments()); }
+    public synchronized void setAssignments(List<Assignment> assignments) {
+        this.assignments = assignments;
+        this.assignmentsLoader = null;
+    }
+    public synchronized void setAssignmentsLoader(Supplier<List<Assignment>> loader) { this.assignmentsLoader = loader; }
+    public synchronized boolean isAssignmentsLoaded() { return assignmentsLoader == null; }
+
+    private synchronized List<Assignment> loadedAssignments() {
+        if (assignmentsLoader != null) {
+            assignments = new ArrayList<>(assignmentsLoader.get());
+            assignmentsLoader = null;
+        }
+        return assignments;
+    }
     
     // Assignment methods
-    public void addAssignment(Assignment a) { assignments.add(a); }
+    public void addAssignment(Assignment a) { loadedAssignments().add(a); }
     
-    public void removeAssignment(Assignment a) { assignments.remove(a); }
+    public void removeAssignment(Assignment a) { loadedAssignments().remove(a); }
 
     public double finalAverage(Map<String, Double> earnedPointsById) {
-        return assignments.stream()
+        return loadedAssignments().stream()
                 .mapToDouble(a -> a.contribution(earnedPointsById.getOrDefault(a.getId(), 0.0)))
                 .sum();
     }
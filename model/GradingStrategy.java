@@ -1,5 +1,26 @@
 package model;
 
+import java.util.BitSet;
+
 public interface GradingStrategy {
     double calculateGrade(double pointsEarned, double maxPoints);
+
+    // Batch form for a whole cohort. earned holds one cell per assignment for each student (row-major),
+    // counted marks the cells that take part, maxPoints and weights are per assignment. The grades of
+    // students [from, to) are written to out, NaN for a student with nothing counted; nothing is allocated.
+    // By default each student's counted points are totalled and passed to calculateGrade.
+    default void calculateGrades(double[] earned, BitSet counted, double[] maxPoints, double[] weights,
+                                 int from, int to, double[] out) {
+        int assignments = maxPoints.length;
+        for (int student = from; student < to; student++) {
+            double totalEarned = 0, totalMax = 0;
+            for (int a = 0, cell = student * assignments; a < assignments; a++, cell++) {
+                if (counted.get(cell)) {
+                    totalEarned += earned[cell];
+                    totalMax += maxPoints[a];
+                }
+            }
+            out[student] = totalMax > 0 ? calculateGrade(totalEarned, totalMax) : Double.NaN;
+        }
+    }
 }
@@ -0,0 +1,28 @@
+package model;
+
+import java.util.BitSet;
+
+// Grades by assignment weight: each counted assignment contributes earned / max scaled by its weight,
+// and the sum is divided by the weight counted so far, so ungraded work does not drag the grade down.
+public class WeightedGradingStrategy implements GradingStrategy {
+    @Override
+    public double calculateGrade(double pointsEarned, double maxPoints) {
+        return pointsEarned / maxPoints; // a single assignment is its own weight
+    }
+
+    @Override
+    public void calculateGrades(double[] earned, BitSet counted, double[] maxPoints, double[] weights,
+                                int from, int to, double[] out) {
+        int assignments = maxPoints.length;
+        for (int student = from; student < to; student++) {
+            double score = 0, weight = 0;
+            for (int a = 0, cell = student * assignments; a < assignments; a++, cell++) {
+                if (counted.get(cell) && maxPoints[a] > 0) {
+                    score += weights[a] * earned[cell] / maxPoints[a];
+                    weight += weights[a];
+                }
+            }
+            out[student] = weight > 0 ? score / weight : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.Student;
+import model.User;
+
+// createAll/updateAll/deleteAll through UserDAO on a scratch database: a failing row is reported with its
+// index and rolled back alone, the rows around it are kept with their generated keys, and a failure of the
+// whole transaction reports every row. A batch from a thread holding the writer lease runs on it.
+public class BatchResultTest {
+    public static void main(String[] args) throws Exception {
+        useScratchDatabase("batch-result");
+        DBSetup.createTables();
+        UserDAO users = UserDAO.getInstance();
+
+        test("createAll keeps the rows around a failing one", () -> {
+            List<User> batch = Arrays.asList(student("ada"), student("ada"), student("grace"));
+            BatchResult<User> result = users.createAll(batch);
+
+            checkEqual(3, result.size(), "size");
+            checkEqual(2, result.getSuccessCount(), "successes");
+            checkEqual(1, result.getFailures().get(0).getIndex(), "failed row");
+            check(result.getFailures().get(0).getError().getMessage().contains("UNIQUE"), "error " + result.getFailures().get(0).getError());
+            check(result.isSuccess(0) && !result.isSuccess(1) && result.isSuccess(2), "isSuccess");
+
+            int[] keys = result.getGeneratedKeys();
+            checkEqual(-1, keys[1], "key of the failed row");
+            checkEqual(keys[0], users.readByEmail("ada@example.edu").getId(), "key of row 0");
+            checkEqual(keys[2], users.readByEmail("grace@example.edu").getId(), "key of row 2");
+            checkEqual(keys[2], batch.get(2).getId(), "id set on the model");
+        });
+
+        test("updateAll reports the row that breaks a constraint", () -> {
+            User ada = users.readByEmail("ada@example.edu");
+            User grace = users.readByEmail("grace@example.edu");
+            ada.setName("Ada Lovelace");
+            grace.setEmail("ada@example.edu"); // taken
+            BatchResult<User> result = users.updateAll(Arrays.asList(ada, grace));
+
+            checkEqual(1, result.getFailureCount(), "failures");
+            checkEqual(1, result.getFailures().get(0).getIndex(), "failed row");
+            checkEqual("Ada Lovelace", users.read(ada.getId()).getName(), "updated name");
+            checkEqual("grace@example.edu", users.read(grace.getId()).getEmail(), "email of the failed row");
+        });
+
+        test("deleteAll reports missing ids and deletes the others", () -> {
+            int ada = users.readByEmail("ada@example.edu").getId();
+            BatchResult<Integer> result = users.deleteAll(Arrays.asList(ada, 9999));
+
+            checkEqual(1, result.getFailureCount(), "failures");
+            checkEqual(9999, result.getFailures().get(0).getItem(), "failed id");
+            checkEqual(null, users.readByEmail("ada@example.edu"), "deleted row");
+        });
+
+        test("a failed transaction fails every row and keeps none", () -> {
+            List<String> emails = Arrays.asList("x@example.edu", "y@example.edu");
+            BatchResult<String> result = BatchResult.execute(emails, (connection, email) -> {
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO users (name, email, password_hash, role) VALUES ('x', ?, 'x', 0)")) {
+                    stmt.setString(1, email);
+                    stmt.executeUpdate();
+                }
+                if (email.startsWith("y")) throw new IllegalStateException("not a row failure");
+                return 1;
+            });
+
+            checkEqual(2, result.getFailureCount(), "failures");
+            checkEqual(0, result.getFailures().get(0).getIndex(), "failures in input order");
+            checkEqual(-1, result.getGeneratedKeys()[0], "key of a row that ran");
+            checkEqual(null, users.readByEmail("x@example.edu"), "row that ran before the failure");
+        });
+
+        test("a batch under a held writer lease runs on it, even with write-behind", () -> {
+            DBConnection.setProfile(new StorageProfile("WAL", "NORMAL", -16000, 0, "MEMORY", 5000, 2, true, 5));
+            try {
+                long start = System.nanoTime();
+                try (Connection connection = DBConnection.getConnection()) {
+                    connection.setAutoCommit(false);
+                    BatchResult<User> result = users.createAll(Arrays.asList(student("hopper"), student("lovelace")));
+                    checkEqual(2, result.getSuccessCount(), "successes");
+                    connection.commit();
+                }
+                check(System.nanoTime() - start < 5_000_000_000L, "batch waited for the writer");
+                checkEqual("hopper", users.readByEmail("hopper@example.edu").getName(), "committed row");
+            } finally {
+                DBConnection.setProfile(StorageProfile.defaultProfile());
+            }
+        });
+
+        test("an empty batch does nothing", () -> {
+            BatchResult<User> result = users.createAll(new ArrayList<>());
+            checkEqual(0, result.size(), "size");
+            check(!result.hasFailures(), "failures");
+            checkEqual(Collections.emptyList(), result.getFailures(), "failure list");
+        });
+
+        finish();
+    }
+
+    private static User student(String name) {
+        return new Student(name, name + "@example.edu", "hash");
+    }
+}
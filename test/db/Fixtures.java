@@ -0,0 +1,138 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+
+import model.Assignment;
+import model.Submission;
+import model.User;
+import model.UserCourse;
+
+// Bulk test data written with plain batched INSERTs, far faster than the DAOs for benchmark sized
+// courses. The materialized gradebook is not maintained by these inserts, call GradebookDAO.rebuild().
+final class Fixtures {
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private Fixtures() {}
+
+    // a course with one teacher and the given students and assignments. 90% of (student, assignment)
+    // cells have one or two submissions, mostly graded, and 5% of submissions have a second collaborator.
+    // Returns the course id; the same seed gives the same rows.
+    static int seedCourse(int students, int assignments, long seed) throws SQLException {
+        Random random = new Random(seed);
+        try (Connection connection = DBConnection.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int firstUser = nextId(connection, "users");
+                int courseId = nextId(connection, "courses");
+                int firstAssignment = nextId(connection, "assignments");
+                int submissionId = nextId(connection, "submissions");
+                long start = Timestamp.valueOf("2025-01-06 09:00:00").getTime();
+
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO users (id, name, email, password_hash, role) VALUES (?, ?, ?, ?, ?)")) {
+                    for (int i = 0; i <= students; i++) {
+                        stmt.setInt(1, firstUser + i);
+                        stmt.setString(2, (i == 0 ? "Teacher " : "Student ") + (firstUser + i));
+                        stmt.setString(3, "user" + (firstUser + i) + "@example.edu");
+                        stmt.setString(4, "x");
+                        stmt.setInt(5, (i == 0 ? User.Role.TEACHER : User.Role.STUDENT).ordinal());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO courses (id, name) VALUES (?, ?)")) {
+                    stmt.setInt(1, courseId);
+                    stmt.setString(2, "Course " + courseId);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO user_courses (user_id, course_id, status, role) VALUES (?, ?, ?, ?)")) {
+                    for (int i = 0; i <= students; i++) {
+                        stmt.setInt(1, firstUser + i);
+                        stmt.setInt(2, courseId);
+                        stmt.setInt(3, (i > 0 && random.nextInt(20) == 0 ? UserCourse.Status.INACTIVE : UserCourse.Status.ACTIVE).ordinal());
+                        stmt.setInt(4, (i == 0 ? User.Role.TEACHER : User.Role.STUDENT).ordinal());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO assignments (id, name, due_date, max_points, course_id, weight, type, submission_types) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (int a = 0; a < assignments; a++) {
+                        stmt.setInt(1, firstAssignment + a);
+                        stmt.setString(2, "Assignment " + (a + 1));
+                        stmt.setTimestamp(3, new Timestamp(start + (a + 1) * 7 * DAY_MILLIS));
+                        stmt.setDouble(4, 100);
+                        stmt.setInt(5, courseId);
+                        stmt.setDouble(6, 1.0 / assignments);
+                        stmt.setInt(7, Assignment.Type.HOMEWORK.toInt());
+                        stmt.setString(8, "pdf");
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+
+                try (PreparedStatement submission = connection.prepareStatement("INSERT INTO submissions (id, assignment_id, grader_id, filepath, submitted_at, points_earned, grade, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement collaborator = connection.prepareStatement("INSERT INTO user_submissions (user_id, submission_id) VALUES (?, ?)")) {
+                    for (int s = 1; s <= students; s++) {
+                        for (int a = 0; a < assignments; a++) {
+                            if (random.nextInt(10) == 0) continue; // nothing submitted
+
+                            int attempts = 1 + random.nextInt(2);
+                            for (int attempt = 0; attempt < attempts; attempt++) {
+                                int status = random.nextInt(10) < 7 ? Submission.Status.GRADED.ordinal()
+                                           : random.nextBoolean() ? Submission.Status.UNGRADED.ordinal() : Submission.Status.LATE.ordinal();
+                                double points = status == Submission.Status.GRADED.ordinal() ? random.nextInt(101) : 0;
+                                submission.setInt(1, submissionId);
+                                submission.setInt(2, firstAssignment + a);
+                                submission.setInt(3, firstUser);
+                                submission.setString(4, "data/courses/fixture/" + submissionId + ".pdf");
+                                submission.setTimestamp(5, new Timestamp(start + a * 7 * DAY_MILLIS + attempt * DAY_MILLIS + random.nextInt(3_600_000)));
+                                submission.setDouble(6, points);
+                                submission.setDouble(7, points);
+                                submission.setInt(8, status);
+                                submission.addBatch();
+
+                                collaborator.setInt(1, firstUser + s);
+                                collaborator.setInt(2, submissionId);
+                                collaborator.addBatch();
+                                int partner = 1 + random.nextInt(students);
+                                if (partner != s && random.nextInt(20) == 0) {
+                                    collaborator.setInt(1, firstUser + partner);
+                                    collaborator.setInt(2, submissionId);
+                                    collaborator.addBatch();
+                                }
+                                submissionId++;
+                            }
+                        }
+                        if (s % 200 == 0) { // keep the batches bounded
+                            submission.executeBatch();
+                            collaborator.executeBatch();
+                        }
+                    }
+                    submission.executeBatch();
+                    collaborator.executeBatch();
+                }
+
+                connection.commit();
+                return courseId;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int nextId(Connection connection, String table) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
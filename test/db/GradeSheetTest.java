@@ -0,0 +1,134 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import model.Assignment;
+import model.GradingStrategy;
+import model.ProportionalGradingStrategy;
+import model.User;
+import model.UserCourse;
+import model.WeightedGradingStrategy;
+
+// GradeSheet on a hand-built three by three course: lookups, the missing / ungraded / graded split,
+// totals and batch grades against arithmetic done by hand. Then readSheet on a seeded course, cell by
+// cell against the gradebook entries of each student.
+public class GradeSheetTest {
+    public static void main(String[] args) throws Exception {
+        // assignments 30, 12 and 21 in due date order; student 5 has two graded cells and one missing,
+        // student 9 one ungraded, one missing and one graded, student 20 nothing at all
+        BitSet missing = new BitSet();
+        BitSet ungraded = new BitSet();
+        missing.set(2);
+        ungraded.set(3);
+        missing.set(4);
+        missing.set(6, 9);
+        GradeSheet sheet = new GradeSheet(7, new int[] { 5, 9, 20 }, new String[] { "Ava", "Ben", "Eli" }, new boolean[] { true, false, true },
+                                          new int[] { 30, 12, 21 }, new String[] { "HW1", "HW2", "Exam" }, new double[] { 10, 20, 40 },
+                                          new double[] { 1, 2, 1 }, new double[] { 8, 15, 0, 0, 0, 30, 0, 0, 0 }, missing, ungraded);
+
+        test("cells are missing, ungraded or graded", () -> {
+            checkEqual(3, sheet.getStudentCount(), "students");
+            checkEqual(3, sheet.getAssignmentCount(), "assignments");
+            checkEqual(15.0, sheet.getEarned(0, 1), "earned of student 5 on 12");
+            check(sheet.isGraded(0, 0) && sheet.isGraded(0, 1) && sheet.isGraded(1, 2), "graded cells");
+            check(sheet.isMissing(0, 2) && !sheet.isGraded(0, 2) && !sheet.isUngraded(0, 2), "missing cell of student 5");
+            check(sheet.isUngraded(1, 0) && !sheet.isGraded(1, 0) && !sheet.isMissing(1, 0), "ungraded cell of student 9");
+            for (int a = 0; a < 3; a++) check(sheet.isMissing(2, a) && !sheet.isGraded(2, a), "cell " + a + " of student 20");
+            check(!sheet.isActive(1), "student 9 active");
+        });
+
+        test("ids are found in their sheet positions", () -> {
+            checkEqual(0, sheet.indexOfStudent(5), "student 5");
+            checkEqual(2, sheet.indexOfStudent(20), "student 20");
+            checkEqual(-1, sheet.indexOfStudent(6), "student 6");
+            checkEqual(-1, sheet.indexOfStudent(21), "student 21");
+            checkEqual(0, sheet.indexOfAssignment(30), "assignment 30");
+            checkEqual(1, sheet.indexOfAssignment(12), "assignment 12");
+            checkEqual(2, sheet.indexOfAssignment(21), "assignment 21");
+            checkEqual(-1, sheet.indexOfAssignment(13), "assignment 13");
+            checkEqual("HW2", sheet.getAssignmentName(sheet.indexOfAssignment(12)), "name of assignment 12");
+        });
+
+        test("totals count graded cells only", () -> {
+            checkEqual("[23.0, 30.0, 0.0]", Arrays.toString(sheet.totalEarned()), "earned totals");
+            checkEqual("[30.0, 40.0, 0.0]", Arrays.toString(sheet.totalMax()), "max totals");
+            checkEqual(30.0, sheet.getTotalMax(0), "max of student 5");
+        });
+
+        test("batch grades match the arithmetic", () -> {
+            double[] grades = grade(sheet, new ProportionalGradingStrategy());
+            checkClose(23.0 / 30, grades[0], 1e-12, "proportional grade of student 5");
+            checkClose(0.75, grades[1], 1e-12, "proportional grade of student 9");
+            check(Double.isNaN(grades[2]), "proportional grade of student 20: " + grades[2]);
+
+            grades = grade(sheet, new WeightedGradingStrategy());
+            checkClose((1 * 0.8 + 2 * 0.75) / 3, grades[0], 1e-12, "weighted grade of student 5");
+            checkClose(0.75, grades[1], 1e-12, "weighted grade of student 9");
+            check(Double.isNaN(grades[2]), "weighted grade of student 20: " + grades[2]);
+
+            // a range leaves the other students' slots alone
+            double[] out = { -1, -1, -1 };
+            sheet.calculateGrades(new ProportionalGradingStrategy(), 1, 2, out);
+            checkEqual("[-1.0, 0.75, -1.0]", Arrays.toString(out), "grades of students [1, 2)");
+        });
+
+        test("the size estimate follows the cells", () -> {
+            check(sheet.estimateBytes() >= 8 * 9, "estimate of the small sheet: " + sheet.estimateBytes());
+            long large = GradeSheets.random(1, 5000, 60, 1).estimateBytes();
+            check(large >= 8L * 5000 * 60 && large < 3_000_000, "estimate of a 5,000 x 60 sheet: " + large);
+        });
+
+        useScratchDatabase("grade-sheet");
+        DBSetup.createTables();
+        int course = Fixtures.seedCourse(15, 5, 21);
+        GradebookDAO.getInstance().rebuild();
+
+        test("readSheet holds every student's latest graded points", () -> {
+            GradeSheet read = GradebookDAO.getInstance().readSheet(course);
+            List<UserCourse> enrolled = UserCourseDAO.getInstance().readAll().stream()
+                .filter(e -> e.getCourseId() == course && e.getRole() == User.Role.STUDENT)
+                .sorted(Comparator.comparingInt(UserCourse::getUserId)).collect(Collectors.toList());
+            List<Assignment> assignments = AssignmentDAO.getInstance().find(Criteria.where(AssignmentDAO.COURSE_ID, course)).stream()
+                .sorted(Comparator.comparing(Assignment::getDueDate).thenComparingInt(Assignment::getId)).collect(Collectors.toList());
+            checkEqual(enrolled.size(), read.getStudentCount(), "students");
+            checkEqual(assignments.size(), read.getAssignmentCount(), "assignments");
+
+            for (int a = 0; a < assignments.size(); a++) {
+                checkEqual(assignments.get(a).getId(), read.getAssignmentId(a), "assignment " + a);
+                checkEqual(assignments.get(a).getMaxPoints(), read.getMaxPoints(a), "max points of assignment " + a);
+            }
+            int ungradedCells = 0;
+            for (int s = 0; s < enrolled.size(); s++) {
+                UserCourse enrollment = enrolled.get(s);
+                checkEqual(enrollment.getUserId(), read.getStudentId(s), "student " + s);
+                checkEqual(enrollment.getStatus() == UserCourse.Status.ACTIVE, read.isActive(s), "active of student " + s);
+
+                Map<Integer, GradebookEntry> entries = GradebookDAO.getInstance().readEntries(enrollment.getUserId(), course);
+                for (int a = 0; a < assignments.size(); a++) {
+                    GradebookEntry entry = entries.get(read.getAssignmentId(a));
+                    String cell = "cell of student " + read.getStudentId(s) + " on " + read.getAssignmentId(a);
+                    checkEqual(entry == null, read.isMissing(s, a), "missing " + cell);
+                    checkEqual(entry != null && !entry.hasGradedSubmission(), read.isUngraded(s, a), "ungraded " + cell);
+                    checkEqual(entry != null && entry.hasGradedSubmission() ? entry.getGradedPoints() : 0.0, read.getEarned(s, a), "points of " + cell);
+                    if (read.isUngraded(s, a)) ungradedCells++;
+                }
+            }
+            check(ungradedCells > 0, "no ungraded cells in the seeded course");
+        });
+
+        finish();
+    }
+
+    private static double[] grade(GradeSheet sheet, GradingStrategy strategy) {
+        double[] grades = new double[sheet.getStudentCount()];
+        sheet.calculateGrades(strategy, 0, grades.length, grades);
+        return grades;
+    }
+}
@@ -0,0 +1,46 @@
+package db;
+
+import java.util.BitSet;
+import java.util.Random;
+
+// In-memory GradeSheets for tests outside the db package, which cannot call its constructor.
+public final class GradeSheets {
+    private GradeSheets() {}
+
+    // students with ascending ids and assignments whose ids descend in due date order. About 10% of cells
+    // are missing and 10% ungraded, the rest hold up to the assignment's max points. The same seed gives the same sheet.
+    public static GradeSheet random(int courseId, int students, int assignments, long seed) {
+        Random random = new Random(seed);
+        int[] studentIds = new int[students];
+        String[] studentNames = new String[students];
+        boolean[] active = new boolean[students];
+        for (int s = 0; s < students; s++) {
+            studentIds[s] = 10 + 3 * s;
+            studentNames[s] = "Student " + studentIds[s];
+            active[s] = random.nextInt(20) != 0;
+        }
+
+        int[] assignmentIds = new int[assignments];
+        String[] assignmentNames = new String[assignments];
+        double[] maxPoints = new double[assignments];
+        double[] weights = new double[assignments];
+        for (int a = 0; a < assignments; a++) {
+            assignmentIds[a] = 1000 - 7 * a;
+            assignmentNames[a] = "Assignment " + (a + 1);
+            maxPoints[a] = 10 * (1 + random.nextInt(10));
+            weights[a] = 1 + random.nextInt(4);
+        }
+
+        double[] earned = new double[students * assignments];
+        BitSet missing = new BitSet();
+        BitSet ungraded = new BitSet();
+        for (int cell = 0; cell < earned.length; cell++) {
+            int kind = random.nextInt(10);
+            if (kind == 0) missing.set(cell);
+            else if (kind == 1) ungraded.set(cell);
+            else earned[cell] = Math.round(random.nextDouble() * maxPoints[cell % assignments] * 2) / 2.0;
+        }
+        return new GradeSheet(courseId, studentIds, studentNames, active, assignmentIds, assignmentNames, maxPoints, weights,
+                              earned, missing, ungraded);
+    }
+}
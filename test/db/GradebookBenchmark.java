@@ -0,0 +1,78 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Assignment;
+import model.Submission;
+import model.User;
+
+// Course grade views on a 2,000 student x 40 assignment fixture (sizes can be passed as arguments):
+// the latest graded submission of every (student, assignment) looked up one cell at a time, as the
+// stats panels used to, against GradebookDAO.readSheet's single ranked query, and the per-student
+// totals summed from the sheet against the materialized gradebook rows. Also checks that both
+// approaches agree, so a faster query cannot silently change the grades.
+public class GradebookBenchmark {
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int assignments = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+        useScratchDatabase("gradebook-benchmark");
+        DBSetup.createTables();
+        int courseId = Fixtures.seedCourse(students, assignments, 42);
+        System.out.println(students + " students x " + assignments + " assignments, "
+            + SubmissionDAO.getInstance().count(Criteria.where()) + " submissions");
+
+        time("rebuild materialized gradebook", 3, () -> check(GradebookDAO.getInstance().rebuild(), "rebuild failed"));
+
+        GradeSheet[] sheet = new GradeSheet[1];
+        Map<Integer, Map<Integer, Double>> perCell = new HashMap<>();
+        Map<Integer, GradebookRow> rows = new HashMap<>();
+        time("one lookup per (student, assignment)", 1, () -> perCell.putAll(readCellByCell(courseId)));
+        time("readSheet, one ranked query", 5, () -> sheet[0] = GradebookDAO.getInstance().readSheet(courseId));
+        time("readCourse, materialized totals", 5, () -> rows.putAll(GradebookDAO.getInstance().readCourse(courseId)));
+
+        test("the sheet matches the cell by cell lookups", () -> {
+            for (int student = 0; student < sheet[0].getStudentCount(); student++) {
+                Map<Integer, Double> graded = perCell.getOrDefault(sheet[0].getStudentId(student), new HashMap<>());
+                for (int assignment = 0; assignment < sheet[0].getAssignmentCount(); assignment++) {
+                    Double points = graded.get(sheet[0].getAssignmentId(assignment));
+                    checkEqual(points != null, sheet[0].isGraded(student, assignment), "graded cell " + student + "," + assignment);
+                    if (points != null) checkEqual(points, sheet[0].getEarned(student, assignment), "points " + student + "," + assignment);
+                }
+            }
+        });
+        test("the materialized totals match the sheet", () -> {
+            for (int student = 0; student < sheet[0].getStudentCount(); student++) {
+                GradebookRow row = rows.get(sheet[0].getStudentId(student));
+                double total = sheet[0].getTotalEarned(student);
+                checkClose(total, row == null ? 0 : row.getEarnedPoints(), 1e-6, "total of student " + sheet[0].getStudentId(student));
+            }
+        });
+        finish();
+    }
+
+    // latest graded points per student id and assignment id, one query per cell
+    private static Map<Integer, Map<Integer, Double>> readCellByCell(int courseId) {
+        Map<Integer, Map<Integer, Double>> graded = new HashMap<>();
+        List<User> students = UserCourseDAO.getInstance().getUsersInCourseByRole(courseId, User.Role.STUDENT);
+        List<Assignment> assignments = AssignmentDAO.getInstance().find(Criteria.where(AssignmentDAO.COURSE_ID, courseId));
+
+        for (User student : students) {
+            for (Assignment assignment : assignments) {
+                List<Submission> submissions = SubmissionDAO.getInstance().find(Criteria.where(SubmissionDAO.ASSIGNMENT_ID, assignment.getId())
+                    .and(SubmissionDAO.hasCollaborator(student.getId()))
+                    .orderByDesc(SubmissionDAO.SUBMITTED_AT).orderByDesc(SubmissionDAO.ID));
+                for (Submission submission : submissions) {
+                    if (submission.getStatus() != Submission.Status.GRADED) continue;
+                    graded.computeIfAbsent(student.getId(), id -> new HashMap<>()).put(assignment.getId(), submission.getPointsEarned());
+                    break;
+                }
+            }
+        }
+        return graded;
+    }
+}
@@ -0,0 +1,146 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import model.Assignment;
+import model.Course;
+import model.Submission;
+import model.User;
+
+// The materialized gradebook on a seeded course: submission and assignment writes through the DAOs keep
+// both tables equal to what rebuild() computes, check() reports rows changed behind the DAOs' back, and
+// rebuild() repairs them. Totals follow the latest graded submission, even under a newer ungraded one.
+public class GradebookDAOTest {
+    public static void main(String[] args) throws Exception {
+        useScratchDatabase("gradebook");
+        DBSetup.createTables();
+        int course = Fixtures.seedCourse(10, 4, 5);
+        GradebookDAO gradebook = GradebookDAO.getInstance();
+        SubmissionDAO submissions = SubmissionDAO.getInstance();
+        AssignmentDAO assignments = AssignmentDAO.getInstance();
+
+        int teacher = UserCourseDAO.getInstance().getUsersInCourseByRole(course, User.Role.TEACHER).get(0).getId();
+        List<User> students = UserCourseDAO.getInstance().getUsersInCourseByRole(course, User.Role.STUDENT);
+        int student = students.get(0).getId();
+        int partner = students.get(1).getId();
+        Assignment assignment = assignments.find(Criteria.where(AssignmentDAO.COURSE_ID, course)).get(0);
+
+        test("a rebuilt gradebook is consistent", () -> {
+            check(gradebook.rebuild(), "rebuild failed");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems");
+            checkEqual(10, gradebook.readCourse(course).size(), "students with totals");
+        });
+
+        test("a new graded submission becomes the student's entry and total", () -> {
+            double before = gradebook.read(student, course).getEarnedPoints();
+            GradebookEntry old = gradebook.readEntries(student, course).get(assignment.getId());
+            double replaced = old != null && old.hasGradedSubmission() ? old.getGradedPoints() : 0;
+
+            Submission submission = new Submission(-1, assignment.getId(), teacher, "new.pdf", new Timestamp(System.currentTimeMillis()),
+                                                   42, 42, Submission.Status.GRADED, Arrays.asList(student, partner));
+            submissions.create(submission);
+
+            GradebookEntry entry = gradebook.readEntries(student, course).get(assignment.getId());
+            checkEqual(submission.getId(), entry.getSubmissionId(), "latest submission");
+            checkEqual(submission.getId(), gradebook.readEntries(partner, course).get(assignment.getId()).getSubmissionId(), "partner's latest submission");
+            checkClose(before - replaced + 42, gradebook.read(student, course).getEarnedPoints(), 1e-9, "earned points");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems");
+        });
+
+        test("an ungraded resubmission keeps the earlier grade in every total", () -> {
+            GradebookRow before = gradebook.read(student, course);
+            GradebookEntry graded = gradebook.readEntries(student, course).get(assignment.getId());
+            check(graded.hasGradedSubmission(), "no graded submission to resubmit over");
+
+            Submission resubmission = new Submission(-1, assignment.getId(), teacher, "resubmitted.pdf", new Timestamp(System.currentTimeMillis() + 60_000),
+                                                     0, 0, Submission.Status.UNGRADED, Collections.singletonList(student));
+            submissions.create(resubmission);
+
+            GradebookEntry entry = gradebook.readEntries(student, course).get(assignment.getId());
+            checkEqual(resubmission.getId(), entry.getSubmissionId(), "latest submission");
+            checkEqual(graded.getGradedSubmissionId(), entry.getGradedSubmissionId(), "latest graded submission");
+
+            GradebookRow after = gradebook.read(student, course);
+            checkClose(before.getEarnedPoints(), after.getEarnedPoints(), 1e-9, "earned points");
+            checkClose(before.getMaxPoints(), after.getMaxPoints(), 1e-9, "max points");
+            checkClose(before.getWeightedGrade(), after.getWeightedGrade(), 1e-9, "weighted grade");
+            checkEqual(before.getGradedCount(), after.getGradedCount(), "graded assignments");
+            checkEqual(before.getSubmittedCount(), after.getSubmittedCount(), "submitted assignments");
+
+            // the stats panels' sheet counts the same submission
+            GradeSheet sheet = gradebook.readSheet(course);
+            int row = sheet.indexOfStudent(student);
+            double sheetEarned = 0;
+            for (int a = 0; a < sheet.getAssignmentCount(); a++) sheetEarned += sheet.getEarned(row, a);
+            checkClose(sheetEarned, after.getEarnedPoints(), 1e-9, "earned points of the sheet");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems");
+        });
+
+        test("regrading, dropping a collaborator and deleting keep it consistent", () -> {
+            Submission submission = submissions.find(Criteria.where(SubmissionDAO.ASSIGNMENT_ID, assignment.getId())
+                .orderByDesc(SubmissionDAO.SUBMITTED_AT).orderByDesc(SubmissionDAO.ID).limit(1)).get(0);
+            submission.setGraderId(teacher);
+            submission.setPointsEarned(17);
+            submission.setStatus(Submission.Status.GRADED);
+            submissions.update(submission);
+            checkEqual(17.0, gradebook.readEntries(student, course).get(assignment.getId()).getGradedPoints(), "regraded points");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after regrading");
+
+            submission.setCollaborators(Collections.singletonList(student));
+            submissions.update(submission);
+            check(gradebook.readEntries(partner, course).get(assignment.getId()) == null
+                  || gradebook.readEntries(partner, course).get(assignment.getId()).getSubmissionId() != submission.getId(), "partner still credited");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after dropping a collaborator");
+
+            submissions.delete(submission.getId());
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after deleting");
+        });
+
+        test("changing, moving and deleting an assignment keep it consistent", () -> {
+            Course other = new Course(null, "Other course");
+            CourseDAO.getInstance().create(other);
+
+            Assignment changed = assignments.read(assignment.getId());
+            changed.setMaxPoints(50);
+            assignments.update(changed);
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after changing max points");
+
+            changed.setCourseId(other.getId());
+            assignments.update(changed);
+            check(gradebook.readEntries(student, course).get(assignment.getId()) == null, "entry left in the old course");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after moving");
+
+            assignments.delete(changed.getId());
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after deleting");
+        });
+
+        test("check() reports rows changed behind the DAOs and rebuild() repairs them", () -> {
+            execute("UPDATE submissions SET points_earned = points_earned + 1 WHERE status = " + Submission.Status.GRADED.ordinal());
+            execute("DELETE FROM gradebook WHERE user_id = " + student);
+
+            List<String> problems = gradebook.check();
+            check(problems.stream().anyMatch(p -> p.startsWith("gradebook_entries:")), "entry drift not reported: " + problems);
+            check(problems.stream().anyMatch(p -> p.startsWith("gradebook:")), "missing totals not reported: " + problems);
+
+            check(gradebook.rebuild(), "rebuild failed");
+            checkEqual(Collections.emptyList(), gradebook.check(), "problems after rebuilding");
+            check(gradebook.read(student, course) != null, "totals of the student restored");
+        });
+
+        finish();
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = DBConnection.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import model.Student;
+import model.Submission;
+import model.Teacher;
+import model.User;
+
+// Keyset pagination through UserDAO and SubmissionDAO on a scratch database: walking every page visits
+// each row once in the order a plain ORDER BY gives, ties on the sort key are split by id, the limit + 1
+// probe leaves no empty trailing page, and cursors survive sort keys with newlines and non-ASCII text.
+public class PageTest {
+    public static void main(String[] args) throws Exception {
+        useScratchDatabase("page");
+        DBSetup.createTables();
+        UserDAO users = UserDAO.getInstance();
+        SubmissionDAO submissions = SubmissionDAO.getInstance();
+
+        // repeated names so pages have to break ties on id
+        for (String name : Arrays.asList("Mia", "Ben", "Mia", "Zoë\nSmith", "Ava", "Ben", "Mia", "Eli", "Ava")) {
+            users.create(new Student(name, name.replace('\n', '.') + users.readAll().size() + "@example.edu", "hash"));
+        }
+        users.create(new Teacher("Ben", "teacher@example.edu", "hash"));
+
+        test("pages by name visit every user once, ties split by id", () -> {
+            List<Integer> expected = ids("SELECT id FROM users ORDER BY name, id");
+            for (int limit = 1; limit <= 11; limit++) {
+                int size = limit;
+                List<User> walked = walk(cursor -> users.readPage(PageOrder.NAME, cursor, size), size);
+                checkEqual(expected, walked.stream().map(User::getId).collect(Collectors.toList()), "ids with page size " + limit);
+            }
+        });
+
+        test("pages by id with a role filter", () -> {
+            List<Integer> expected = ids("SELECT id FROM users WHERE role = " + User.Role.STUDENT.ordinal() + " ORDER BY id");
+            List<User> walked = walk(cursor -> users.readPage(PageOrder.ID, User.Role.STUDENT, cursor, 4), 4);
+            checkEqual(expected, walked.stream().map(User::getId).collect(Collectors.toList()), "student ids");
+        });
+
+        test("a page that ends exactly at the last row has no next cursor", () -> {
+            int total = users.readAll().size();
+            Page<User> page = users.readPage(PageOrder.ID, null, total);
+            checkEqual(total, page.getItems().size(), "rows");
+            check(!page.hasMore(), "next cursor on the last page");
+
+            Page<User> first = users.readPage(PageOrder.ID, null, total - 1);
+            check(first.hasMore(), "no next cursor with one row left");
+            checkEqual(1, users.readPage(PageOrder.ID, first.getNextCursor(), total - 1).getItems().size(), "rows on the last page");
+        });
+
+        test("a cursor keeps its place when rows are added before it", () -> {
+            Page<User> first = users.readPage(PageOrder.NAME, null, 3);
+            List<User> second = users.readPage(PageOrder.NAME, first.getNextCursor(), 3).getItems();
+            users.create(new Student("Aaron", "aaron@example.edu", "hash"));
+
+            List<User> again = users.readPage(PageOrder.NAME, first.getNextCursor(), 3).getItems();
+            checkEqual(second.stream().map(User::getId).collect(Collectors.toList()),
+                       again.stream().map(User::getId).collect(Collectors.toList()), "second page");
+        });
+
+        test("submissions newest first, equal timestamps split by id", () -> {
+            Fixtures.seedCourse(6, 5, 3);
+            execute("UPDATE submissions SET submitted_at = (SELECT MIN(submitted_at) FROM submissions) WHERE id % 3 = 0");
+
+            List<Integer> expected = ids("SELECT id FROM submissions ORDER BY submitted_at DESC, id DESC");
+            List<Submission> walked = walk(cursor -> submissions.readPage(PageOrder.SUBMITTED_AT, cursor, 7), 7);
+            checkEqual(expected, walked.stream().map(Submission::getId).collect(Collectors.toList()), "submission ids");
+        });
+
+        test("bad page requests are rejected", () -> {
+            checkThrows(() -> users.readPage(PageOrder.NAME, "not a cursor", 5), "malformed cursor");
+            checkThrows(() -> users.readPage(PageOrder.NAME, null, 0), "page size 0");
+            checkThrows(() -> users.readPage(PageOrder.SUBMITTED_AT, null, 5), "users by submission date");
+        });
+
+        finish();
+    }
+
+    // follow next cursors from the first page to the last, checking every page's size on the way
+    private static <T> List<T> walk(Function<String, Page<T>> next, int limit) {
+        List<T> rows = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<T> page = next.apply(cursor);
+            if (page.hasMore()) checkEqual(limit, page.getItems().size(), "rows on a full page");
+            check(!page.getItems().isEmpty() || rows.isEmpty(), "empty trailing page");
+            rows.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return rows;
+    }
+
+    private static void checkThrows(Runnable body, String what) {
+        try {
+            body.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError(what + ": no IllegalArgumentException");
+    }
+
+    private static List<Integer> ids(String query) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection connection = DBConnection.getReadConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = DBConnection.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
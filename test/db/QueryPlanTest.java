@@ -0,0 +1,137 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import model.Submission;
+import model.User;
+import model.UserCourse;
+
+// EXPLAIN QUERY PLAN for the DAOs' hot lookups on a freshly migrated database. Every query comes from
+// the DAO's own query constants, builders or Criteria, and any SCAN of a large table fails, including
+// scans that only walk a whole index: these lookups must SEARCH. Run after changing a query or an index.
+public class QueryPlanTest {
+    // tables that grow with enrollments and submissions, scanning the small template and course tables is fine
+    private static final Set<String> LARGE_TABLES = new HashSet<>(Arrays.asList(
+        "users", "user_courses", "assignments", "submissions", "user_submissions", "gradebook_entries", "gradebook"));
+    private static final Pattern TABLE_REFERENCE = Pattern.compile("(?i)\\b(?:FROM|JOIN)\\s+(\\w+)(?:\\s+(?:AS\\s+)?(\\w+))?");
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "WHERE", "JOIN", "LEFT", "INNER", "ON", "ORDER", "GROUP", "LIMIT", "WINDOW", "USING"));
+
+    public static void main(String[] args) throws Exception {
+        useScratchDatabase("query-plan");
+        DBSetup.createTables();
+
+        test("a whole-index scan is caught", () ->
+            checkEqual(1, largeTableScans("SELECT COUNT(*) FROM submissions").size(), "scans of a bare count"));
+        for (Map.Entry<String, String> query : hotQueries().entrySet()) {
+            test(query.getKey(), () -> {
+                List<String> scans = largeTableScans(query.getValue());
+                check(scans.isEmpty(), "scans " + scans + " in " + query.getValue());
+            });
+        }
+        finish();
+    }
+
+    private static Map<String, String> hotQueries() {
+        SubmissionDAO submissions = SubmissionDAO.getInstance();
+        AssignmentDAO assignments = AssignmentDAO.getInstance();
+        UserCourseDAO enrollments = UserCourseDAO.getInstance();
+        List<Integer> ids = Arrays.asList(1, 2, 3);
+
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("submissions by assignment", Criteria.where(SubmissionDAO.ASSIGNMENT_ID, 1).toSql("*", submissions));
+        queries.put("ungraded count by assignments", Criteria.where(SubmissionDAO.STATUS, Submission.Status.UNGRADED)
+            .in(SubmissionDAO.ASSIGNMENT_ID, ids).toSql("1", submissions));
+        queries.put("recent submissions by assignments", Criteria.<Submission>where().in(SubmissionDAO.ASSIGNMENT_ID, ids)
+            .orderByDesc(SubmissionDAO.SUBMITTED_AT).limit(5).toSql("*", submissions));
+        queries.put("student submissions by assignments", Criteria.<Submission>where().in(SubmissionDAO.ASSIGNMENT_ID, ids)
+            .and(SubmissionDAO.hasCollaborator(1)).orderBy(SubmissionDAO.ID).toSql("*", submissions));
+        queries.put("collaborators of a submission", SubmissionDAO.COLLABORATORS_QUERY);
+        queries.put("collaborators of a batch", SubmissionDAO.batchCollaboratorsQuery(3));
+        queries.put("submission row", SubmissionDAO.ROW_QUERY + " WHERE s.id = ?");
+        queries.put("submission rows, next page", Page.seekQuery("(" + SubmissionDAO.ROW_QUERY + ")",
+            "course_id IN (?, ?, ?)", PageOrder.SUBMITTED_AT, true));
+        queries.put("latest submission rows, first page", Page.seekQuery(SubmissionDAO.LATEST_ROW_SOURCE,
+            SubmissionDAO.latestRowFilter(3, false, false), PageOrder.SUBMITTED_AT, false));
+        queries.put("latest submission rows by status, next page", Page.seekQuery(SubmissionDAO.LATEST_ROW_SOURCE,
+            SubmissionDAO.latestRowFilter(3, true, true), PageOrder.SUBMITTED_AT, true));
+        queries.put("submissions page by date", Page.seekQuery(submissions.getTableName(), null, PageOrder.SUBMITTED_AT, true));
+        queries.put("users page by name", Page.seekQuery(UserDAO.getInstance().getTableName(), null, PageOrder.NAME, true));
+
+        queries.put("assignments by course", Criteria.where(AssignmentDAO.COURSE_ID, 1).toSql("*", assignments));
+        queries.put("assignment ids by course", Criteria.where(AssignmentDAO.COURSE_ID, 1).toSql(AssignmentDAO.ID.getName(), assignments));
+        queries.put("assignment templates of a batch", CourseTemplateDAO.batchAssignmentTemplatesQuery(3));
+        queries.put("courses by course template", Criteria.where(CourseDAO.COURSE_TEMPLATE_ID, 1).toSql("*", CourseDAO.getInstance()));
+        queries.put("user by email", UserDAO.EMAIL_QUERY);
+
+        queries.put("teacher courses", CourseDAO.TEACHER_COURSES_QUERY);
+        queries.put("student courses", CourseDAO.STUDENT_COURSES_QUERY);
+        queries.put("active course count", CourseDAO.ACTIVE_COURSES_COUNT_QUERY);
+        queries.put("total student count", CourseDAO.TOTAL_STUDENTS_COUNT_QUERY);
+        queries.put("course student count", CourseDAO.COURSE_STUDENT_COUNT_QUERY);
+        queries.put("course students", CourseDAO.COURSE_STUDENTS_QUERY);
+
+        queries.put("enrollment", UserCourseDAO.READ_QUERY);
+        queries.put("enrollments by course", Criteria.where(UserCourseDAO.COURSE_ID, 1).toSql("*", enrollments));
+        queries.put("enrollments by user and courses", Criteria.where(UserCourseDAO.USER_ID, 1).in(UserCourseDAO.COURSE_ID, ids)
+            .toSql("*", enrollments));
+        queries.put("enrollments of a user", UserCourseDAO.enrollmentsQuery(EnrollmentQuery.forUser(1)));
+        queries.put("active students of a course", UserCourseDAO.enrolledUsersQuery(EnrollmentQuery.forCourse(1)
+            .role(User.Role.STUDENT).status(UserCourse.Status.ACTIVE)));
+        queries.put("enrollment count by course and role", UserCourseDAO.enrollmentCountQuery(EnrollmentQuery.forCourse(1)
+            .role(User.Role.STUDENT)));
+        queries.put("roster rows", UserCourseDAO.rosterQuery(3, 2));
+
+        queries.put("gradebook row", GradebookDAO.READ_QUERY);
+        queries.put("gradebook of a course", GradebookDAO.COURSE_QUERY);
+        queries.put("gradebook entries of a student", GradebookDAO.ENTRIES_QUERY);
+        queries.put("gradebook entry refresh", GradebookDAO.REFRESH_ENTRY_QUERY);
+        queries.put("gradebook total refresh", GradebookDAO.REFRESH_SUMMARY_QUERY);
+        queries.put("gradebook course refresh", GradebookDAO.REFRESH_COURSE_QUERY);
+        queries.put("gradebook entries move", GradebookDAO.MOVE_ENTRIES_QUERY);
+        queries.put("grade sheet assignments", GradebookDAO.SHEET_ASSIGNMENTS_QUERY);
+        queries.put("grade sheet grades", GradebookDAO.SHEET_GRADES_QUERY);
+        return queries;
+    }
+
+    // "SCAN <table or alias> ..." lines of the plan whose table is large, with or without USING INDEX
+    private static List<String> largeTableScans(String query) throws SQLException {
+        Map<String, String> tables = new HashMap<>(); // alias or name -> table
+        Matcher reference = TABLE_REFERENCE.matcher(query);
+        while (reference.find()) {
+            String table = reference.group(1).toLowerCase();
+            tables.put(table, table);
+            String alias = reference.group(2);
+            if (alias != null && !KEYWORDS.contains(alias.toUpperCase())) tables.put(alias.toLowerCase(), table);
+        }
+
+        List<String> scans = new ArrayList<>();
+        try (Connection connection = DBConnection.getReadConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + query)) {
+            while (rs.next()) {
+                String detail = rs.getString("detail");
+                if (!detail.startsWith("SCAN ")) continue;
+
+                String target = detail.substring(5).split(" ")[0].toLowerCase();
+                if (LARGE_TABLES.contains(tables.get(target))) scans.add(detail);
+            }
+        }
+        return scans;
+    }
+}
@@ -0,0 +1,163 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import model.Assignment;
+import model.Submission;
+import model.User;
+import model.UserCourse;
+
+// The joined SubmissionRow and RosterRow reads on two seeded courses, compared field by field with what
+// the entity DAOs load for the same rows.
+public class RowProjectionTest {
+    private static final Comparator<Submission> NEWEST_FIRST =
+        Comparator.comparing(Submission::getSubmittedAt).thenComparingInt(Submission::getId).reversed();
+
+    public static void main(String[] args) throws Exception {
+        useScratchDatabase("row-projection");
+        DBSetup.createTables();
+        int course = Fixtures.seedCourse(12, 4, 11);
+        int otherCourse = Fixtures.seedCourse(8, 3, 12);
+        GradebookDAO.getInstance().rebuild();
+
+        SubmissionDAO submissions = SubmissionDAO.getInstance();
+        int assignment = AssignmentDAO.getInstance().find(Criteria.where(AssignmentDAO.COURSE_ID, course)).get(0).getId();
+        int orphan = insertSubmissionWithoutCollaborators(assignment);
+
+        test("assignment rows match the submissions they show", () -> {
+            List<SubmissionRow> rows = SubmissionDAO.getInstance().readRowsForAssignment(assignment);
+            List<Submission> expected = submissions.find(Criteria.where(SubmissionDAO.ASSIGNMENT_ID, assignment).orderBy(SubmissionDAO.ID));
+            checkEqual(expected.size(), rows.size(), "rows");
+            for (int i = 0; i < rows.size(); i++) checkRow(expected.get(i), rows.get(i));
+        });
+
+        test("rows share repeated names", () -> {
+            List<SubmissionRow> rows = SubmissionDAO.getInstance().readRowsForAssignment(assignment);
+            check(rows.get(0).getCourseName() == rows.get(1).getCourseName(), "course name copied per row");
+            check(rows.get(0).getAssignmentName() == rows.get(1).getAssignmentName(), "assignment name copied per row");
+        });
+
+        test("a submission without collaborators has no student", () -> {
+            SubmissionRow row = submissions.readRow(orphan);
+            check(!row.hasStudent(), "student of " + row);
+            checkEqual(-1, row.getStudentId(), "student id");
+            checkEqual(null, row.getStudentName(), "student name");
+            checkEqual(0, row.getCollaboratorCount(), "collaborators");
+            checkEqual(null, submissions.readRow(Integer.MAX_VALUE), "row of a missing submission");
+        });
+
+        test("row pages cover the chosen courses newest first", () -> {
+            List<Integer> courses = Arrays.asList(course, otherCourse);
+            List<Integer> expected = inCourses(courses).stream().sorted(NEWEST_FIRST).map(Submission::getId).collect(Collectors.toList());
+            List<Integer> walked = new ArrayList<>();
+            String cursor = null;
+            do {
+                Page<SubmissionRow> page = submissions.readRowPage(courses, cursor, 25);
+                for (SubmissionRow row : page.getItems()) walked.add(row.getId());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            checkEqual(expected, walked, "submission ids");
+            check(submissions.readRowPage(Collections.emptyList(), null, 25).getItems().isEmpty(), "rows without courses");
+        });
+
+        test("latest row pages show each student's latest submission per assignment", () -> {
+            // a row's student is its first collaborator, whose latest submission the row must be
+            Map<String, Submission> latest = new HashMap<>();
+            for (Submission submission : inCourses(Collections.singletonList(course))) {
+                for (int student : submission.getCollaboratorIds()) {
+                    latest.merge(student + "/" + submission.getAssignmentId(), submission,
+                        (a, b) -> NEWEST_FIRST.compare(a, b) <= 0 ? a : b);
+                }
+            }
+
+            for (Submission.Status status : new Submission.Status[] { null, Submission.Status.GRADED, Submission.Status.UNGRADED }) {
+                List<Integer> expected = latest.entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(Collections.min(e.getValue().getCollaboratorIds()) + "/"))
+                    .map(Map.Entry::getValue)
+                    .filter(s -> status == null || s.getStatus() == status)
+                    .sorted(NEWEST_FIRST).map(Submission::getId).collect(Collectors.toList());
+                List<Integer> rows = submissions.readLatestRowPage(Collections.singletonList(course), null, status, null, 10_000)
+                    .getItems().stream().map(SubmissionRow::getId).collect(Collectors.toList());
+                checkEqual(expected, rows, "latest rows with status " + status);
+            }
+        });
+
+        test("roster rows match the enrollments of the chosen roles", () -> {
+            List<RosterRow> rows = UserCourseDAO.getInstance().readRosterRows(Arrays.asList(course, otherCourse), Collections.singletonList(User.Role.STUDENT));
+            checkEqual(20, rows.size(), "student enrollments");
+            for (RosterRow row : rows) {
+                User user = UserDAO.getInstance().read(row.getUserId());
+                UserCourse enrollment = UserCourseDAO.getInstance().read(row.getUserId(), row.getCourseId());
+                checkEqual(user.getName(), row.getName(), "name");
+                checkEqual(user.getEmail(), row.getEmail(), "email");
+                checkEqual(User.Role.STUDENT, row.getRole(), "role");
+                checkEqual(enrollment.getStatus(), row.getStatus(), "status");
+                checkEqual(CourseDAO.getInstance().read(row.getCourseId()).getName(), row.getCourseName(), "course name");
+            }
+            checkEqual(2, UserCourseDAO.getInstance().readRosterRows(Arrays.asList(course, otherCourse), Collections.singletonList(User.Role.TEACHER)).size(), "teachers");
+            check(UserCourseDAO.getInstance().readRosterRows(Collections.emptyList(), Collections.singletonList(User.Role.STUDENT)).isEmpty(), "rows without courses");
+        });
+
+        finish();
+    }
+
+    private static void checkRow(Submission submission, SubmissionRow row) {
+        checkEqual(submission.getId(), row.getId(), "id");
+        checkEqual(submission.getAssignmentId(), row.getAssignmentId(), "assignment");
+        checkEqual(submission.getStatus(), row.getStatus(), "status of " + row);
+        checkEqual(submission.getSubmittedAt(), row.getSubmittedAt(), "submitted at of " + row);
+        checkEqual(submission.getPointsEarned(), row.getPointsEarned(), "points of " + row);
+        checkEqual(submission.getCollaboratorIds().size(), row.getCollaboratorCount(), "collaborators of " + row);
+
+        if (submission.getCollaboratorIds().isEmpty()) {
+            check(!row.hasStudent(), "student of " + row);
+        } else {
+            int student = Collections.min(submission.getCollaboratorIds());
+            checkEqual(student, row.getStudentId(), "student of " + row);
+            checkEqual(UserDAO.getInstance().read(student).getName(), row.getStudentName(), "student name of " + row);
+        }
+        Assignment assignment = AssignmentDAO.getInstance().read(submission.getAssignmentId());
+        checkEqual(assignment.getName(), row.getAssignmentName(), "assignment name of " + row);
+        checkEqual(assignment.getMaxPoints(), row.getMaxPoints(), "max points of " + row);
+        checkEqual(assignment.getCourseId(), row.getCourseId(), "course of " + row);
+    }
+
+    private static List<Submission> inCourses(List<Integer> courseIds) {
+        List<Integer> assignments = new ArrayList<>();
+        for (int courseId : courseIds) {
+            assignments.addAll(AssignmentDAO.getInstance().findValues(Criteria.where(AssignmentDAO.COURSE_ID, courseId), AssignmentDAO.ID));
+        }
+        return SubmissionDAO.getInstance().find(Criteria.<Submission>where().in(SubmissionDAO.ASSIGNMENT_ID, assignments));
+    }
+
+    private static int insertSubmissionWithoutCollaborators(int assignmentId) throws SQLException {
+        try (Connection connection = DBConnection.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(
+                 "INSERT INTO submissions (assignment_id, filepath, submitted_at, points_earned, grade, status) VALUES (?, 'orphan.pdf', ?, 0, 0, 0)",
+                 Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, assignmentId);
+            stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+}
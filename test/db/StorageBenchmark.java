@@ -0,0 +1,157 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Read throughput of the stats panels' kind of query while a grader keeps saving grades, under the old
+// rollback journal and under WAL with FULL and NORMAL sync. Each profile runs on its own copy of the same
+// seeded database through pools built from its StorageProfile PRAGMAs, first with readers only and then
+// with one writer committing small grade transactions. Seconds per run can be passed as an argument.
+public class StorageBenchmark {
+    private static final int READERS = 4;
+    private static final String READ_QUERY = "SELECT COUNT(*), AVG(points_earned) FROM submissions WHERE assignment_id = ?";
+    private static final String WRITE_QUERY = "UPDATE submissions SET points_earned = ?, grade = ?, status = 1 WHERE id = ?";
+
+    public static void main(String[] args) throws Exception {
+        long millis = (args.length > 0 ? Long.parseLong(args[0]) : 3) * 1000;
+
+        File seeded = useScratchDatabase("storage-benchmark");
+        DBSetup.createTables();
+        Fixtures.seedCourse(500, 20, 7);
+        try (Connection connection = DBConnection.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE);"); // every row in the main file before copying it
+        }
+        int[] range = idRange();
+
+        // the rollback journal profile is SQLite's defaults, as the app ran before the storage profile
+        Map<String, StorageProfile> profiles = new LinkedHashMap<>();
+        profiles.put("rollback journal, synchronous FULL", new StorageProfile("DELETE", "FULL", -2000, 0, "DEFAULT", 3000, READERS, false, 0));
+        profiles.put("WAL, synchronous FULL", new StorageProfile("WAL", "FULL", -16000, 256L * 1024 * 1024, "MEMORY", 5000, READERS, false, 0));
+        profiles.put("WAL, synchronous NORMAL (default)", StorageProfile.defaultProfile());
+
+        System.out.printf("%-36s %12s %12s %10s %12s %12s%n", "profile", "reads/s", "+writer", "commits/s", "max read ms", "errors");
+        for (Map.Entry<String, StorageProfile> profile : profiles.entrySet()) {
+            File copy = File.createTempFile("storage-profile", ".db");
+            for (String suffix : new String[] { "", "-wal", "-shm", "-journal" }) new File(copy.getPath() + suffix).deleteOnExit();
+            Files.copy(seeded.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            String url = "jdbc:sqlite:" + copy.getPath();
+            ConnectionPool writer = new ConnectionPool(url, 1, profile.getValue().getWriterPragmas(), 10_000, 60_000);
+            ConnectionPool readers = new ConnectionPool(url, READERS, profile.getValue().getReaderPragmas(), 10_000, 60_000);
+            try {
+                Result alone = run(readers, null, range, millis);
+                Result contended = run(readers, writer, range, millis);
+                System.out.printf("%-36s %12.0f %12.0f %10.0f %12.1f %12d%n", profile.getKey(),
+                    alone.reads * 1000.0 / millis, contended.reads * 1000.0 / millis, contended.commits * 1000.0 / millis,
+                    contended.maxReadNanos / 1e6, alone.errors + contended.errors);
+            } finally {
+                readers.close();
+                writer.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static class Result {
+        long reads;
+        long commits;
+        long errors;
+        long maxReadNanos;
+    }
+
+    // READERS threads reading for millis, alongside one writer thread when a writer pool is given
+    private static Result run(ConnectionPool readers, ConnectionPool writer, int[] range, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong commits = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong maxReadNanos = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < READERS; i++) {
+            long seed = i;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                    long start = System.nanoTime();
+                    try (Connection connection = readers.acquire();
+                         PreparedStatement stmt = connection.prepareStatement(READ_QUERY)) {
+                        stmt.setInt(1, range[2] + random.nextInt(range[3] - range[2] + 1));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            rs.next();
+                        }
+                        reads.incrementAndGet();
+                    } catch (SQLException e) {
+                        errors.incrementAndGet(); // SQLITE_BUSY once busy_timeout ran out
+                    }
+                    maxReadNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+                }
+            }));
+        }
+        if (writer != null) {
+            threads.add(new Thread(() -> {
+                Random random = new Random(-1);
+                while (running.get()) {
+                    try (Connection connection = writer.acquire()) {
+                        connection.setAutoCommit(false);
+                        try (PreparedStatement stmt = connection.prepareStatement(WRITE_QUERY)) {
+                            for (int i = 0; i < 5; i++) { // a grader saving a few grades at once
+                                double points = random.nextInt(101);
+                                stmt.setDouble(1, points);
+                                stmt.setDouble(2, points);
+                                stmt.setInt(3, range[0] + random.nextInt(range[1] - range[0] + 1));
+                                stmt.executeUpdate();
+                            }
+                            connection.commit();
+                            commits.incrementAndGet();
+                        } catch (SQLException e) {
+                            connection.rollback();
+                            throw e;
+                        } finally {
+                            connection.setAutoCommit(true);
+                        }
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) thread.start();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) thread.join();
+
+        Result result = new Result();
+        result.reads = reads.get();
+        result.commits = commits.get();
+        result.errors = errors.get();
+        result.maxReadNanos = maxReadNanos.get();
+        return result;
+    }
+
+    // first and last submission id and assignment id of the seeded database
+    private static int[] idRange() throws SQLException {
+        try (Connection connection = DBConnection.getReadConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id), MIN(assignment_id), MAX(assignment_id) FROM submissions")) {
+            rs.next();
+            return new int[] { rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4) };
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package db;
+
+import static testing.Checks.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Group commit on a queue of its own over a scratch table: writes submitted within the window commit
+// together, a failing write only rolls back its own savepoint, and after-commit callbacks run for the
+// writes that made it in. A thread already holding the pool's lease joins it.
+public class WriteQueueTest {
+    private static ConnectionPool pool;
+
+    public static void main(String[] args) throws Exception {
+        File database = useScratchDatabase("write-queue");
+        pool = new ConnectionPool("jdbc:sqlite:" + database.getPath(), 1, StorageProfile.defaultProfile().getWriterPragmas(), 10_000, 60_000);
+        try (Connection connection = pool.acquire(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+        }
+
+        test("writes within the window commit as one group", () -> {
+            WriteQueue queue = new WriteQueue(pool, true, 200);
+            List<CompletableFuture<Integer>> writes = new ArrayList<>();
+            for (int id = 1; id <= 3; id++) writes.add(queue.submit(insert(id, "item " + id)));
+            for (CompletableFuture<Integer> write : writes) write.join();
+
+            checkEqual(1L, queue.getGroupCount(), "groups");
+            checkEqual(3L, queue.getWriteCount(), "writes");
+            checkEqual(3, count(), "rows");
+            queue.shutdown();
+        });
+
+        test("a failing write rolls back only its savepoint", () -> {
+            clear();
+            WriteQueue queue = new WriteQueue(pool, true, 200);
+            CompletableFuture<Integer> first = queue.submit(insert(1, "kept"));
+            CompletableFuture<Integer> failing = queue.submit(connection -> {
+                insert(2, "undone").execute(connection);
+                return insert(3, null).execute(connection); // NOT NULL violation after a successful insert
+            });
+            CompletableFuture<Integer> last = queue.submit(insert(4, "kept"));
+
+            first.join();
+            last.join();
+            check(failing.isCompletedExceptionally(), "failing write completed normally");
+            checkEqual(1L, queue.getGroupCount(), "groups");
+            checkEqual(1L, queue.getFailedWriteCount(), "failed writes");
+            checkEqual(Arrays.asList(1, 4), ids(1, 2, 3, 4), "rows");
+            queue.shutdown();
+        });
+
+        test("rollback() inside a write undoes only that write", () -> {
+            clear();
+            WriteQueue queue = new WriteQueue(pool, true, 200);
+            CompletableFuture<Integer> kept = queue.submit(insert(1, "kept"));
+            CompletableFuture<Integer> rolledBack = queue.submit(connection -> {
+                insert(2, "undone").execute(connection);
+                connection.rollback();
+                return 0;
+            });
+
+            kept.join();
+            try {
+                rolledBack.join();
+                check(false, "rolled back write completed normally");
+            } catch (CompletionException e) {
+                check(e.getCause() instanceof SQLException, "unexpected failure " + e.getCause());
+            }
+            checkEqual(1, count(), "rows");
+            queue.shutdown();
+        });
+
+        test("a write submitted from inside a queued write joins its group", () -> {
+            clear();
+            WriteQueue queue = new WriteQueue(pool, true, 50);
+            CompletableFuture<CompletableFuture<Integer>> inner = new CompletableFuture<>();
+            CompletableFuture<Integer> outer = queue.submit(connection -> {
+                inner.complete(queue.submit(insert(2, null))); // fails inside its own savepoint
+                return insert(1, "outer").execute(connection);
+            });
+
+            outer.join();
+            check(inner.join().isCompletedExceptionally(), "nested failing write completed normally");
+            checkEqual(1L, queue.getGroupCount(), "groups");
+            checkEqual(Collections.singletonList(1), ids(1, 2), "rows");
+            queue.shutdown();
+        });
+
+        test("after-commit callbacks run for committed writes only, once the rows are visible", () -> {
+            clear();
+            WriteQueue queue = new WriteQueue(pool, true, 200);
+            List<String> ran = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+            CompletableFuture<Integer> kept = queue.submit(connection -> {
+                WriteQueue.afterCommit(() -> {
+                    ran.add("kept");
+                    try {
+                        seen.addAll(ids(1)); // the pool's connection is free again by now
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                return insert(1, "kept").execute(connection);
+            });
+            CompletableFuture<Integer> failing = queue.submit(connection -> {
+                WriteQueue.afterCommit(() -> ran.add("failed"));
+                return insert(2, null).execute(connection);
+            });
+
+            kept.join();
+            check(failing.isCompletedExceptionally(), "failing write completed normally");
+            checkEqual(Collections.singletonList("kept"), ran, "callbacks run");
+            checkEqual(Collections.singletonList(1), seen, "rows seen by the callback");
+            queue.shutdown();
+        });
+
+        test("without write-behind a write commits on the caller's thread", () -> {
+            clear();
+            WriteQueue queue = new WriteQueue(pool, false, 0);
+            CompletableFuture<Integer> write = queue.submit(insert(1, "now"));
+            check(write.isDone(), "write still pending");
+            checkEqual(1, count(), "rows");
+            queue.shutdown();
+        });
+
+        test("a thread holding the lease joins it instead of waiting for another", () -> {
+            clear();
+            WriteQueue queue = new WriteQueue(pool, false, 0);
+            List<String> ran = new ArrayList<>();
+            try (Connection outer = pool.acquire()) {
+                outer.setAutoCommit(false);
+                insert(1, "outer").execute(outer);
+
+                try (Connection nested = pool.acquire()) {
+                    check(pool.isHeldByCurrentThread(), "lease not held");
+                    nested.setAutoCommit(false);
+                    insert(2, "joined").execute(nested);
+                    nested.commit(); // left to the holder
+                }
+                try (Connection nested = pool.acquire()) {
+                    insert(3, "undone").execute(nested);
+                    nested.rollback(); // back to where it joined
+                }
+                CompletableFuture<Integer> write = queue.submit(connection -> {
+                    WriteQueue.afterCommit(() -> ran.add("write"));
+                    return insert(4, "queued").execute(connection);
+                });
+                check(write.isDone() && !write.isCompletedExceptionally(), "queued write did not run on the held lease");
+                checkEqual(1, pool.getLeasedCount(), "leases");
+                check(ran.isEmpty(), "callback ran before the holder committed");
+                outer.commit();
+            }
+            check(!pool.isHeldByCurrentThread(), "lease still held after close");
+            checkEqual(Collections.singletonList("write"), ran, "callbacks run");
+            checkEqual(Arrays.asList(1, 2, 4), ids(1, 2, 3, 4), "rows");
+            queue.shutdown();
+        });
+
+        test("a shut down queue rejects writes", () -> {
+            WriteQueue queue = new WriteQueue(pool, true, 0);
+            queue.shutdown();
+            check(queue.submit(insert(9, "late")).isCompletedExceptionally(), "write accepted after shutdown");
+        });
+
+        pool.close();
+        finish();
+    }
+
+    private static SqlWork<Integer> insert(int id, String name) {
+        return connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO items (id, name) VALUES (?, ?)")) {
+                stmt.setInt(1, id);
+                stmt.setString(2, name);
+                return stmt.executeUpdate();
+            }
+        };
+    }
+
+    private static void clear() throws SQLException {
+        try (Connection connection = pool.acquire(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DELETE FROM items");
+        }
+    }
+
+    private static int count() throws SQLException {
+        try (Connection connection = pool.acquire();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM items")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // which of these ids have a row
+    private static List<Integer> ids(Integer... candidates) throws SQLException {
+        List<Integer> found = new ArrayList<>();
+        try (Connection connection = pool.acquire();
+             PreparedStatement stmt = connection.prepareStatement("SELECT id FROM items WHERE id = ?")) {
+            for (int id : candidates) {
+                stmt.setInt(1, id);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) found.add(id);
+                }
+            }
+        }
+        return found;
+    }
+}
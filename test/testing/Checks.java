@@ -0,0 +1,71 @@
+package testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+// Minimal harness for the main-method tests under test/. Each test is a named block whose failure is
+// reported and counted, and finish() exits non-zero when any failed so scripts can check the result.
+public final class Checks {
+    private static int passed = 0;
+    private static int failed = 0;
+
+    private Checks() {}
+
+    @FunctionalInterface
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    public static void test(String name, Body body) {
+        try {
+            body.run();
+            passed++;
+            System.out.println("ok   " + name);
+        } catch (Throwable e) {
+            failed++;
+            System.out.println("FAIL " + name + ": " + e);
+        }
+    }
+
+    public static void finish() {
+        System.out.println(passed + " passed, " + failed + " failed");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    // ASSERTIONS
+    public static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    public static void checkEqual(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+    }
+
+    public static void checkClose(double expected, double actual, double tolerance, String what) {
+        if (!(Math.abs(expected - actual) <= tolerance))
+            throw new AssertionError(what + ": expected " + expected + " +/- " + tolerance + " but was " + actual);
+    }
+
+    // TIMING, for the benchmarks
+    // run body rounds times and print and return the fastest run in milliseconds
+    public static double time(String name, int rounds, Body body) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double millis = best / 1e6;
+        System.out.printf("%-44s %10.1f ms (best of %d)%n", name, millis, rounds);
+        return millis;
+    }
+
+    // point DBConnection at an empty database file deleted on exit, call before anything in db is used
+    public static File useScratchDatabase(String name) throws IOException {
+        File file = File.createTempFile(name, ".db");
+        for (String suffix : new String[] { "", "-wal", "-shm" }) new File(file.getPath() + suffix).deleteOnExit();
+        System.setProperty("db.url", "jdbc:sqlite:" + file.getPath());
+        return file;
+    }
+}
@@ -0,0 +1,147 @@
+package utils;
+
+import static testing.Checks.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import db.GradeSheet;
+import db.GradeSheets;
+import model.GradingStrategy;
+import model.ProportionalGradingStrategy;
+import model.WeightedGradingStrategy;
+
+// Fork-join grading of several cohorts, some larger than a leaf range, compared with grading each student
+// in a plain loop: same grades, merged statistics equal to one pass over every grade, progress reaching the
+// total, and cancel() stopping the run.
+public class GradeComputationServiceTest {
+    public static void main(String[] args) throws Exception {
+        List<GradeComputationService.Cohort> cohorts = Arrays.asList(
+            new GradeComputationService.Cohort(GradeSheets.random(1, 5 * GradeComputationService.LEAF_SIZE + 17, 12, 1)),
+            new GradeComputationService.Cohort(GradeSheets.random(2, 300, 5, 2)),
+            new GradeComputationService.Cohort(GradeSheets.random(3, 0, 4, 3)),
+            new GradeComputationService.Cohort(GradeSheets.random(4, GradeComputationService.LEAF_SIZE, 0, 4)));
+        GradeComputationService service = new GradeComputationService(new ForkJoinPool(4));
+
+        for (GradingStrategy strategy : new GradingStrategy[] { new ProportionalGradingStrategy(), new WeightedGradingStrategy() }) {
+            String name = strategy.getClass().getSimpleName();
+
+            test(name + " grades match a sequential loop", () -> {
+                GradeComputationService.Report report = service.compute(cohorts, strategy);
+                checkEqual(cohorts.size(), report.getResults().size(), "results");
+                for (int c = 0; c < cohorts.size(); c++) {
+                    GradeComputationService.Result result = report.getResults().get(c);
+                    double[] expected = sequential(cohorts.get(c).getSheet(), strategy);
+                    checkEqual(cohorts.get(c).getCourseId(), result.getCourseId(), "course of result " + c);
+                    checkEqual(expected.length, result.size(), "students of course " + result.getCourseId());
+                    for (int s = 0; s < expected.length; s++) {
+                        checkEqual(Double.isNaN(expected[s]), !result.isGraded(s), "graded student " + s);
+                        if (result.isGraded(s)) checkClose(expected[s], result.getGrade(s), 1e-12, "grade of student " + s);
+                    }
+                }
+            });
+
+            test(name + " merged statistics equal one pass over every grade", () -> {
+                GradeComputationService.Report report = service.compute(cohorts, strategy);
+                StatsAccumulator single = new StatsAccumulator(0, 1, GradeComputationService.HISTOGRAM_BINS);
+                for (GradeComputationService.Cohort cohort : cohorts) {
+                    double[] grades = sequential(cohort.getSheet(), strategy);
+                    single.addAll(grades, 0, grades.length);
+                }
+
+                StatsAccumulator merged = report.getStats();
+                checkEqual(single.getCount(), merged.getCount(), "count");
+                checkClose(single.getMean(), merged.getMean(), 1e-12, "mean");
+                checkClose(single.getVariance(), merged.getVariance(), 1e-12, "variance");
+                checkEqual(single.getMin(), merged.getMin(), "min");
+                checkEqual(single.getMax(), merged.getMax(), "max");
+                checkEqual(Arrays.toString(single.getHistogram()), Arrays.toString(merged.getHistogram()), "histogram");
+                checkEqual(single.getMedian(), merged.getMedian(), "median");
+            });
+        }
+
+        test("progress reaches the total", () -> {
+            AtomicLong last = new AtomicLong();
+            GradeComputationService.Job job = service.submit(cohorts, new ProportionalGradingStrategy(),
+                (graded, total) -> last.accumulateAndGet(graded, Math::max));
+            job.join();
+            checkEqual(job.getTotalStudents(), last.get(), "students reported");
+            checkEqual(1.0, job.getProgress(), "progress");
+            check(job.isDone(), "job not done");
+        });
+
+        test("an empty run is complete at once", () -> {
+            GradeComputationService.Job job = service.submit(Collections.emptyList(), new ProportionalGradingStrategy(), null);
+            GradeComputationService.Report report = job.join();
+            checkEqual(0, report.getResults().size(), "results");
+            checkEqual(0L, report.getStats().getCount(), "graded students");
+            checkEqual(1.0, job.getProgress(), "progress");
+        });
+
+        test("cancel() stops the remaining ranges and join() throws", () -> {
+            GradeComputationService single = new GradeComputationService(new ForkJoinPool(1));
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            GradingStrategy blocking = new GradingStrategy() {
+                @Override
+                public double calculateGrade(double pointsEarned, double maxPoints) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return pointsEarned / maxPoints;
+                }
+            };
+
+            GradeComputationService.Job job = single.submit(cohorts.subList(0, 1), blocking, null);
+            check(started.await(10, TimeUnit.SECONDS), "grading never started");
+            job.cancel();
+            release.countDown();
+
+            try {
+                job.join();
+                check(false, "join() returned after cancel()");
+            } catch (CancellationException expected) {
+                check(job.isCancelled(), "job not cancelled");
+            }
+            check(job.getProgress() < 1.0, "every range was graded after cancel()");
+        });
+
+        finish();
+    }
+
+    // the strategy applied one student at a time, NaN for students without graded work
+    private static double[] sequential(GradeSheet sheet, GradingStrategy strategy) {
+        double[] grades = new double[sheet.getStudentCount()];
+        for (int s = 0; s < grades.length; s++) {
+            if (strategy instanceof WeightedGradingStrategy) {
+                double score = 0, weight = 0;
+                for (int a = 0; a < sheet.getAssignmentCount(); a++) {
+                    if (!sheet.isGraded(s, a)) continue;
+                    score += sheet.getWeight(a) * sheet.getEarned(s, a) / sheet.getMaxPoints(a);
+                    weight += sheet.getWeight(a);
+                }
+                grades[s] = weight > 0 ? score / weight : Double.NaN;
+            } else {
+                List<Double> earned = new ArrayList<>();
+                double max = 0;
+                for (int a = 0; a < sheet.getAssignmentCount(); a++) {
+                    if (!sheet.isGraded(s, a)) continue;
+                    earned.add(sheet.getEarned(s, a));
+                    max += sheet.getMaxPoints(a);
+                }
+                grades[s] = max > 0 ? strategy.calculateGrade(earned.stream().mapToDouble(Double::doubleValue).sum(), max) : Double.NaN;
+            }
+        }
+        return grades;
+    }
+}
@@ -0,0 +1,119 @@
+package utils;
+
+import static testing.Checks.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// StatsAccumulator against statistics computed directly on the stored scores: accumulators over split
+// ranges merge into the single-pass result, quantiles stay within one sketch bin of the ranked score,
+// and empty input, NaN and out-of-range scores behave as documented.
+public class StatsAccumulatorTest {
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(22);
+        double[] scores = new double[20_000];
+        for (int i = 0; i < scores.length; i++) scores[i] = 100 * Math.pow(random.nextDouble(), 0.4); // skewed towards high scores
+
+        test("merged ranges equal one pass", () -> {
+            StatsAccumulator single = new StatsAccumulator(0, 100, 10);
+            single.addAll(scores, 0, scores.length);
+
+            int[] cuts = { 0, 1, 1, 7_500, 12_001, scores.length };
+            StatsAccumulator merged = new StatsAccumulator(0, 100, 10);
+            for (int i = cuts.length - 1; i > 0; i--) { // out of order, with an empty range
+                StatsAccumulator part = new StatsAccumulator(0, 100, 10);
+                part.addAll(scores, cuts[i - 1], cuts[i]);
+                check(merged.merge(part) == merged, "merge() did not return its receiver");
+            }
+
+            checkEqual(single.getCount(), merged.getCount(), "count");
+            checkClose(single.getMean(), merged.getMean(), 1e-9, "mean");
+            checkClose(single.getVariance(), merged.getVariance(), 1e-6, "variance");
+            checkEqual(single.getMin(), merged.getMin(), "min");
+            checkEqual(single.getMax(), merged.getMax(), "max");
+            checkEqual(Arrays.toString(single.getHistogram()), Arrays.toString(merged.getHistogram()), "histogram");
+            checkEqual(single.getMedian(), merged.getMedian(), "median");
+        });
+
+        test("mean and variance match the stored scores", () -> {
+            StatsAccumulator stats = new StatsAccumulator(0, 100, 10);
+            stats.addAll(scores, 0, scores.length);
+            double mean = Arrays.stream(scores).average().getAsDouble();
+            double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum() / scores.length;
+            checkClose(mean, stats.getMean(), 1e-9, "mean");
+            checkClose(variance, stats.getVariance(), 1e-6, "variance");
+            checkClose(Math.sqrt(variance), stats.getStdDev(), 1e-6, "standard deviation");
+            checkEqual(Arrays.stream(scores).min().getAsDouble(), stats.getMin(), "min");
+            checkEqual(Arrays.stream(scores).max().getAsDouble(), stats.getMax(), "max");
+            checkEqual((long) scores.length, (long) Arrays.stream(stats.getHistogram()).sum(), "scores in the histogram");
+        });
+
+        test("quantiles are within one sketch bin of the ranked score", () -> {
+            StatsAccumulator stats = new StatsAccumulator(0, 100, 10);
+            stats.addAll(scores, 0, scores.length);
+            double[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            double width = 100.0 / StatsAccumulator.SKETCH_BINS;
+
+            for (double q : new double[] { 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99 }) {
+                double ranked = sorted[(int) Math.ceil(q * sorted.length) - 1];
+                checkClose(ranked, stats.getQuantile(q), width, "quantile " + q);
+            }
+            checkEqual(sorted[0], stats.getQuantile(0), "quantile 0");
+            checkEqual(sorted[sorted.length - 1], stats.getQuantile(1), "quantile 1");
+        });
+
+        test("an empty accumulator reports NaN", () -> {
+            StatsAccumulator stats = new StatsAccumulator(0, 1, 10);
+            checkEqual(0L, stats.getCount(), "count");
+            for (double value : new double[] { stats.getMean(), stats.getVariance(), stats.getStdDev(), stats.getMin(), stats.getMax(), stats.getMedian() }) {
+                check(Double.isNaN(value), "statistic of nothing: " + value);
+            }
+            checkEqual(Arrays.toString(new int[10]), Arrays.toString(stats.getHistogram()), "histogram");
+
+            StatsAccumulator one = new StatsAccumulator(0, 1, 10);
+            one.add(0.3);
+            one.merge(stats);
+            checkEqual(1L, one.getCount(), "count after merging an empty accumulator");
+            checkEqual(0.3, one.getMean(), "mean after merging an empty accumulator");
+        });
+
+        test("out-of-range scores count but land in the edge bins", () -> {
+            StatsAccumulator stats = new StatsAccumulator(0, 100, 10);
+            for (double score : new double[] { -5, 55, 100, 150 }) stats.add(score);
+            checkEqual("[1, 0, 0, 0, 0, 1, 0, 0, 0, 2]", Arrays.toString(stats.getHistogram()), "histogram");
+            checkEqual(4L, stats.getCount(), "count");
+            checkEqual(75.0, stats.getMean(), "mean");
+            checkEqual(-5.0, stats.getMin(), "min");
+            checkEqual(150.0, stats.getMax(), "max");
+            check(stats.getQuantile(0.1) >= -5 && stats.getQuantile(0.9) <= 150, "quantiles outside min and max");
+        });
+
+        test("NaN scores are skipped", () -> {
+            StatsAccumulator stats = new StatsAccumulator(0, 1, 4);
+            stats.addAll(new double[] { Double.NaN, 0.2, Double.NaN, 0.6, 0.9 }, 0, 4);
+            stats.add(Double.NaN);
+            checkEqual(2L, stats.getCount(), "count");
+            checkClose(0.4, stats.getMean(), 1e-12, "mean");
+            checkEqual("[1, 0, 1, 0]", Arrays.toString(stats.getHistogram()), "histogram");
+        });
+
+        test("mismatched ranges are rejected", () -> {
+            checkThrows(() -> new StatsAccumulator(0, 1, 10).merge(new StatsAccumulator(0, 100, 10)), "merging another range");
+            checkThrows(() -> new StatsAccumulator(0, 1, 10).merge(new StatsAccumulator(0, 1, 5)), "merging other bins");
+            checkThrows(() -> new StatsAccumulator(1, 1, 10), "an empty range");
+            checkThrows(() -> new StatsAccumulator(0, 1, 0), "no bins");
+        });
+
+        finish();
+    }
+
+    private static void checkThrows(Runnable body, String what) {
+        try {
+            body.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError(what + ": no IllegalArgumentException");
+    }
+}
@@ -4,6 +4,7 @@ import db.*;
 import model.*;
 import ui.UIConstants;
 import ui.utils.AssignmentTemplateItem;
+import ui.utils.ChangeTracker;
 import ui.utils.CourseItem;
 import ui.utils.GradingUtils;
 import ui.utils.PaddedCellRenderer;
@@ -27,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 
 // Assignments Tab
 public final class AssignmentsPanel extends JPanel implements Refreshable {
@@ -41,6 +43,14 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
     private JComboBox<String> courseCombo;
     private JComboBox<String> typeCombo;
 
+    // filters of the rows currently shown
+    private String courseFilter;
+    private String typeFilter;
+
+    // writes since the table was filled, assignment edits only touch their row
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.ASSIGNMENTS, ChangeEvent.Topic.COURSES,
+            ChangeEvent.Topic.ENROLLMENTS);
+
     public AssignmentsPanel(User teacher,
             JTabbedPane parentTabs) {
         super(new BorderLayout(10, 10));
@@ -132,33 +142,92 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
 
     // Data loaders
     private void loadAssignments(String courseFilter, String typeFilter) {
+        changes.drain(); // the reload covers everything written so far
         assignmentModel.setRowCount(0);
+        this.courseFilter = courseFilter;
+        this.typeFilter = typeFilter;
 
         AssignmentDAO adao = AssignmentDAO.getInstance();
         List<Assignment> all = new ArrayList<>();
         for (Course c : teacherCourses)
-            all.addAll(adao.readAllCondition("course_id", c.getId()));
+            all.addAll(adao.find(Criteria.where(AssignmentDAO.COURSE_ID, c.getId())));
 
         for (Assignment a : all) {
+            Course course = teacherCourse(a.getCourseId());
+            if (matchesFilters(a, course))
+                assignmentModel.addRow(assignmentRow(a, course));
+        }
+    }
+
+    private Course teacherCourse(int courseId) {
+        return teacherCourses.stream().filter(c -> c.getId() == courseId).findFirst().orElse(null);
+    }
+
+    private boolean matchesFilters(Assignment a, Course course) {
+        if (course == null)
+            return false;
 
-            Course course = teacherCourses.stream()
-                    .filter(c -> c.getId() == a.getCourseId()).findFirst().orElse(null);
+        if (courseFilter != null && !"All Courses".equals(courseFilter)
+                && !course.getName().equals(courseFilter))
+            return false;
+
+        return typeFilter == null || "All Types".equals(typeFilter)
+                || a.getType().toString().equals(typeFilter);
+    }
+
+    private static Object[] assignmentRow(Assignment a, Course course) {
+        boolean open = a.getDueDate().after(new Timestamp(System.currentTimeMillis()));
+        return new Object[] {
+                a.getId(), a.getName(), course.getName(),
+                a.getType(), a.getDueDate(),
+                a.getMaxPoints(),
+                open ? "Open" : "Closed" };
+    }
 
-            if (courseFilter != null && !"All Courses".equals(courseFilter)
-                    && !course.getName().equals(courseFilter))
-                continue;
+    // add, patch or drop the rows of changed assignments, false when courses changed and everything is reloaded
+    private boolean applyChanges(List<ChangeEvent> events) {
+        if (ChangeTracker.requiresReload(events)) return false;
+
+        for (ChangeEvent event : events) {
+            switch (event.getTopic()) {
+                case ASSIGNMENTS:
+                    break;
+                case ENROLLMENTS:
+                    if (event.getId() == teacher.getId()) return false; // the teacher's own course list changed
+                    continue;
+                default:
+                    if (event.getKind() == ChangeEvent.Kind.COURSE_CREATED || teacherCourse(event.getId()) == null)
+                        continue; // not one of the listed courses
+                    return false;
+            }
 
-            if (typeFilter != null && !"All Types".equals(typeFilter)
-                    && !a.getType().toString().equals(typeFilter))
-                continue;
+            int row = rowOf(event.getId());
+            Assignment a = event.getKind() == ChangeEvent.Kind.ASSIGNMENT_DELETED
+                    ? null : AssignmentDAO.getInstance().read(event.getId());
+            Course course = a == null ? null : teacherCourse(a.getCourseId());
 
-            boolean open = a.getDueDate().after(new Timestamp(System.currentTimeMillis()));
-            assignmentModel.addRow(new Object[] {
-                    a.getId(), a.getName(), course.getName(),
-                    a.getType(), a.getDueDate(),
-                    a.getMaxPoints(),
-                    open ? "Open" : "Closed" });
+            if (a == null || !matchesFilters(a, course)) {
+                if (row != -1)
+                    assignmentModel.removeRow(row);
+            } else if (row == -1) {
+                assignmentModel.addRow(assignmentRow(a, course));
+            } else {
+                Object[] values = assignmentRow(a, course);
+                for (int col = 1; col < values.length; col++) {
+                    if (!Objects.equals(assignmentModel.getValueAt(row, col), values[col]))
+                        assignmentModel.setValueAt(values[col], row, col);
+                }
+            }
+        }
+        return true;
+    }
+
+    private int rowOf(int assignmentId) {
+        for (int i = 0; i < assignmentModel.getRowCount(); i++) {
+            if ((int) assignmentModel.getValueAt(i, 0) == assignmentId)
+                return i;
         }
+        return -1;
     }
 
     // Helpers
@@ -774,7 +843,7 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
 
         // Check for submissions
         SubmissionDAO submissionDAO = SubmissionDAO.getInstance();
-        List<Submission> submissions = submissionDAO.readAllCondition("assignment_id", assignmentId);
+        List<Submission> submissions = submissionDAO.find(Criteria.where(SubmissionDAO.ASSIGNMENT_ID, assignmentId));
         boolean hasSubmissions = submissions != null && !submissions.isEmpty();
 
         // Build confirmation message
@@ -910,9 +979,9 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
 
         panel.add(headerPanel, BorderLayout.NORTH);
 
-        // Get submissions for this assignment
+        // Get submissions for this assignment, with student names, in one query
         SubmissionDAO submissionDAO = SubmissionDAO.getInstance();
-        List<Submission> submissions = submissionDAO.readAllCondition("assignment_id", assignmentId);
+        List<SubmissionRow> submissions = submissionDAO.readRowsForAssignment(assignmentId);
         // System.out.println("submission size"+submissions.size());
         // Submissions table
         String[] submissionColumns = { "ID", "Student", "Submitted Date", "Status", "Grade", "Feedback" };
@@ -932,24 +1001,17 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
             }
         };
 
-        // Get user DAO for student information
-        UserDAO userDAO = UserDAO.getInstance();
-
         // Add submissions to table
         if (submissions != null && !submissions.isEmpty()) {
-            for (Submission submission : submissions) {
+            for (SubmissionRow submission : submissions) {
                 // Get student info
                 String studentName = "Unknown";
-                if (!submission.getCollaboratorIds().isEmpty()) {
-                    int studentId = submission.getCollaboratorIds().get(0);
-                    User student = userDAO.read(studentId);
-                    if (student != null) {
-                        studentName = student.getName();
-
-                        // If there are multiple collaborators, show as "Student Name + (X others)"
-                        if (submission.getCollaboratorIds().size() > 1) {
-                            studentName += " (+" + (submission.getCollaboratorIds().size() - 1) + " others)";
-                        }
+                if (submission.hasStudent()) {
+                    studentName = submission.getStudentName();
+
+                    // If there are multiple collaborators, show as "Student Name + (X others)"
+                    if (submission.getCollaboratorCount() > 1) {
+                        studentName += " (+" + (submission.getCollaboratorCount() - 1) + " others)";
                     }
                 }
 
@@ -1028,7 +1090,7 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
         if (gradedCount > 0) {
             totalPoints = submissions.stream()
                     .filter(s -> s.getStatus() == Submission.Status.GRADED)
-                    .mapToDouble(Submission::getPointsEarned)
+                    .mapToDouble(SubmissionRow::getPointsEarned)
                     .sum();
 
             avgGrade = totalPoints / gradedCount;
@@ -1215,27 +1277,16 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
     }
 
     // Helper method to export grades to CSV
-    private void exportSubmissionGrades(File file, List<Submission> submissions, Assignment assignment) {
+    private void exportSubmissionGrades(File file, List<SubmissionRow> submissions, Assignment assignment) {
         try (PrintWriter writer = new PrintWriter(file)) {
             // Write header
             writer.println("Submission ID,Student ID,Student Name,Submitted Date,Status,Points,Max Points,Percentage");
 
-            // Get user DAO for student information
-            UserDAO userDAO = UserDAO.getInstance();
-
             // Write submission data
-            for (Submission submission : submissions) {
+            for (SubmissionRow submission : submissions) {
                 // Get primary student (first collaborator)
-                int studentId = -1;
-                String studentName = "Unknown";
-
-                if (!submission.getCollaboratorIds().isEmpty()) {
-                    studentId = submission.getCollaboratorIds().get(0);
-                    User student = userDAO.read(studentId);
-                    if (student != null) {
-                        studentName = student.getName();
-                    }
-                }
+                int studentId = submission.getStudentId();
+                String studentName = submission.hasStudent() ? submission.getStudentName() : "Unknown";
 
                 // Format for CSV (escape commas in strings)
                 String submissionId = Integer.toString(submission.getId());
@@ -1286,7 +1337,7 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
     
         // Get the course from the database
         CourseDAO courseDAO = CourseDAO.getInstance();
-        Course course = courseDAO.read(selectedCourseItem.getId());
+        Course course = courseDAO.read(selectedCourseItem.getId(), FetchPlan.TEMPLATE);
     
         if (course == null || course.getCourseTemplate() == null) {
             System.err.println("Course or course template not found for course: " + selectedCourseItem.getId());
@@ -1314,6 +1365,15 @@ public final class AssignmentsPanel extends JPanel implements Refreshable {
 
     @Override
     public void refresh() {
+        List<ChangeEvent> events = changes.drain();
+        if (events.isEmpty())
+            return; // nothing was written since the table was filled
+
+        if (!applyChanges(events))
+            reloadAll();
+    }
+
+    private void reloadAll() {
         // Re-fetch teacher courses from database
         teacherCourses.clear();
         teacherCourses.addAll(CourseDAO.getInstance().getCoursesForTeacher(teacher.getId()));
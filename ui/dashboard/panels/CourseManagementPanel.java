@@ -95,7 +95,7 @@ public final class CourseManagementPanel extends JPanel {
             CourseDAO courseDAO = CourseDAO.getInstance();
 
             // Get all courses from the database
-            List<Course> courses = courseDAO.readAll();
+            List<Course> courses = courseDAO.readAll(FetchPlan.TEMPLATE);
 
             // Add courses to table
             for (Course course : courses) {
@@ -134,7 +134,7 @@ public final class CourseManagementPanel extends JPanel {
             CourseDAO courseDAO = CourseDAO.getInstance();
 
             // Get all courses from the database
-            List<Course> courses = courseDAO.readAll();
+            List<Course> courses = courseDAO.readAll(FetchPlan.TEMPLATE);
 
             // Add only active courses to table
             for (Course course : courses) {
@@ -631,7 +631,7 @@ public final class CourseManagementPanel extends JPanel {
 
             // Get assignments for this course
             AssignmentDAO assignmentDAO = AssignmentDAO.getInstance();
-            List<Assignment> assignments = assignmentDAO.readAllCondition("course_id", course.getId());
+            List<Assignment> assignments = assignmentDAO.find(Criteria.where(AssignmentDAO.COURSE_ID, course.getId()));
 
             // Create table for assignments
             String[] assignmentColumns = { "ID", "Name", "Type", "Due Date", "Max Points" };
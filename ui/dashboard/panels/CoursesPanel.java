@@ -3,6 +3,7 @@ package ui.dashboard.panels;
 import db.*;
 import model.*;
 import ui.UIConstants;
+import ui.utils.ChangeTracker;
 import ui.utils.PaddedCellRenderer;
 import ui.utils.Padding;
 import ui.utils.TemplateItem;
@@ -16,7 +17,10 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 // Courses tab
 public final class CoursesPanel extends JPanel implements Refreshable{
@@ -27,6 +31,10 @@ public final class CoursesPanel extends JPanel implements Refreshable{
     private DefaultTableModel courseModel;
     private JTable courseTable;
 
+    // writes since the table was filled, renamed courses and roster changes only touch their row
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.COURSES, ChangeEvent.Topic.ENROLLMENTS,
+            ChangeEvent.Topic.TEMPLATES, ChangeEvent.Topic.USERS);
+
     public CoursesPanel(User teacher, JTabbedPane parentTabs) {
         super(new BorderLayout(10, 10));
         this.teacher = teacher;
@@ -81,9 +89,10 @@ public final class CoursesPanel extends JPanel implements Refreshable{
 
     /* ====== table refresh ====== */
     private void loadCourseRows() {
+        changes.drain(); // the reload covers everything written so far
         courseModel.setRowCount(0); // clear
         CourseDAO dao = CourseDAO.getInstance();
-        List<Course> courses = dao.getCoursesForTeacher(teacher.getId());
+        List<Course> courses = dao.getCoursesForTeacher(teacher.getId(), FetchPlan.TEMPLATE);
 
         for (Course c : courses) {
             String tpl = (c.getCourseTemplate() == null) ? "None"
@@ -505,13 +514,13 @@ public final class CoursesPanel extends JPanel implements Refreshable{
 
         // Check if there are submissions for this course
         AssignmentDAO assignmentDAO = AssignmentDAO.getInstance();
-        List<Assignment> assignments = assignmentDAO.readAllCondition("course_id", courseId);
+        List<Assignment> assignments = assignmentDAO.find(Criteria.where(AssignmentDAO.COURSE_ID, courseId));
 
         boolean hasSubmissions = false;
         if (assignments != null && !assignments.isEmpty()) {
             SubmissionDAO submissionDAO = SubmissionDAO.getInstance();
             for (Assignment assignment : assignments) {
-                List<Submission> submissions = submissionDAO.readAllCondition("assignment_id", assignment.getId());
+                List<Submission> submissions = submissionDAO.find(Criteria.where(SubmissionDAO.ASSIGNMENT_ID, assignment.getId()));
                 if (submissions != null && !submissions.isEmpty()) {
                     hasSubmissions = true;
                     break;
@@ -567,19 +576,19 @@ public final class CoursesPanel extends JPanel implements Refreshable{
             // Delete all enrollments for this course
             // This should be handled by ON DELETE CASCADE in the database,
             // but we'll do it explicitly to be safe
-            List<UserCourse> enrollments = userCourseDAO.readAllCondition("course_id", courseId);
+            List<UserCourse> enrollments = userCourseDAO.find(Criteria.where(UserCourseDAO.COURSE_ID, courseId));
             if (enrollments != null) {
-                for (UserCourse enrollment : enrollments) {
-                    userCourseDAO.delete(enrollment.getUserId(), enrollment.getCourseId());
-                }
+                userCourseDAO.deleteAllEnrollments(enrollments).getFailures()
+                        .forEach(f -> System.err.println("Error removing enrollment: " + f.getError().getMessage()));
             }
 
             // Delete all assignments for this course
             // Submissions should be deleted by ON DELETE CASCADE
             if (assignments != null) {
-                for (Assignment assignment : assignments) {
-                    assignmentDAO.delete(assignment.getId());
-                }
+                List<Integer> assignmentIds = new ArrayList<>();
+                for (Assignment assignment : assignments) assignmentIds.add(assignment.getId());
+                assignmentDAO.deleteAll(assignmentIds).getFailures()
+                        .forEach(f -> System.err.println("Error deleting assignment: " + f.getError().getMessage()));
             }
 
             // Finally, delete the course
@@ -602,8 +611,71 @@ public final class CoursesPanel extends JPanel implements Refreshable{
         }
     }
 
+    // patch the rows of edited, deleted or re-enrolled courses, false when the table has to be reloaded instead
+    private boolean applyChanges(List<ChangeEvent> events) {
+        if (ChangeTracker.requiresReload(events)) return false;
+
+        Set<Integer> editedCourses = new LinkedHashSet<>();
+        Set<Integer> deletedCourses = new LinkedHashSet<>();
+        Set<Integer> rosterCourses = new LinkedHashSet<>();
+        for (ChangeEvent event : events) {
+            switch (event.getKind()) {
+                case COURSE_UPDATED:
+                    editedCourses.add(event.getId());
+                    break;
+                case COURSE_DELETED:
+                    deletedCourses.add(event.getId());
+                    break;
+                case COURSE_CREATED:
+                case USER_CREATED:
+                    break; // a new course is listed once the teacher is enrolled in it
+                case USER_ENROLLED:
+                case ENROLLMENT_UPDATED:
+                case USER_UNENROLLED:
+                    if (event.getId() == teacher.getId()) return false; // the teacher's own course list changed
+                    rosterCourses.add(event.getCourseId());
+                    break;
+                default:
+                    return false; // template names or student counts across courses may have changed
+            }
+        }
+
+        CourseDAO dao = CourseDAO.getInstance();
+        for (int courseId : editedCourses) {
+            int row = rowOf(courseId);
+            if (row == -1) continue;
+
+            Course c = dao.read(courseId, FetchPlan.TEMPLATE);
+            if (c == null) return false;
+            courseModel.setValueAt(c.getName(), row, 1);
+            courseModel.setValueAt(c.getCourseTemplate() == null ? "None" : c.getCourseTemplate().getName(), row, 2);
+            courseModel.setValueAt(c.isActive() ? "Active" : "Inactive", row, 4);
+        }
+
+        for (int courseId : rosterCourses) {
+            int row = rowOf(courseId);
+            if (row != -1) courseModel.setValueAt(dao.getStudentCountForCourse(courseId), row, 3);
+        }
+
+        for (int courseId : deletedCourses) {
+            int row = rowOf(courseId);
+            if (row != -1) courseModel.removeRow(row);
+        }
+        return true;
+    }
+
+    private int rowOf(int courseId) {
+        for (int i = 0; i < courseModel.getRowCount(); i++) {
+            if ((int) courseModel.getValueAt(i, 0) == courseId) return i;
+        }
+        return -1;
+    }
+
     @Override
     public void refresh() {
-        loadCourseRows();
+        List<ChangeEvent> events = changes.drain();
+        if (events.isEmpty()) return; // nothing was written since the table was filled
+
+        if (!applyChanges(events)) loadCourseRows();
     }
 }
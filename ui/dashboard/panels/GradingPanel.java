@@ -2,8 +2,10 @@ package ui.dashboard.panels;
 
 import db.*;
 import model.*;
+import ui.utils.ChangeTracker;
 import ui.utils.GradingUtils;
 import ui.utils.PaddedCellRenderer;
+import ui.utils.PanelLoader;
 import utils.EmailSender;
 
 import javax.swing.*;
@@ -12,10 +14,13 @@ import java.awt.*;
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.List;
-import java.util.Map;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 
 // Grading tab
@@ -32,6 +37,17 @@ public final class GradingPanel extends JPanel implements Refreshable {
     private JComboBox<String> assignmentCombo;
     private JComboBox<String> statusCombo;
 
+    // submissions are paged newest first, so the first one seen per (student, assignment) is the latest
+    private static final int PAGE_SIZE = 200;
+    private Listing listing; // filters and paging position of the rows shown
+
+    // pages are read in the background, applying a filter supersedes a pending page
+    private final PanelLoader loader = new PanelLoader();
+
+    // writes since the table was filled, graded or edited submissions are patched in place on refresh
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.SUBMISSIONS, ChangeEvent.Topic.ASSIGNMENTS,
+            ChangeEvent.Topic.COURSES, ChangeEvent.Topic.ENROLLMENTS, ChangeEvent.Topic.USERS);
+
     public GradingPanel(User teacher, JTabbedPane parentTabs) {
         super(new BorderLayout(10, 10));
         this.grader = teacher;
@@ -87,7 +103,13 @@ public final class GradingPanel extends JPanel implements Refreshable {
             }
         };
         submissionTable = new JTable(submissionModel);
-        add(new JScrollPane(submissionTable), BorderLayout.CENTER);
+        JScrollPane tableScroll = new JScrollPane(submissionTable);
+        add(loader.decorate(tableScroll), BorderLayout.CENTER);
+        tableScroll.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar bar = (JScrollBar) e.getAdjustable();
+            if (!e.getValueIsAdjusting() && bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - 50)
+                loadMoreSubmissions();
+        });
         submissionTable.getTableHeader().setFont(submissionTable.getTableHeader().getFont().deriveFont(Font.BOLD));
 
         PaddedCellRenderer paddedRenderer = new PaddedCellRenderer();
@@ -133,7 +155,7 @@ public final class GradingPanel extends JPanel implements Refreshable {
             if (course != null) {
                 // Get assignments for this course
                 AssignmentDAO assignmentDAO = AssignmentDAO.getInstance();
-                List<Assignment> assignments = assignmentDAO.readAllCondition("course_id", course.getId());
+                List<Assignment> assignments = assignmentDAO.find(Criteria.where(AssignmentDAO.COURSE_ID, course.getId()));
 
                 if (assignments != null) {
                     for (Assignment assignment : assignments) {
@@ -144,84 +166,121 @@ public final class GradingPanel extends JPanel implements Refreshable {
         }
     }
 
-    // Helper method to load submissions data
+    // Helper method to load submissions data, only the first pages are read until the table is scrolled
     private void loadSubmissionsData(DefaultTableModel model, String courseFilter, String assignmentFilter,
-                                 String statusFilter, List<Course> teacherCourses) {
-        model.setRowCount(0);
+                                 String statusFilter) {
+        changes.drain(); // the reload covers everything written so far
+
+        // the course filter is applied by the query, only the teacher's courses are ever read
+        List<Integer> courseIds = new ArrayList<>();
+        for (Course course : teacherCourses) {
+            if (courseFilter == null || "All Courses".equals(courseFilter) || course.getName().equals(courseFilter))
+                courseIds.add(course.getId());
+        }
 
-        SubmissionDAO submissionDAO = SubmissionDAO.getInstance();
-        List<Submission> allSubmissions = submissionDAO.readAll();
-        AssignmentDAO assignmentDAO = AssignmentDAO.getInstance();
-        UserDAO userDAO = UserDAO.getInstance();
-
-        // Key: (studentId, assignmentId) -> latest Submission
-        Map<String, Submission> latestSubmissions = new HashMap<>();
-
-        for (Submission submission : allSubmissions) {
-            if (submission.getCollaboratorIds().isEmpty()) continue;
-            int studentId = submission.getCollaboratorIds().get(0);
-            String key = studentId + "-" + submission.getAssignmentId();
-
-            // Get the most recent submission for each student-assignment pair
-            Submission existing = latestSubmissions.get(key);
-            if (existing == null || submission.getSubmittedAt().after(existing.getSubmittedAt())) {
-                latestSubmissions.put(key, submission);
-            }
+        Listing next = new Listing(courseIds, assignmentFilter, statusFilter);
+        loader.load(next::readPage, rows -> {
+            listing = next;
+            PanelLoader.replaceRows(model, rows);
+        });
+    }
+
+    // next page of the shown listing, once the previous one has arrived
+    private void loadMoreSubmissions() {
+        if (listing == null || !listing.hasMorePages || loader.isLoading()) return;
+
+        Listing current = listing;
+        loader.load(current::readPage, rows -> PanelLoader.appendRows(submissionModel, rows));
+    }
+
+    // filters and paging position of one listing, read by a single load at a time
+    private static final class Listing {
+        private final List<Integer> courseIds;
+        private final String assignmentName; // null for every assignment
+        private final Submission.Status status; // null for every status
+        private String nextCursor;
+        private boolean hasMorePages = true;
+
+        private Listing(List<Integer> courseIds, String assignmentFilter, String statusFilter) {
+            this.courseIds = courseIds;
+            this.assignmentName = assignmentFilter == null || "All Assignments".equals(assignmentFilter) ? null : assignmentFilter;
+            this.status = statusFilter == null || "All".equals(statusFilter) ? null : Submission.Status.valueOf(statusFilter);
         }
 
-        for (Submission submission : latestSubmissions.values()) {
-            Assignment assignment = assignmentDAO.read(submission.getAssignmentId());
-            if (assignment == null) continue;
+        // next page of the latest submission of each (student, assignment) pair, every filter is applied by the query
+        private List<Object[]> readPage() {
+            Page<SubmissionRow> page = SubmissionDAO.getInstance().readLatestRowPage(courseIds, assignmentName, status, nextCursor, PAGE_SIZE);
+            nextCursor = page.getNextCursor();
+            hasMorePages = page.hasMore();
 
-            boolean isTeachersCourse = teacherCourses.stream()
-                    .anyMatch(c -> c.getId() == assignment.getCourseId());
-            if (!isTeachersCourse) continue;
+            List<Object[]> rows = new ArrayList<>();
+            for (SubmissionRow row : page.getItems()) rows.add(toRowData(row));
+            return rows;
+        }
 
-            Course course = teacherCourses.stream()
-                    .filter(c -> c.getId() == assignment.getCourseId())
-                    .findFirst()
-                    .orElse(null);
-            if (course == null) continue;
+        private Object[] toRowData(SubmissionRow row) {
+            return new Object[] {
+                    row.getId(),
+                    row.getStudentName(),
+                    row.getCourseName(),
+                    row.getAssignmentName(),
+                    row.getSubmittedAt(),
+                    row.getStatus().toString(),
+                    gradeDisplay(row)
+            };
+        }
 
-            // Apply course filter
-            if (courseFilter != null && !"All Courses".equals(courseFilter) &&
-                    !course.getName().equals(courseFilter)) {
-                continue;
-            }
+        private boolean matchesStatusFilter(SubmissionRow row) {
+            return status == null || row.getStatus() == status;
+        }
+    }
 
-            // Apply assignment filter
-            if (assignmentFilter != null && !"All Assignments".equals(assignmentFilter) &&
-                    !assignment.getName().equals(assignmentFilter)) {
-                continue;
-            }
+    private static String gradeDisplay(SubmissionRow row) {
+        if (!row.isGraded()) return "-";
+        return String.format("%.0f/%.0f", row.getPointsEarned(), row.getMaxPoints());
+    }
 
-            // Apply status filter
-            if (statusFilter != null && !"All".equals(statusFilter) &&
-                    !submission.getStatus().toString().equals(statusFilter)) {
-                continue;
-            }
+    // patch the rows of graded or edited submissions, false when the table has to be reloaded instead
+    private boolean applyChanges(List<ChangeEvent> events) {
+        if (ChangeTracker.requiresReload(events) || listing == null || loader.isLoading()) return false;
 
-            int studentId = submission.getCollaboratorIds().get(0);
-            User student = userDAO.read(studentId);
-            if (student == null) continue;
+        Set<Integer> submissionIds = new LinkedHashSet<>();
+        for (ChangeEvent event : events) {
+            ChangeEvent.Kind kind = event.getKind();
+            if (kind != ChangeEvent.Kind.SUBMISSION_GRADED && kind != ChangeEvent.Kind.SUBMISSION_UPDATED)
+                return false; // rows may have appeared or disappeared
+            submissionIds.add(event.getId());
+        }
 
-            String gradeDisplay = "-";
-            if (submission.getStatus() == Submission.Status.GRADED) {
-                gradeDisplay = String.format("%.0f/%.0f",
-                        submission.getPointsEarned(), assignment.getMaxPoints());
-            }
+        Set<Integer> courseIds = new HashSet<>();
+        for (Course course : teacherCourses) courseIds.add(course.getId());
 
-            Object[] rowData = {
-                    submission.getId(),
-                    student.getName(),
-                    course.getName(),
-                    assignment.getName(),
-                    submission.getSubmittedAt(),
-                    submission.getStatus().toString(),
-                    gradeDisplay
-            };
-            model.addRow(rowData);
+        Map<Integer, Integer> modelRows = new HashMap<>();
+        for (int i = 0; i < submissionModel.getRowCount(); i++)
+            modelRows.put((Integer) submissionModel.getValueAt(i, 0), i);
+
+        SubmissionDAO submissionDAO = SubmissionDAO.getInstance();
+        List<Integer> removed = new ArrayList<>();
+        for (int submissionId : submissionIds) {
+            SubmissionRow row = submissionDAO.readRow(submissionId);
+            if (row == null) return false;
+            if (!courseIds.contains(row.getCourseId())) continue; // another teacher's course
+
+            Integer modelRow = modelRows.get(submissionId);
+            if (modelRow == null) return false; // not shown yet, it may match the filters now
+
+            if (!listing.matchesStatusFilter(row)) {
+                removed.add(modelRow);
+                continue;
+            }
+            submissionModel.setValueAt(row.getSubmittedAt(), modelRow, 4);
+            submissionModel.setValueAt(row.getStatus().toString(), modelRow, 5);
+            submissionModel.setValueAt(gradeDisplay(row), modelRow, 6);
         }
+
+        removed.sort(null);
+        for (int i = removed.size() - 1; i >= 0; i--) submissionModel.removeRow(removed.get(i));
+        return true;
     }
 
 
@@ -231,7 +290,7 @@ public final class GradingPanel extends JPanel implements Refreshable {
 
     // Helper method to grade a submission
     private void gradeSubmission(Submission submission, Assignment assignment) {
-        GradingUtils.showGradingDialog(this, grader, submission, assignment, this::loadSubmissionsData);
+        GradingUtils.showGradingDialog(this, grader, submission, assignment, this::refresh);
     }
 
     // Reload the table using the current filter-combo selections.
@@ -240,8 +299,7 @@ public final class GradingPanel extends JPanel implements Refreshable {
                 submissionModel,
                 (String) courseCombo.getSelectedItem(),
                 (String) assignmentCombo.getSelectedItem(),
-                (String) statusCombo.getSelectedItem(),
-                teacherCourses);
+                (String) statusCombo.getSelectedItem());
     }
 
     // View the submission that is currently selected in the table.
@@ -294,8 +352,23 @@ public final class GradingPanel extends JPanel implements Refreshable {
         AssignmentDAO aDao = AssignmentDAO.getInstance();
         UserDAO uDao = UserDAO.getInstance();
 
+        // every read below is answered by the scope after the three batch loads
+        IdentityScope scope = IdentityScope.open();
         try (PrintWriter pw = new PrintWriter(outFile)) {
 
+            List<Integer> subIds = new ArrayList<>();
+            for (int r = 0; r < submissionModel.getRowCount(); r++)
+                subIds.add((Integer) submissionModel.getValueAt(r, 0));
+
+            Set<Integer> asgIds = new HashSet<>();
+            Set<Integer> stuIds = new HashSet<>();
+            for (Submission sub : sDao.readByIds(subIds).values()) {
+                asgIds.add(sub.getAssignmentId());
+                if (!sub.getCollaboratorIds().isEmpty()) stuIds.add(sub.getCollaboratorIds().get(0));
+            }
+            aDao.readByIds(asgIds);
+            uDao.readByIds(stuIds);
+
             pw.println("Submission ID,Student ID,Student Name,Course,Assignment,"
                     + "Submitted,Status,Points,Max Points,Percentage");
 
@@ -349,6 +422,8 @@ public final class GradingPanel extends JPanel implements Refreshable {
             JOptionPane.showMessageDialog(this,
                     "Error exporting grades: " + ex.getMessage(),
                     "Export Error", JOptionPane.ERROR_MESSAGE);
+        } finally {
+            scope.close();
         }
     }
 
@@ -357,7 +432,7 @@ public final class GradingPanel extends JPanel implements Refreshable {
         List<Assignment> allAsg = new ArrayList<>();
         AssignmentDAO aDao = AssignmentDAO.getInstance();
         for (Course c : teacherCourses)
-            allAsg.addAll(aDao.readAllCondition("course_id", c.getId()));
+            allAsg.addAll(aDao.find(Criteria.where(AssignmentDAO.COURSE_ID, c.getId())));
 
         if (allAsg.isEmpty()) {
             JOptionPane.showMessageDialog(this,
@@ -404,12 +479,13 @@ public final class GradingPanel extends JPanel implements Refreshable {
         if (opt != JOptionPane.OK_OPTION || list.getSelectedValuesList().isEmpty())
             return;
 
-        // Update submissions
+        // Update submissions in one batch so the whole publish is a single transaction
         SubmissionDAO sDao = SubmissionDAO.getInstance();
-        int released = 0;
+        List<Submission> released = new ArrayList<>();
+        List<Runnable> notifications = new ArrayList<>();
 
         for (Assignment asg : list.getSelectedValuesList()) {
-            List<Submission> subs = sDao.readAllCondition("assignment_id", asg.getId());
+            List<Submission> subs = sDao.find(Criteria.where(SubmissionDAO.ASSIGNMENT_ID, asg.getId()));
 
             for (Submission sub : subs) {
                 if (sub.getStatus() != Submission.Status.GRADED)
@@ -418,11 +494,10 @@ public final class GradingPanel extends JPanel implements Refreshable {
                 if (sub.getGrade() >= 0) { // not yet published
                     double percent = 100.0 * sub.getPointsEarned() / asg.getMaxPoints();
                     sub.setGrade(percent); // store percentage as released grade
-                    sDao.update(sub);
-                    released++;
+                    released.add(sub);
 
-                    if (notifyChk.isSelected()) {
-                        // EmailService.notifyStudent(sub.getCollaboratorIds(), asg, percent);
+                    // EmailService.notifyStudent(sub.getCollaboratorIds(), asg, percent);
+                    notifications.add(() -> {
                         List<Integer> collaborators = sub.getCollaboratorIds();
                         List<String> emails = new ArrayList<>();
                         UserDAO userDAO = UserDAO.getInstance();
@@ -433,21 +508,47 @@ public final class GradingPanel extends JPanel implements Refreshable {
                         }
 
                         EmailSender.sendEmail(emails, asg.getName() + " Has Been Graded!", "You scored a " + percent + "%");
-                    }
+                    });
                 }
             }
         }
 
+        // only notify students whose grade was committed
+        BatchResult<Submission> result = sDao.updateAll(released);
+        for (BatchResult.Failure<Submission> failure : result.getFailures()) {
+            System.err.println("Error publishing grade: " + failure.getError().getMessage());
+        }
+        if (notifyChk.isSelected()) {
+            IdentityScope scope = IdentityScope.open();
+            try {
+                // load every collaborator once, students with several submissions are not re-read
+                Set<Integer> studentIds = new HashSet<>();
+                for (int i = 0; i < released.size(); i++) {
+                    if (result.isSuccess(i)) studentIds.addAll(released.get(i).getCollaboratorIds());
+                }
+                UserDAO.getInstance().readByIds(studentIds);
+
+                for (int i = 0; i < notifications.size(); i++) {
+                    if (result.isSuccess(i)) notifications.get(i).run();
+                }
+            } finally {
+                scope.close();
+            }
+        }
+
         JOptionPane.showMessageDialog(this,
-                String.format("Grades published for %d submission(s).", released),
+                String.format("Grades published for %d submission(s).", result.getSuccessCount()),
                 "Publish Complete", JOptionPane.INFORMATION_MESSAGE);
 
-        loadSubmissionsData(); // refresh table
+        refresh(); // only the released rows change
     }
 
 
     @Override
     public void refresh() {
-        loadSubmissionsData();
+        List<ChangeEvent> events = changes.drain();
+        if (events.isEmpty()) return; // nothing was written since the table was filled
+
+        if (!applyChanges(events)) loadSubmissionsData();
     }
 }
@@ -1,73 +1,139 @@
 package ui.dashboard.panels;
 
 import ui.dashboard.components.DashboardCard;
+import ui.utils.ChangeTracker;
 import ui.utils.PaddedCellRenderer;
+import ui.utils.PanelLoader;
 import db.*;
 import model.*;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public final class OverviewPanel extends JPanel implements Refreshable{
     private User teacher;
 
+    // cards and recent activity are rebuilt only after something was written
+    private final ChangeTracker changes = new ChangeTracker();
+
+    // counters and activity are read in the background, the content is rebuilt once they arrive
+    private final PanelLoader loader = new PanelLoader();
+    private final JPanel content = new JPanel(new BorderLayout(10, 10));
+
     public OverviewPanel(User teacher) {
         super(new BorderLayout(10, 10));
         this.teacher = teacher;
-        buildUI();
-    }
-    
-    private void buildUI() {
-        removeAll();
-        setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        add(loader.decorate(content), BorderLayout.CENTER);
+        loadOverview();
+    }
 
-        JPanel cards = new JPanel(new GridLayout(2, 2, 15, 15));
+    private void loadOverview() {
+        loader.loadAsync(this::readOverview, this::buildUI);
+    }
+
+    // everything the overview shows, read off the EDT
+    private static final class Overview {
+        private int activeCourses;
+        private int totalStudents;
+        private int pendingSubmissions;
+        private int upcomingDeadlines;
+        private final List<Object[]> recentActivity = new ArrayList<>();
+    }
 
+    // the four counters and the activity list are independent reads, they run in parallel on the DB readers
+    private CompletableFuture<Overview> readOverview() {
         CourseDAO courseDAO = CourseDAO.getInstance();
         AssignmentDAO assignDAO = AssignmentDAO.getInstance();
         SubmissionDAO submDAO = SubmissionDAO.getInstance();
+        int teacherId = teacher.getId();
 
-        int activeCourses = courseDAO.getActiveCoursesCount(teacher.getId());
-        //System.out.println(activeCourses);
-        int totalStudents = courseDAO.getTotalStudentsCount(teacher.getId());
-
-        List<Course> courses = courseDAO.getCoursesForTeacher(teacher.getId());
-        int pendingSubmissions = 0;
-        int upcomingDeadlines = 0;
+        CompletableFuture<Integer> activeCourses = DBConnection.submitRead(() -> courseDAO.getActiveCoursesCount(teacherId));
+        CompletableFuture<Integer> totalStudents = DBConnection.submitRead(() -> courseDAO.getTotalStudentsCount(teacherId));
+        CompletableFuture<List<Course>> courses = DBConnection.submitRead(() -> courseDAO.getCoursesForTeacher(teacherId));
 
         Timestamp now = new Timestamp(System.currentTimeMillis());
         Timestamp inOneWeek = new Timestamp(now.getTime() + 7L * 24 * 60 * 60 * 1000);
 
-        for (Course c : courses) {
-            List<Assignment> assigns = assignDAO.readAllCondition("course_id", c.getId());
-            if (assigns == null)
-                continue;
+        // counted in SQLite, no assignment or submission rows are loaded
+        CompletableFuture<Integer> pendingSubmissions = courses.thenCompose(list -> sumPerCourse(list, c ->
+                assignDAO.findValuesAsync(Criteria.where(AssignmentDAO.COURSE_ID, c.getId()), AssignmentDAO.ID)
+                        .thenCompose(assignmentIds -> submDAO.countAsync(Criteria.where(SubmissionDAO.STATUS, Submission.Status.UNGRADED)
+                                .in(SubmissionDAO.ASSIGNMENT_ID, assignmentIds)))));
+
+        CompletableFuture<Integer> upcomingDeadlines = courses.thenCompose(list -> sumPerCourse(list, c ->
+                assignDAO.countAsync(Criteria.where(AssignmentDAO.COURSE_ID, c.getId())
+                        .gt(AssignmentDAO.DUE_DATE, now)
+                        .lt(AssignmentDAO.DUE_DATE, inOneWeek))));
+
+        CompletableFuture<List<Object[]>> recentActivity = courses.thenCompose(list -> DBConnection.submitRead(() -> readRecentActivity(list)));
+
+        return CompletableFuture.allOf(activeCourses, totalStudents, pendingSubmissions, upcomingDeadlines, recentActivity)
+                .thenApply(done -> {
+                    Overview overview = new Overview();
+                    overview.activeCourses = activeCourses.join();
+                    overview.totalStudents = totalStudents.join();
+                    overview.pendingSubmissions = pendingSubmissions.join();
+                    overview.upcomingDeadlines = upcomingDeadlines.join();
+                    overview.recentActivity.addAll(recentActivity.join());
+                    return overview;
+                });
+    }
 
-            for (Assignment a : assigns) {
-                List<Submission> subs = submDAO.readAllCondition("assignment_id", a.getId());
-                if (subs != null)
-                    pendingSubmissions += subs.stream()
-                            .filter(s -> s.getStatus() == Submission.Status.UNGRADED)
-                            .count();
+    // one count per course, all issued at once and added up when they are in
+    private static CompletableFuture<Integer> sumPerCourse(List<Course> courses, Function<Course, CompletableFuture<Integer>> count) {
+        List<CompletableFuture<Integer>> counts = courses.stream().map(count).collect(Collectors.toList());
+        return CompletableFuture.allOf(counts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> counts.stream().mapToInt(CompletableFuture::join).sum());
+    }
 
-                if (a.getDueDate().after(now) && a.getDueDate().before(inOneWeek))
-                    upcomingDeadlines++;
-            }
+    // the five latest submissions to the teacher's courses, picked and ordered by SQLite
+    private static List<Object[]> readRecentActivity(List<Course> courses) {
+        List<Object[]> activity = new ArrayList<>();
+        Map<Integer, Course> coursesById = courses.stream().collect(Collectors.toMap(Course::getId, c -> c, (c1, c2) -> c1));
+        Map<Integer, Assignment> assignmentsById = AssignmentDAO.getInstance()
+                .find(Criteria.<Assignment>where().in(AssignmentDAO.COURSE_ID, coursesById.keySet()))
+                .stream().collect(Collectors.toMap(Assignment::getId, a -> a));
+
+        List<Submission> recent = SubmissionDAO.getInstance().find(Criteria.<Submission>where()
+                .in(SubmissionDAO.ASSIGNMENT_ID, assignmentsById.keySet())
+                .orderByDesc(SubmissionDAO.SUBMITTED_AT)
+                .limit(5));
+
+        for (Submission s : recent) {
+            Assignment a = assignmentsById.get(s.getAssignmentId());
+            Course c = coursesById.get(a.getCourseId());
+
+            String act = (s.getStatus() == Submission.Status.GRADED) ? "Grades Published" : "Submission Received";
+            String det = (s.getStatus() == Submission.Status.GRADED) ? a.getName() + " grades released"
+                    : "New submission for " + a.getName();
+
+            activity.add(new Object[]{s.getSubmittedAt(), act, c.getName(), det});
         }
+        return activity;
+    }
 
-        cards.add(new DashboardCard("Active Courses", String.valueOf(activeCourses),
-                "You have " + activeCourses + " active courses this semester."));
-        cards.add(new DashboardCard("Pending Submissions", String.valueOf(pendingSubmissions),
-                "You have " + pendingSubmissions + " submissions waiting to be graded."));
-        cards.add(new DashboardCard("Upcoming Deadlines", String.valueOf(upcomingDeadlines),
+    private void buildUI(Overview overview) {
+        content.removeAll();
+
+        JPanel cards = new JPanel(new GridLayout(2, 2, 15, 15));
+        cards.add(new DashboardCard("Active Courses", String.valueOf(overview.activeCourses),
+                "You have " + overview.activeCourses + " active courses this semester."));
+        cards.add(new DashboardCard("Pending Submissions", String.valueOf(overview.pendingSubmissions),
+                "You have " + overview.pendingSubmissions + " submissions waiting to be graded."));
+        cards.add(new DashboardCard("Upcoming Deadlines", String.valueOf(overview.upcomingDeadlines),
                 "Deadlines in the next 7 days."));
-        cards.add(new DashboardCard("Total Students", String.valueOf(totalStudents),
+        cards.add(new DashboardCard("Total Students", String.valueOf(overview.totalStudents),
                 "Across all your courses."));
 
-        add(cards, BorderLayout.NORTH);
+        content.add(cards, BorderLayout.NORTH);
 
         JPanel activityPanel = new JPanel(new BorderLayout(5, 5));
         activityPanel.setBorder(BorderFactory.createTitledBorder("Recent Activity"));
@@ -79,28 +145,7 @@ public final class OverviewPanel extends JPanel implements Refreshable{
                 return false;
             }
         };
-
-        List<Submission> subs = submDAO.readAll();
-        subs.sort((s1, s2) -> s2.getSubmittedAt().compareTo(s1.getSubmittedAt()));
-
-        int added = 0;
-        for (Submission s : subs) {
-            if (added == 5)
-                break;
-            Assignment a = assignDAO.read(s.getAssignmentId());
-            if (a == null)
-                continue;
-            Course c = courses.stream().filter(x -> x.getId() == a.getCourseId()).findFirst().orElse(null);
-            if (c == null)
-                continue;
-
-            String act = (s.getStatus() == Submission.Status.GRADED) ? "Grades Published" : "Submission Received";
-            String det = (s.getStatus() == Submission.Status.GRADED) ? a.getName() + " grades released"
-                    : "New submission for " + a.getName();
-
-            model.addRow(new Object[]{s.getSubmittedAt(), act, c.getName(), det});
-            added++;
-        }
+        PanelLoader.replaceRows(model, overview.recentActivity);
 
         JTable tbl = new JTable(model);
         activityPanel.add(new JScrollPane(tbl), BorderLayout.CENTER);
@@ -112,14 +157,16 @@ public final class OverviewPanel extends JPanel implements Refreshable{
         paddedRenderer.applyCellPadding(tbl);
 
 
-        add(activityPanel, BorderLayout.CENTER);
+        content.add(activityPanel, BorderLayout.CENTER);
 
-        revalidate();
-        repaint();
+        content.revalidate();
+        content.repaint();
     }
 
     @Override
     public void refresh() {
-        buildUI();
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
+        loadOverview();
     }
 }
@@ -1,7 +1,9 @@
 package ui.dashboard.panels;
 
 import db.AssignmentDAO;
+import db.ChangeEvent;
 import db.CourseDAO;
+import db.Criteria;
 import db.SubmissionDAO;
 import db.UserCourseDAO;
 import model.Assignment;
@@ -10,6 +12,7 @@ import model.Student;
 import model.Submission;
 import model.UserCourse;
 import ui.dashboard.panels.Refreshable;
+import ui.utils.ChangeTracker;
 import ui.utils.PaddedCellRenderer;
 import ui.utils.Padding;
 import utils.SubmissionFileManager;
@@ -22,13 +25,16 @@ import java.io.File;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class StudentAssignmentsPanel extends JPanel implements Refreshable {
     private final Student student;
     private DefaultTableModel assignmentModel;
     private JTable assignmentTable;
 
+    // new assignments, grades or enrollments since the table was filled
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.COURSES, ChangeEvent.Topic.ENROLLMENTS,
+            ChangeEvent.Topic.ASSIGNMENTS, ChangeEvent.Topic.SUBMISSIONS);
+
     public StudentAssignmentsPanel(Student student) {
         super(new BorderLayout(10, 10));
         this.student = student;
@@ -72,25 +78,33 @@ public class StudentAssignmentsPanel extends JPanel implements Refreshable {
         UserCourseDAO userCourseDAO = UserCourseDAO.getInstance();
         SubmissionDAO submissionDAO = SubmissionDAO.getInstance();
     
-        List<UserCourse> enrollments = userCourseDAO.readAll().stream()
-                .filter(uc -> uc.getUserId() == student.getId())
-                .collect(Collectors.toList());
+        List<UserCourse> enrollments = userCourseDAO.getEnrollmentsForUser(student.getId());
+
+        // every enrolled course in one query
+        List<Integer> courseIds = new ArrayList<>();
+        for (UserCourse uc : enrollments) courseIds.add(uc.getCourseId());
+        Map<Integer, Course> courses = courseDAO.readByIds(courseIds);
     
         for (UserCourse uc : enrollments) {
-            Course course = courseDAO.read(uc.getCourseId());
+            Course course = courses.get(uc.getCourseId());
             if (course == null)
                 continue;
     
-            List<Assignment> assignments = assignmentDAO.readAllCondition("course_id", course.getId());
+            List<Assignment> assignments = assignmentDAO.find(Criteria.where(AssignmentDAO.COURSE_ID, course.getId()));
+            List<Integer> assignmentIds = new ArrayList<>();
+            for (Assignment a : assignments) assignmentIds.add(a.getId());
+
+            // only this student's submissions for the course, first one per assignment
+            Map<Integer, Submission> submissionsByAssignment = new HashMap<>();
+            List<Submission> studentSubmissions = submissionDAO.find(Criteria.<Submission>where()
+                    .in(SubmissionDAO.ASSIGNMENT_ID, assignmentIds)
+                    .and(SubmissionDAO.hasCollaborator(student.getId()))
+                    .orderBy(SubmissionDAO.ID));
+            for (Submission s : studentSubmissions) submissionsByAssignment.putIfAbsent(s.getAssignmentId(), s);
     
             for (Assignment a : assignments) {
-                // Get submissions for this assignment
-                List<Submission> submissions = submissionDAO.readAllCondition("assignment_id", a.getId());
-    
                 // Find the student's submission
-                Optional<Submission> studentSubmission = submissions.stream()
-                        .filter(s -> s.getCollaboratorIds().contains(student.getId()))
-                        .findFirst();
+                Optional<Submission> studentSubmission = Optional.ofNullable(submissionsByAssignment.get(a.getId()));
     
                 String status;
                 String gradeDisplay = "—";
@@ -172,6 +186,8 @@ public class StudentAssignmentsPanel extends JPanel implements Refreshable {
 
     @Override
     public void refresh() {
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
         loadAssignments();
     }
 }
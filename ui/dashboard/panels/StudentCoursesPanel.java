@@ -1,5 +1,6 @@
 package ui.dashboard.panels;
 
+import db.ChangeEvent;
 import db.CourseDAO;
 import db.UserCourseDAO;
 import model.Course;
@@ -7,20 +8,25 @@ import model.Student;
 import model.UserCourse;
 import ui.UIConstants;
 import ui.dashboard.panels.Refreshable;
+import ui.utils.ChangeTracker;
 import ui.utils.PaddedCellRenderer;
 import ui.utils.Padding;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class StudentCoursesPanel extends JPanel implements Refreshable {
     private final Student student;
     private DefaultTableModel courseModel;
     private JTable courseTable;
 
+    // enrollments or course edits since the table was filled
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.COURSES, ChangeEvent.Topic.ENROLLMENTS, ChangeEvent.Topic.TEMPLATES);
+
     public StudentCoursesPanel(Student student) {
         super(new BorderLayout(10, 10));
         this.student = student;
@@ -62,12 +68,15 @@ public class StudentCoursesPanel extends JPanel implements Refreshable {
         CourseDAO courseDAO = CourseDAO.getInstance();
         UserCourseDAO userCourseDAO = UserCourseDAO.getInstance();
 
-        List<UserCourse> enrollments = userCourseDAO.readAll().stream()
-                .filter(uc -> uc.getUserId() == student.getId())
-                .collect(Collectors.toList());
+        List<UserCourse> enrollments = userCourseDAO.getEnrollmentsForUser(student.getId());
+
+        // every enrolled course in one query
+        List<Integer> courseIds = new ArrayList<>();
+        for (UserCourse uc : enrollments) courseIds.add(uc.getCourseId());
+        Map<Integer, Course> courses = courseDAO.readByIds(courseIds);
 
         for (UserCourse uc : enrollments) {
-            Course course = courseDAO.read(uc.getCourseId());
+            Course course = courses.get(uc.getCourseId());
             if (course != null) {
                 String status = uc.getStatus().toString();
                 courseModel.addRow(new Object[] { course.getId(), course.getName(), status });
@@ -145,6 +154,8 @@ public class StudentCoursesPanel extends JPanel implements Refreshable {
 
     @Override
     public void refresh() {
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
         loadCourses();
     }
 }
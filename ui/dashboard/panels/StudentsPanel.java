@@ -6,8 +6,10 @@ import utils.CSVStudentManager;
 import utils.EmailSender;
 import utils.Hasher;
 import ui.UIConstants;
+import ui.utils.ChangeTracker;
 import ui.utils.PaddedCellRenderer;
 import ui.utils.Padding;
+import ui.utils.PanelLoader;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -16,10 +18,10 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
 import java.io.PrintWriter;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import static ui.utils.StudentGradeResult.getLetterGrade;
 import static ui.utils.StudentGradeResult.getStudentGradePercent;
@@ -31,12 +33,19 @@ public final class StudentsPanel extends JPanel implements Refreshable {
     private final JTabbedPane parentTabs;
     private final List<Course> teacherCourses = new ArrayList<>();
 
+    // rosters and grades are re-read only after one of these was written
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.USERS, ChangeEvent.Topic.COURSES,
+            ChangeEvent.Topic.ENROLLMENTS, ChangeEvent.Topic.ASSIGNMENTS, ChangeEvent.Topic.SUBMISSIONS);
+
     // UI widgets we reuse in helpers
     private DefaultTableModel studentModel;
     private JTable studentTable;
     private JComboBox<String> courseCombo;
     private JComboBox<String> statusCombo;
 
+    // roster and grades are read in the background, a newer filter supersedes a pending load
+    private final PanelLoader loader = new PanelLoader();
+
     public StudentsPanel(Teacher teacher, JTabbedPane parentTabs) {
         super(new BorderLayout(10, 10));
         this.teacher = teacher;
@@ -92,7 +101,7 @@ public final class StudentsPanel extends JPanel implements Refreshable {
         };
         studentTable = new JTable(studentModel);
         studentTable.getTableHeader().setReorderingAllowed(false);
-        add(new JScrollPane(studentTable), BorderLayout.CENTER);
+        add(loader.decorate(new JScrollPane(studentTable)), BorderLayout.CENTER);
         studentTable.getTableHeader().setFont(studentTable.getTableHeader().getFont().deriveFont(Font.BOLD));
 
         PaddedCellRenderer paddedRenderer = new PaddedCellRenderer();
@@ -129,65 +138,52 @@ public final class StudentsPanel extends JPanel implements Refreshable {
         exportBtn.addActionListener(e -> exportGrades());
     }
 
-    // Helper method to load students data
+    // Helper method to load students data, the rows are read off the EDT and swapped in at once
     private void loadStudentGraderData(DefaultTableModel model, String courseFilter, String statusFilter,
             List<Course> teacherCourses) {
-        // Clear existing data
-        model.setRowCount(0);
-
-        // Get all students
-        UserDAO userDAO = UserDAO.getInstance();
-        List<User> allUsers = userDAO.readAll();
-
-        // Filter students only
-        List<User> users = allUsers.stream()
-                .filter(u -> u.getRole() == User.Role.STUDENT || u.getRole() == User.Role.GRADER)
-                .collect(Collectors.toList());
-
-        // Get user-course relationships
-        UserCourseDAO userCourseDAO = UserCourseDAO.getInstance();
-        List<UserCourse> allUserCourses = userCourseDAO.readAll();
+        List<Course> courses = new ArrayList<>(teacherCourses); // the list is refilled on the EDT by refresh
+        loader.load(() -> readStudentGraderRows(courses, courseFilter, statusFilter),
+                rows -> PanelLoader.replaceRows(model, rows));
+    }
 
-        // For each student, check if they're in any of the teacher's courses
-        for (User user : users) {
-            for (Course course : teacherCourses) {
-                boolean enrolled = allUserCourses.stream()
-                        .anyMatch(uc -> uc.getUserId() == user.getId() && uc.getCourseId() == course.getId());
+    private static List<Object[]> readStudentGraderRows(List<Course> teacherCourses, String courseFilter, String statusFilter) {
+        // the teacher's courses that pass the course filter
+        List<Integer> courseIds = new ArrayList<>();
+        for (Course course : teacherCourses) {
+            if (courseFilter == null || "All Courses".equals(courseFilter) || course.getName().equals(courseFilter))
+                courseIds.add(course.getId());
+        }
 
-                if (!enrolled) continue;
+        // one joined query for every student and grader enrolled in those courses
+        List<RosterRow> roster = UserCourseDAO.getInstance()
+                .readRosterRows(courseIds, Arrays.asList(User.Role.STUDENT, User.Role.GRADER));
 
-                if (courseFilter != null && !"All Courses".equals(courseFilter) &&
-                        !course.getName().equals(courseFilter))
+        List<Object[]> rows = new ArrayList<>();
+        for (RosterRow row : roster) {
+            if (!"All".equals(statusFilter)) {
+                if ("Active".equals(statusFilter) && !row.isActive())
+                    continue;
+                if ("Inactive".equals(statusFilter) && row.isActive())
                     continue;
-
-                UserCourse uc = userCourseDAO.read(user.getId(), course.getId());
-                if (uc == null) continue;
-
-                if (!"All".equals(statusFilter)) {
-                    boolean active = uc.getStatus() == UserCourse.Status.ACTIVE;
-                    if ("Active".equals(statusFilter) && !active)
-                        continue;
-                    if ("Inactive".equals(statusFilter) && active)
-                        continue;
-                }
-                double grade = getStudentGradePercent(user.getId(), course.getId());
-
-                String status = uc.getStatus() == UserCourse.Status.ACTIVE ? "Active" : "Inactive";
-
-                Object[] rowData = {
-                        user.getId(),
-                        user.getName(),
-                        user.getEmail(),
-                        course.getName(),
-                        course.getId(),
-                        status,
-                        user.getLastUpdated(),
-                        user.getRole(),
-                        grade
-                };
-                model.addRow(rowData);
             }
+            double grade = getStudentGradePercent(row.getUserId(), row.getCourseId());
+
+            String status = row.isActive() ? "Active" : "Inactive";
+
+            Object[] rowData = {
+                    row.getUserId(),
+                    row.getName(),
+                    row.getEmail(),
+                    row.getCourseName(),
+                    row.getCourseId(),
+                    status,
+                    row.getLastUpdated(),
+                    row.getRole(),
+                    grade
+            };
+            rows.add(rowData);
         }
+        return rows;
     }
 
     private void loadStudentGraderData() {
@@ -1060,13 +1056,13 @@ public final class StudentsPanel extends JPanel implements Refreshable {
 
     private void addCourseGradeTab(JTabbedPane tabs,Course course,int studentId) {
         AssignmentDAO aDao = AssignmentDAO.getInstance();
-        SubmissionDAO sDao = SubmissionDAO.getInstance();
+        GradebookDAO gDao = GradebookDAO.getInstance();
 
-        List<Assignment> assignments = aDao.readAllCondition("course_id", course.getId());
+        List<Assignment> assignments = aDao.find(Criteria.where(AssignmentDAO.COURSE_ID, course.getId()));
 
-        // Get grade info
-        double earnedSum = 0, maxSum = 0;
-        int completed = 0;
+        // Get grade info, the totals and latest submission per assignment are kept in the gradebook
+        GradebookRow totals = gDao.read(studentId, course.getId());
+        Map<Integer, GradebookEntry> entries = gDao.readEntries(studentId, course.getId());
 
         String[] cols = { "Assignment", "Type", "Due Date", "Grade", "Comments" };
         DefaultTableModel model = new DefaultTableModel(cols, 0) {
@@ -1076,37 +1072,20 @@ public final class StudentsPanel extends JPanel implements Refreshable {
             }
         };
 
-        Submission lastSub = null;
+        Assignment lastAssignment = null;
 
         for (Assignment a : assignments) {
 
-            // pull the submission(s) for THIS student / assignment
-            List<Submission> subs = sDao.readAllCondition("assignment_id", a.getId())
-                    .stream()
-                    .filter(s -> s.getCollaboratorIds().contains(studentId))
-                    .collect(Collectors.toList());
-
-            Submission sub = subs.stream()
-                    .max(Comparator.comparing(Submission::getSubmittedAt))
-                    .orElse(null);
+            // latest submission for THIS student / assignment
+            GradebookEntry entry = entries.get(a.getId());
 
             String gradeStr = "-";
-            String comment = "";
-            if (sub != null) {
-                lastSub = (lastSub == null ||
-                        sub.getSubmittedAt().after(lastSub.getSubmittedAt()))
-                                ? sub
-                                : lastSub;
-
-                if (sub.getStatus() == Submission.Status.GRADED) {
-                    gradeStr = String.format("%.0f/%.0f",
-                            sub.getPointsEarned(),
-                            a.getMaxPoints());
-                    earnedSum += sub.getPointsEarned();
-                    maxSum += a.getMaxPoints();
-                    completed++;
-                }
+            if (entry != null && entry.isGraded()) {
+                gradeStr = String.format("%.0f/%.0f",
+                        entry.getPointsEarned(),
+                        a.getMaxPoints());
             }
+            if (totals != null && totals.getLastAssignmentId() == a.getId()) lastAssignment = a;
 
             model.addRow(new Object[] {
                     a.getName(),
@@ -1117,7 +1096,8 @@ public final class StudentsPanel extends JPanel implements Refreshable {
         }
 
         // Top summary panel
-        double percent = (maxSum > 0) ? 100.0 * earnedSum / maxSum : 0.0;
+        double percent = (totals != null) ? totals.getPercent() : 0.0;
+        int completed = (totals != null) ? totals.getGradedCount() : 0;
         String letter = getLetterGrade(percent);
 
         JPanel summary = new JPanel(new GridLayout(3, 2, 10, 5));
@@ -1130,9 +1110,9 @@ public final class StudentsPanel extends JPanel implements Refreshable {
         summary.add(new JLabel(completed + " / " + assignments.size()));
 
         summary.add(new JLabel("Last Submission:"));
-        summary.add(new JLabel(lastSub == null ? "-"
-                : lastSub.getSubmittedAt().toLocalDateTime().toLocalDate()
-                        + " (" + aDao.read(lastSub.getAssignmentId()).getName() + ")"));
+        summary.add(new JLabel(lastAssignment == null || totals.getLastSubmittedAt() == null ? "-"
+                : totals.getLastSubmittedAt().toLocalDateTime().toLocalDate()
+                        + " (" + lastAssignment.getName() + ")"));
 
         JPanel root = new JPanel(new BorderLayout(10, 10));
         root.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -1211,6 +1191,8 @@ public final class StudentsPanel extends JPanel implements Refreshable {
   
     @Override
     public void refresh() {
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
         refreshCourseDropdown();
         loadStudentGraderData();
     }
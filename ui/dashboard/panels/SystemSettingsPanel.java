@@ -1,5 +1,6 @@
 package ui.dashboard.panels;
 
+import db.GradebookDAO;
 import model.Admin;
 import ui.utils.Padding;
 import utils.DBUtils;
@@ -10,6 +11,7 @@ import org.omg.PortableInterceptor.SUCCESSFUL;
 
 import java.awt.*;
 import java.io.File;
+import java.util.List;
 
 // System settings panel
 public final class SystemSettingsPanel extends JPanel {
@@ -47,10 +49,14 @@ public final class SystemSettingsPanel extends JPanel {
         JButton backupButton = new JButton("Backup Database");
         JButton resetButton = new JButton("Reset Database");
         JButton loadBackupButton = new JButton("Load Backup");
+        JButton rebuildGradebookButton = new JButton("Rebuild Gradebook");
+        JButton checkGradebookButton = new JButton("Check Gradebook");
 
         dbActionsPanel.add(backupButton);
         dbActionsPanel.add(resetButton);
         dbActionsPanel.add(loadBackupButton);
+        dbActionsPanel.add(rebuildGradebookButton);
+        dbActionsPanel.add(checkGradebookButton);
 
         dbPanel.add(dbActionsPanel, BorderLayout.CENTER);
 
@@ -93,6 +99,8 @@ public final class SystemSettingsPanel extends JPanel {
         resetButton.addActionListener(e -> handleResetDB());
         backupButton.addActionListener(e -> handleBackupDB());
         loadBackupButton.addActionListener(e -> handleLoadBackup());
+        rebuildGradebookButton.addActionListener(e -> handleRebuildGradebook());
+        checkGradebookButton.addActionListener(e -> handleCheckGradebook());
 
         add(settingsTabs, BorderLayout.CENTER);
     }
@@ -152,6 +160,46 @@ public final class SystemSettingsPanel extends JPanel {
         }
     }
 
+    private void handleRebuildGradebook() {
+        boolean rebuildSuccessful = GradebookDAO.getInstance().rebuild();
+
+        if (rebuildSuccessful) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Gradebook has been rebuilt from the submissions.",
+                "Rebuild Complete",
+                JOptionPane.INFORMATION_MESSAGE
+            );
+        } else {
+            JOptionPane.showMessageDialog(
+                this,
+                "Failed to rebuild gradebook",
+                "Rebuild Failed",
+                JOptionPane.ERROR_MESSAGE
+            );
+        }
+    }
+
+    private void handleCheckGradebook() {
+        List<String> problems = GradebookDAO.getInstance().check();
+
+        if (problems.isEmpty()) {
+            JOptionPane.showMessageDialog(
+                this,
+                "Gradebook is consistent with the submissions.",
+                "Gradebook Consistent",
+                JOptionPane.INFORMATION_MESSAGE
+            );
+        } else {
+            JOptionPane.showMessageDialog(
+                this,
+                String.join("\n", problems) + "\n\nUse Rebuild Gradebook to repair it.",
+                "Gradebook Inconsistent",
+                JOptionPane.WARNING_MESSAGE
+            );
+        }
+    }
+
     private void handleLoadBackup() {
         // Open file chooser to select a backup file
         JFileChooser fileChooser = new JFileChooser("./data/backups/");
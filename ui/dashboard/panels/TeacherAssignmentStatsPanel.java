@@ -1,11 +1,17 @@
 package ui.dashboard.panels;
 
 import db.AssignmentDAO;
+import db.ChangeEvent;
 import db.CourseDAO;
-import db.SubmissionDAO;
-import db.UserCourseDAO;
+import db.Criteria;
+import db.GradeSheet;
+import db.GradebookDAO;
 import model.*;
+import ui.utils.ChangeTracker;
+import ui.utils.HistogramChart;
 import ui.utils.PaddedCellRenderer;
+import ui.utils.PanelLoader;
+import utils.StatsAccumulator;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -17,13 +23,25 @@ import java.util.List;
 
 public class TeacherAssignmentStatsPanel extends JPanel implements Refreshable {
     private final Teacher teacher;
+
+    // stats only change with courses, assignments or submissions
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.COURSES, ChangeEvent.Topic.ENROLLMENTS,
+            ChangeEvent.Topic.ASSIGNMENTS, ChangeEvent.Topic.SUBMISSIONS);
     private JComboBox<Course> courseComboBox;
     private JComboBox<Assignment> assignmentComboBox;
     private DefaultTableModel statsModel;
     private JTable statsTable;
-    private JPanel chartPanel;
+    private HistogramChart chartPanel;
     private JLabel meanLabel, stdDevLabel, medianLabel;
 
+    // last loaded grades, shared by the table, stats labels, histogram and export
+    private GradeSheet sheet;
+    private int column = -1; // the assignment's position in the sheet
+    private StatsAccumulator stats; // scores of active students, null until loaded
+
+    // the sheet is read in the background, switching course drops a pending read
+    private final PanelLoader loader = new PanelLoader();
+
     public TeacherAssignmentStatsPanel(Teacher teacher) {
         super(new BorderLayout(10, 10));
         this.teacher = teacher;
@@ -69,23 +87,16 @@ public class TeacherAssignmentStatsPanel extends JPanel implements Refreshable {
             }
         };
         statsTable = new JTable(statsModel);
-        add(new JScrollPane(statsTable), BorderLayout.CENTER);
+        add(loader.decorate(new JScrollPane(statsTable)), BorderLayout.CENTER);
         statsTable.getTableHeader().setFont(statsTable.getTableHeader().getFont().deriveFont(Font.BOLD));
 
         PaddedCellRenderer paddedRenderer = new PaddedCellRenderer();
         PaddedCellRenderer.setDefaultRowHeight(statsTable);
         paddedRenderer.applyCellPadding(statsTable);
 
-        chartPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                drawHistogram((Graphics2D) g);
-            }
-        };
+        chartPanel = new HistogramChart();
         chartPanel.setPreferredSize(new Dimension(600, 200));
-        chartPanel.setBackground(Color.WHITE);
-        add(chartPanel, BorderLayout.SOUTH);
+        add(loader.decorate(chartPanel), BorderLayout.SOUTH);
 
         JPanel statsSummary = new JPanel(new GridLayout(1, 3));
         meanLabel = new JLabel("Mean: -");
@@ -111,12 +122,13 @@ public class TeacherAssignmentStatsPanel extends JPanel implements Refreshable {
     }
 
     private void loadAssignments() {
+        loader.cancel(); // stats of the previous course are no longer wanted
         assignmentComboBox.removeAllItems();
         Course selectedCourse = (Course) courseComboBox.getSelectedItem();
         if (selectedCourse == null) return;
 
         List<Assignment> assignments = AssignmentDAO.getInstance()
-                .readAllCondition("course_id", selectedCourse.getId());
+                .find(Criteria.where(AssignmentDAO.COURSE_ID, selectedCourse.getId()));
         for (Assignment a : assignments) {
             assignmentComboBox.addItem(a);
         }
@@ -124,103 +136,60 @@ public class TeacherAssignmentStatsPanel extends JPanel implements Refreshable {
 
     private void loadStats() {
         statsModel.setRowCount(0);
+        stats = null;
+        chartPanel.clear();
         Course course = (Course) courseComboBox.getSelectedItem();
         Assignment assignment = (Assignment) assignmentComboBox.getSelectedItem();
         if (course == null || assignment == null) return;
     
-        List<Submission> submissions = SubmissionDAO.getInstance()
-                .readAllCondition("assignment_id", assignment.getId());
-    
-        Map<Integer, Double> studentScores = new HashMap<>();
-        for (Submission s : submissions) {
-            if (s.getStatus() == Submission.Status.GRADED && !s.getCollaboratorIds().isEmpty()) {
-                studentScores.put(s.getCollaboratorIds().get(0), s.getPointsEarned());
-            }
-        }
-    
-        List<User> activeStudents = UserCourseDAO.getInstance()
-                .getActiveUsersInCourseByRole(course.getId(), User.Role.STUDENT); // new method
+        // latest graded submission of every student, one query for the whole course
+        loader.load(() -> GradebookDAO.getInstance().readSheet(course.getId()),
+                loaded -> showStats(loaded, assignment.getId()));
+    }
+
+    private void showStats(GradeSheet loaded, int assignmentId) {
+        sheet = loaded;
+        column = sheet.indexOfAssignment(assignmentId);
+        if (column == -1) return;
     
-        List<Double> allScores = new ArrayList<>();
-        for (User student : activeStudents) {
-            double score = studentScores.getOrDefault(student.getId(), 0.0);
-            allScores.add(score);
-            statsModel.addRow(new Object[] {
-                    student.getId(),
-                    student.getName(),
+        // active students only, ungraded and missing work counts as 0
+        double maxPoints = sheet.getMaxPoints(column);
+        stats = new StatsAccumulator(0, maxPoints > 0 ? maxPoints : 1, 10);
+        List<Object[]> rows = new ArrayList<>();
+        for (int student = 0; student < sheet.getStudentCount(); student++) {
+            if (!sheet.isActive(student)) continue;
+
+            double score = sheet.getEarned(student, column);
+            stats.add(score);
+            rows.add(new Object[] {
+                    sheet.getStudentId(student),
+                    sheet.getStudentName(student),
                     score,
-                    assignment.getMaxPoints()
+                    sheet.getMaxPoints(column)
             });
         }
+        PanelLoader.replaceRows(statsModel, rows);
     
-        updateStatsLabels(allScores);
-        chartPanel.repaint();
+        updateStatsLabels(stats);
+        if (stats.getCount() > 0) chartPanel.setBins(stats.getHistogram()); // tenths of the max points, binned while loading
     }
     
 
-    private void updateStatsLabels(List<Double> scores) {
-        if (scores.isEmpty()) {
+    private void updateStatsLabels(StatsAccumulator stats) {
+        if (stats == null || stats.getCount() == 0) {
             meanLabel.setText("Mean: -");
             stdDevLabel.setText("Std Dev: -");
             medianLabel.setText("Median: -");
             return;
         }
 
-        double sum = scores.stream().mapToDouble(Double::doubleValue).sum();
-        double mean = sum / scores.size();
-        double variance = scores.stream().mapToDouble(s -> Math.pow(s - mean, 2)).sum() / scores.size();
-        double stdDev = Math.sqrt(variance);
-
-        Collections.sort(scores);
-        double median = scores.size() % 2 == 0
-                ? (scores.get(scores.size() / 2 - 1) + scores.get(scores.size() / 2)) / 2
-                : scores.get(scores.size() / 2);
-
-        meanLabel.setText(String.format("Mean: %.2f", mean));
-        stdDevLabel.setText(String.format("Std Dev: %.2f", stdDev));
-        medianLabel.setText(String.format("Median: %.2f", median));
-    }
-
-    private void drawHistogram(Graphics2D g2) {
-        Assignment assignment = (Assignment) assignmentComboBox.getSelectedItem();
-        if (assignment == null) return;
-
-        int w = chartPanel.getWidth();
-        int h = chartPanel.getHeight();
-
-        List<Double> scores = new ArrayList<>();
-        for (int i = 0; i < statsModel.getRowCount(); i++) {
-            Object val = statsModel.getValueAt(i, 2);
-            if (val instanceof Number) scores.add(((Number) val).doubleValue());
-        }
-        if (scores.isEmpty()) return;
-
-        int[] bins = new int[10];
-        double max = assignment.getMaxPoints();
-        for (double score : scores) {
-            int bin = (int) ((score / max) * 10);
-            if (bin == 10) bin = 9;
-            bins[bin]++;
-        }
-
-        int barWidth = w / bins.length;
-        int maxCount = Arrays.stream(bins).max().orElse(1);
-
-        g2.setColor(Color.BLUE);
-        for (int i = 0; i < bins.length; i++) {
-            int barHeight = (int) (((double) bins[i] / maxCount) * (h - 30));
-            g2.fillRect(i * barWidth + 4, h - barHeight - 20, barWidth - 8, barHeight);
-        }
-
-        g2.setColor(Color.BLACK);
-        for (int i = 0; i < bins.length; i++) {
-            String label = String.format("%d-%d%%", i * 10, (i + 1) * 10 - 1);
-            g2.drawString(label, i * barWidth + 4, h - 5);
-        }
+        meanLabel.setText(String.format("Mean: %.2f", stats.getMean()));
+        stdDevLabel.setText(String.format("Std Dev: %.2f", stats.getStdDev()));
+        medianLabel.setText(String.format("Median: %.2f", stats.getMedian()));
     }
 
     private void exportAssignmentStatsToCSV() {
-        if (statsModel.getRowCount() == 0) {
+        if (stats == null || stats.getCount() == 0) {
             JOptionPane.showMessageDialog(this,
                     "No data to export.",
                     "Export Failed", JOptionPane.WARNING_MESSAGE);
@@ -240,12 +209,11 @@ public class TeacherAssignmentStatsPanel extends JPanel implements Refreshable {
             }
             pw.println();
 
-            for (int r = 0; r < statsModel.getRowCount(); r++) {
-                for (int c = 0; c < statsModel.getColumnCount(); c++) {
-                    pw.print(statsModel.getValueAt(r, c));
-                    if (c < statsModel.getColumnCount() - 1) pw.print(",");
-                }
-                pw.println();
+            // rows come from the loaded sheet rather than the table cells
+            for (int student = 0; student < sheet.getStudentCount(); student++) {
+                if (!sheet.isActive(student)) continue;
+                pw.println(sheet.getStudentId(student) + "," + sheet.getStudentName(student) + ","
+                        + sheet.getEarned(student, column) + "," + sheet.getMaxPoints(column));
             }
 
             JOptionPane.showMessageDialog(this,
@@ -260,6 +228,8 @@ public class TeacherAssignmentStatsPanel extends JPanel implements Refreshable {
 
     @Override
     public void refresh() {
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
         loadCourses();
     }
 
@@ -1,11 +1,16 @@
 package ui.dashboard.panels;
 
-import db.AssignmentDAO;
+import db.ChangeEvent;
 import db.CourseDAO;
-import db.SubmissionDAO;
-import db.UserCourseDAO;
+import db.GradeSheet;
+import db.GradebookDAO;
 import model.*;
+import ui.utils.ChangeTracker;
+import ui.utils.HistogramChart;
 import ui.utils.PaddedCellRenderer;
+import ui.utils.PanelLoader;
+import utils.GradeComputationService;
+import utils.StatsAccumulator;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -14,10 +19,13 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
     private final Teacher teacher;
+
+    // course list is re-read only when courses or grades were written since
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.COURSES, ChangeEvent.Topic.ENROLLMENTS,
+            ChangeEvent.Topic.ASSIGNMENTS, ChangeEvent.Topic.SUBMISSIONS);
     private JComboBox<Course> courseComboBox;
     private JComboBox<String> strategyComboBox;
     private JTextField thresholdField;
@@ -25,7 +33,15 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
     private DefaultTableModel statsModel;
     private JTable statsTable;
     private JLabel meanLabel, stdDevLabel, medianLabel;
-    private JPanel chartPanel;
+    private HistogramChart chartPanel;
+
+    // last loaded grades, shared by the table, stats labels, histogram and export
+    private GradeSheet sheet;
+    private GradeComputationService.Result result; // its stats cover graded students only
+    private boolean passFail = false;
+
+    // the sheet is read in the background, switching course drops a pending read
+    private final PanelLoader loader = new PanelLoader();
 
     public TeacherOverallStatsPanel(Teacher teacher) {
         super(new BorderLayout(10, 10));
@@ -38,7 +54,7 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
     private void buildUI() {
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         courseComboBox = new JComboBox<>();
-        strategyComboBox = new JComboBox<>(new String[] { "Proportional", "Pass/Fail (60%)" });
+        strategyComboBox = new JComboBox<>(new String[] { "Proportional", "Pass/Fail (60%)", "Weighted" });
         thresholdLabel = new JLabel("Pass Threshold:");
         thresholdField = new JTextField("60", 5); // default 60%
         thresholdField.setEnabled(false);
@@ -46,6 +62,7 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
         strategyComboBox.addActionListener(e -> {
             String selected = (String) strategyComboBox.getSelectedItem();
             thresholdField.setEnabled("Pass/Fail (60%)".equals(selected));
+            if (isSheetLoaded()) gradeSheet(); // regrade the loaded sheet, no queries
         });
 
         JButton loadBtn = new JButton("Load Overall Stats");
@@ -69,7 +86,7 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
             }
         };
         statsTable = new JTable(statsModel);
-        add(new JScrollPane(statsTable), BorderLayout.CENTER);
+        add(loader.decorate(new JScrollPane(statsTable)), BorderLayout.CENTER);
         statsTable.getTableHeader().setFont(statsTable.getTableHeader().getFont().deriveFont(Font.BOLD));
 
         PaddedCellRenderer paddedRenderer = new PaddedCellRenderer();
@@ -85,18 +102,15 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
         statsSummary.add(medianLabel);
         add(statsSummary, BorderLayout.EAST);
 
-        chartPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                drawOverallGradeHistogram((Graphics2D) g);
-            }
-        };
+        chartPanel = new HistogramChart();
         chartPanel.setPreferredSize(new Dimension(600, 200));
-        chartPanel.setBackground(Color.WHITE);
-        add(chartPanel, BorderLayout.SOUTH);
+        add(loader.decorate(chartPanel), BorderLayout.SOUTH);
 
         loadBtn.addActionListener(e -> loadStats());
+        courseComboBox.addActionListener(e -> loader.cancel()); // stats of the previous course are no longer wanted
+        thresholdField.addActionListener(e -> {
+            if (isSheetLoaded()) gradeSheet();
+        });
         exportBtn.addActionListener(e -> exportStatsToCSV());
     }
 
@@ -112,16 +126,43 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
         String selected = (String) strategyComboBox.getSelectedItem();
         if ("Pass/Fail (60%)".equals(selected)) {
             return new PassFailGradingStrategy(threshold / 100.0);
+        } else if ("Weighted".equals(selected)) {
+            return new WeightedGradingStrategy();
         } else {
             return new ProportionalGradingStrategy();
         }
     }
 
     private void loadStats() {
-        statsModel.setRowCount(0);
         Course course = (Course) courseComboBox.getSelectedItem();
-        if (course == null)
+        if (course == null) {
+            sheet = null;
+            gradeSheet();
+            return;
+        }
+
+        // totals over each assignment's most recent graded submission, one read for the course
+        loader.load(() -> GradebookDAO.getInstance().readSheet(course.getId()), loaded -> {
+            sheet = loaded;
+            gradeSheet();
+        });
+    }
+
+    // the loaded sheet belongs to the selected course, so switching strategies can reuse it
+    private boolean isSheetLoaded() {
+        Course course = (Course) courseComboBox.getSelectedItem();
+        return sheet != null && course != null && sheet.getCourseId() == course.getId();
+    }
+
+    // apply the selected strategy to the loaded sheet and show the results
+    private void gradeSheet() {
+        statsModel.setRowCount(0);
+        result = null;
+        chartPanel.clear();
+        if (sheet == null) {
+            updateStatsLabels(null);
             return;
+        }
 
         double thresholdVal = 60.0;
         try {
@@ -136,113 +177,52 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
         }
 
         GradingStrategy strategy = getSelectedStrategy(thresholdVal);
-
-        List<Assignment> assignments = AssignmentDAO.getInstance().readAllCondition("course_id", course.getId());
-        List<User> students = UserCourseDAO.getInstance().getUsersInCourseByRole(course.getId(), User.Role.STUDENT);
-
-        List<Double> rawScores = new ArrayList<>();
-
-        for (User student : students) {
-            double totalEarned = 0, totalMax = 0;
-            for (Assignment a : assignments) {
-                Optional<Submission> mostRecentGradedSub = SubmissionDAO.getInstance()
-                        .readAllCondition("assignment_id", a.getId()).stream()
-                        .filter(sub -> sub.getCollaboratorIds().contains(student.getId())
-                                && sub.getStatus() == Submission.Status.GRADED)
-                        .max(Comparator.comparing(Submission::getSubmittedAt)); 
-                if (mostRecentGradedSub.isPresent()) {
-                    totalEarned += mostRecentGradedSub.get().getPointsEarned();
-                    totalMax += a.getMaxPoints();
-                }
-
-            }
-
-            if (totalMax > 0) {
-                double grade = strategy.calculateGrade(totalEarned, totalMax);
-                rawScores.add(grade);
-                String displayGrade = (strategy instanceof ProportionalGradingStrategy)
-                        ? String.format("%.2f%%", grade * 100)
-                        : (grade == 1.0 ? "Pass" : "Fail");
-
-                statsModel.addRow(new Object[] {
-                        student.getId(),
-                        student.getName(),
-                        displayGrade
-                });
-            }
+        passFail = strategy instanceof PassFailGradingStrategy;
+
+        // the strategy's batch form runs in parallel, large courses are split across the cores
+        result = GradeComputationService.getInstance()
+                .compute(Collections.singletonList(new GradeComputationService.Cohort(sheet)), strategy)
+                .getResults().get(0);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < result.size(); i++) {
+            if (!result.isGraded(i)) continue;
+
+            rows.add(new Object[] {
+                    sheet.getStudentId(i),
+                    sheet.getStudentName(i),
+                    displayGrade(result.getGrade(i))
+            });
         }
+        PanelLoader.replaceRows(statsModel, rows);
 
-        List<Double> percentages = rawScores.stream().map(g -> g * 100).collect(Collectors.toList());
-        updateStatsLabels(percentages);
-        chartPanel.repaint(); // Redraw histogram
+        updateStatsLabels(result.getStats());
+        // tenths of the grade, binned while grading; pass/fail grades are not spread over a range
+        if (!passFail && result.getStats().getCount() > 0) chartPanel.setBins(result.getStats().getHistogram());
     }
 
-    private void drawOverallGradeHistogram(Graphics2D g2) {
-        int w = chartPanel.getWidth();
-        int h = chartPanel.getHeight();
-
-        List<Double> scores = new ArrayList<>();
-        for (int i = 0; i < statsModel.getRowCount(); i++) {
-            Object val = statsModel.getValueAt(i, 2);
-            if (val instanceof String && ((String) val).endsWith("%")) {
-                try {
-                    double percent = Double.parseDouble(((String) val).replace("%", ""));
-                    scores.add(percent);
-                } catch (NumberFormatException ignored) {
-                }
-            }
-        }
-
-        if (scores.isEmpty())
-            return;
-
-        int[] bins = new int[10];
-        for (double score : scores) {
-            int bin = Math.min((int) (score / 10), 9);
-            bins[bin]++;
-        }
-
-        int barWidth = w / bins.length;
-        int maxCount = Arrays.stream(bins).max().orElse(1);
-
-        g2.setColor(Color.BLUE);
-        for (int i = 0; i < bins.length; i++) {
-            int barHeight = (int) (((double) bins[i] / maxCount) * (h - 30));
-            g2.fillRect(i * barWidth + 4, h - barHeight - 20, barWidth - 8, barHeight);
-        }
-
-        g2.setColor(Color.BLACK);
-        for (int i = 0; i < bins.length; i++) {
-            String label = String.format("%d-%d%%", i * 10, (i + 1) * 10 - 1);
-            g2.drawString(label, i * barWidth + 4, h - 5);
-        }
+    private String displayGrade(double grade) {
+        return passFail
+                ? (grade == 1.0 ? "Pass" : "Fail")
+                : String.format("%.2f%%", grade * 100);
     }
 
-    private void updateStatsLabels(List<Double> scores) {
-        if (scores.isEmpty()) {
+    // grades in the accumulator are fractions, shown as percentages
+    private void updateStatsLabels(StatsAccumulator stats) {
+        if (stats == null || stats.getCount() == 0) {
             meanLabel.setText("Mean: -");
             stdDevLabel.setText("Std Dev: -");
             medianLabel.setText("Median: -");
             return;
         }
 
-        double sum = scores.stream().mapToDouble(Double::doubleValue).sum();
-        double mean = sum / scores.size();
-        double variance = scores.stream().mapToDouble(s -> Math.pow(s - mean, 2)).sum() / scores.size();
-        double stdDev = Math.sqrt(variance);
-
-        Collections.sort(scores);
-        double median = scores.size() % 2 == 0
-                ? (scores.get(scores.size() / 2 - 1) + scores.get(scores.size() / 2)) / 2
-                : scores.get(scores.size() / 2);
-
-        meanLabel.setText(String.format("Mean: %.2f%%", mean));
-        stdDevLabel.setText(String.format("Std Dev: %.2f%%", stdDev));
-        medianLabel.setText(String.format("Median: %.2f%%", median));
+        meanLabel.setText(String.format("Mean: %.2f%%", stats.getMean() * 100));
+        stdDevLabel.setText(String.format("Std Dev: %.2f%%", stats.getStdDev() * 100));
+        medianLabel.setText(String.format("Median: %.2f%%", stats.getMedian() * 100));
     }
 
     private void exportStatsToCSV() {
-        if (statsModel.getRowCount() == 0) {
+        if (result == null || result.getStats().getCount() == 0) {
             JOptionPane.showMessageDialog(this, "No data to export.", "Export Failed", JOptionPane.WARNING_MESSAGE);
             return;
         }
@@ -261,13 +241,11 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
             }
             pw.println();
 
-            for (int r = 0; r < statsModel.getRowCount(); r++) {
-                for (int c = 0; c < statsModel.getColumnCount(); c++) {
-                    pw.print(statsModel.getValueAt(r, c));
-                    if (c < statsModel.getColumnCount() - 1)
-                        pw.print(",");
-                }
-                pw.println();
+            // rows come from the loaded sheet rather than the formatted table cells
+            for (int i = 0; i < result.size(); i++) {
+                if (!result.isGraded(i))
+                    continue;
+                pw.println(sheet.getStudentId(i) + "," + sheet.getStudentName(i) + "," + displayGrade(result.getGrade(i)));
             }
 
             JOptionPane.showMessageDialog(this,
@@ -282,6 +260,9 @@ public class TeacherOverallStatsPanel extends JPanel implements Refreshable {
 
     @Override
     public void refresh() {
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
+        sheet = null; // grades may have changed, strategy switches must not regrade the old sheet
         loadCourses();
     }
 }
@@ -3,6 +3,7 @@ package ui.dashboard.panels;
 import db.*;
 import model.*;
 import ui.UIConstants;
+import ui.utils.ChangeTracker;
 import ui.utils.PaddedCellRenderer;
 import ui.utils.Padding;
 import ui.utils.TemplateItem;
@@ -22,6 +23,9 @@ public final class TemplatesPanel extends JPanel implements Refreshable {
     private final User teacher;
     private final JTabbedPane parentTabs;
 
+    // template writes since the list was filled
+    private final ChangeTracker changes = new ChangeTracker(ChangeEvent.Topic.TEMPLATES);
+
     // widgets we need to touch from helpers
     private DefaultListModel<String> templateListModel;
     private JList<String> templateJList;
@@ -898,6 +902,8 @@ public final class TemplatesPanel extends JPanel implements Refreshable {
     }
     @Override
     public void refresh() {
+        if (changes.drain().isEmpty()) return; // nothing was written since the last load
+
         loadTemplateNames();
     }
 }
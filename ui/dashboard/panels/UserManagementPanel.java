@@ -18,10 +18,17 @@ import java.util.List;
 // User management panel
 public final class UserManagementPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 100;
+
     private final Admin admin;
     private final DefaultTableModel tableModel;
     private final JTable userTable;
 
+    // keyset paging state, more rows are loaded as the table is scrolled to the bottom
+    private User.Role pageRole; // null pages through every role
+    private String nextCursor;
+    private boolean hasMorePages;
+
     public UserManagementPanel(Admin admin) {
         super(new BorderLayout(10, 10));
         this.admin = admin;
@@ -94,7 +101,13 @@ public final class UserManagementPanel extends JPanel {
         };
         userTable = new JTable(tableModel);
         userTable.setAutoCreateRowSorter(true);
-        add(new JScrollPane(userTable), BorderLayout.CENTER);
+        JScrollPane tableScroll = new JScrollPane(userTable);
+        add(tableScroll, BorderLayout.CENTER);
+        tableScroll.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar bar = (JScrollBar) e.getAdjustable();
+            if (!e.getValueIsAdjusting() && bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - 50)
+                loadNextPage();
+        });
         userTable.getTableHeader().setFont(userTable.getTableHeader().getFont().deriveFont(Font.BOLD));
 
         PaddedCellRenderer paddedRenderer = new PaddedCellRenderer();
@@ -113,24 +126,7 @@ public final class UserManagementPanel extends JPanel {
     // Helpers
 
     private void loadUserData() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-
-        // Get all users from the database
-        List<User> users = admin.getAllUsers();
-
-        // Add users to table
-        for (User user : users) {
-            Object[] rowData = {
-                    user.getId(),
-                    user.getName(),
-                    user.getEmail(),
-                    user.getRole().toString(),
-                    user.getCreatedAt(),
-                    user.getLastUpdated()
-            };
-            tableModel.addRow(rowData);
-        }
+        startPaging(null);
     }
 
     private void filterUsersByRole(String selectedRole) {
@@ -139,31 +135,44 @@ public final class UserManagementPanel extends JPanel {
             return;
         }
 
-        // Clear existing data
+        startPaging(User.Role.valueOf(selectedRole));
+    }
+
+    // clear the table and show the first page of users with the given role
+    private void startPaging(User.Role role) {
         tableModel.setRowCount(0);
+        pageRole = role;
+        nextCursor = null;
+        hasMorePages = true;
+        loadNextPage();
+    }
 
-        // Get all users from the database
-        List<User> users = admin.getAllUsers();
+    private void loadNextPage() {
+        if (!hasMorePages) return;
 
-        // Filter and add users to table
-        for (User user : users) {
-            if (user.getRole().toString().equals(selectedRole)) {
-                Object[] rowData = {
-                        user.getId(),
-                        user.getName(),
-                        user.getEmail(),
-                        user.getRole().toString(),
-                        user.getCreatedAt(),
-                        user.getLastUpdated()
-                };
-                tableModel.addRow(rowData);
-            }
-        }
+        Page<User> page = UserDAO.getInstance().readPage(PageOrder.ID, pageRole, nextCursor, PAGE_SIZE);
+        for (User user : page.getItems()) addUserRow(user);
+
+        nextCursor = page.getNextCursor();
+        hasMorePages = page.hasMore();
+    }
+
+    private void addUserRow(User user) {
+        Object[] rowData = {
+                user.getId(),
+                user.getName(),
+                user.getEmail(),
+                user.getRole().toString(),
+                user.getCreatedAt(),
+                user.getLastUpdated()
+        };
+        tableModel.addRow(rowData);
     }
 
     private void searchUsers(String searchTerm) {
-        // Clear existing data
+        // Clear existing data, search results are not paged
         tableModel.setRowCount(0);
+        hasMorePages = false;
 
         // Get all users from the database
         List<User> users = admin.getAllUsers();
@@ -173,15 +182,7 @@ public final class UserManagementPanel extends JPanel {
         for (User user : users) {
             if (user.getName().toLowerCase().contains(searchTerm) ||
                     user.getEmail().toLowerCase().contains(searchTerm)) {
-                Object[] rowData = {
-                        user.getId(),
-                        user.getName(),
-                        user.getEmail(),
-                        user.getRole().toString(),
-                        user.getCreatedAt(),
-                        user.getLastUpdated()
-                };
-                tableModel.addRow(rowData);
+                addUserRow(user);
             }
         }
     }
@@ -0,0 +1,56 @@
+package ui.utils;
+
+import db.ChangeBus;
+import db.ChangeEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Collects the ChangeEvents a panel cares about between two refreshes. refresh() drains it and
+// does nothing when the list is empty, otherwise it updates the affected rows or reloads.
+// The panel must keep the tracker in a field, the bus only holds it weakly.
+public final class ChangeTracker implements ChangeBus.Listener, AutoCloseable {
+    private static final int MAX_PENDING = 200; // past this a reload is cheaper than applying each event
+
+    private final List<ChangeEvent> pending = new ArrayList<>();
+    private final ChangeBus.Subscription subscription;
+
+    public ChangeTracker(ChangeEvent.Topic... topics) {
+        subscription = ChangeBus.subscribe(this, topics);
+    }
+
+    // called on the committing thread, possibly the DB writer
+    @Override
+    public synchronized void onChange(ChangeEvent event) {
+        if (requiresReload(pending)) return; // a reload is already due
+
+        if (event.isAllChanged() || pending.size() >= MAX_PENDING) {
+            pending.clear();
+            pending.add(ChangeEvent.allChanged());
+        } else {
+            pending.add(event);
+        }
+    }
+
+    // events since the last drain in publish order, empty when nothing changed
+    public synchronized List<ChangeEvent> drain() {
+        if (pending.isEmpty()) return Collections.emptyList();
+
+        List<ChangeEvent> events = new ArrayList<>(pending);
+        pending.clear();
+        return events;
+    }
+
+    public synchronized boolean hasChanges() { return !pending.isEmpty(); }
+
+    // true when the events cannot be applied row by row
+    public static boolean requiresReload(List<ChangeEvent> events) {
+        return events.size() == 1 && events.get(0).isAllChanged();
+    }
+
+    @Override
+    public void close() {
+        subscription.close();
+    }
+}
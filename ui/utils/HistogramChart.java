@@ -0,0 +1,84 @@
+package ui.utils;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// Bar chart of precomputed histogram bins over 0-100%, e.g. StatsAccumulator.getHistogram().
+// The bars are drawn once into an off-screen image that is rebuilt only when the bins or the
+// panel size change, so repaints from hovering, scrolling or resizing cost one image blit.
+public class HistogramChart extends JPanel {
+    private int[] bins = new int[0];
+    private BufferedImage image; // rendered bins at the panel's device size, null when stale
+
+    public HistogramChart() {
+        setBackground(Color.WHITE);
+    }
+
+    // show these bin counts, the array is copied
+    public void setBins(int[] bins) {
+        this.bins = bins.clone();
+        image = null;
+        repaint();
+    }
+
+    public void clear() {
+        setBins(new int[0]);
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        super.setBackground(color);
+        image = null;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int w = getWidth();
+        int h = getHeight();
+        if (bins.length == 0 || w <= 0 || h <= 0)
+            return;
+
+        // render at device resolution so scaled displays stay sharp
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        int deviceW = (int) Math.ceil(w * transform.getScaleX());
+        int deviceH = (int) Math.ceil(h * transform.getScaleY());
+        if (image == null || image.getWidth() != deviceW || image.getHeight() != deviceH) {
+            image = render(w, h, deviceW, deviceH);
+        }
+        g.drawImage(image, 0, 0, w, h, null);
+    }
+
+    private BufferedImage render(int w, int h, int deviceW, int deviceH) {
+        BufferedImage rendered = new BufferedImage(deviceW, deviceH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = rendered.createGraphics();
+        try {
+            g2.scale((double) deviceW / w, (double) deviceH / h);
+            g2.setColor(getBackground());
+            g2.fillRect(0, 0, w, h);
+            g2.setFont(getFont());
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+            int barWidth = w / bins.length;
+            int maxCount = Math.max(1, Arrays.stream(bins).max().orElse(1));
+
+            g2.setColor(Color.BLUE);
+            for (int i = 0; i < bins.length; i++) {
+                int barHeight = (int) (((double) bins[i] / maxCount) * (h - 30));
+                g2.fillRect(i * barWidth + 4, h - barHeight - 20, barWidth - 8, barHeight);
+            }
+
+            g2.setColor(Color.BLACK);
+            for (int i = 0; i < bins.length; i++) {
+                String label = String.format("%d-%d%%", i * 100 / bins.length, (i + 1) * 100 / bins.length - 1);
+                g2.drawString(label, i * barWidth + 4, h - 5);
+            }
+        } finally {
+            g2.dispose();
+        }
+        return rendered;
+    }
+}
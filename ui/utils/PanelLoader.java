@@ -0,0 +1,165 @@
+package ui.utils;
+
+import javax.swing.*;
+import javax.swing.plaf.LayerUI;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Runs a Refreshable panel's queries off the Event Dispatch Thread. load() hands the query to a small
+// pool of daemon threads and applies its result back on the EDT in one step, so the window stays
+// responsive while a big course is read:
+//
+//     loader.load(() -> readRows(courseFilter), rows -> PanelLoader.replaceRows(model, rows));
+//
+// loadAsync() takes the future of reads already composed on the DB reader executor (the DAOs' *Async
+// methods) and holds no loader thread while they run.
+//
+// One loader per panel. A new load() or cancel() supersedes the pending load, which is skipped if it
+// has not started yet and otherwise finishes with its result dropped. Views wrapped by decorate() are
+// dimmed with a "Loading..." note while a load is pending. Queries must not touch Swing components,
+// and load()/cancel() are called on the EDT.
+public final class PanelLoader {
+    private static final int THREADS = 4; // a few panels loading at once, well within the read pool
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "panel-loader-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<JLayer<JComponent>> views = new ArrayList<>();
+    private Future<?> pending;
+    private long generation = 0; // bumped by every load and cancel, results of older loads are dropped
+    private boolean loading = false;
+
+    // run query in the background and pass its result to apply on the EDT, unless superseded first
+    public <T> void load(Callable<T> query, Consumer<? super T> apply) {
+        cancel();
+        long load = generation;
+        setLoading(true);
+
+        pending = executor.submit(() -> {
+            try {
+                T result = query.call();
+                SwingUtilities.invokeLater(() -> complete(load, result, null, apply));
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> complete(load, null, e, apply));
+            }
+        });
+    }
+
+    // start the reads behind the returned future (on the EDT, so without blocking) and apply its result
+    public <T> void loadAsync(Supplier<CompletableFuture<T>> query, Consumer<? super T> apply) {
+        cancel();
+        long load = generation;
+        setLoading(true);
+
+        CompletableFuture<T> future = query.get();
+        pending = future;
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> complete(load, result, error, apply)));
+    }
+
+    // on the EDT, once a load finished
+    private <T> void complete(long load, T result, Throwable error, Consumer<? super T> apply) {
+        if (load != generation) return; // superseded or cancelled meanwhile
+        finish();
+
+        if (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+        if (error != null) System.err.println("Error loading panel data: " + error.getMessage());
+        else apply.accept(result);
+    }
+
+    // drop the pending load, e.g. when the filter it was started for is no longer selected
+    public void cancel() {
+        generation++;
+        if (pending != null) pending.cancel(false); // SQLite queries cannot be interrupted, a running one just finishes
+        finish();
+    }
+
+    public boolean isLoading() { return loading; }
+
+    // wrap a view so it shows the loading state of this loader, add the returned layer instead of the view
+    public JLayer<JComponent> decorate(JComponent view) {
+        JLayer<JComponent> layer = new JLayer<>(view, new LoadingUI());
+        views.add(layer);
+        return layer;
+    }
+
+    private void finish() {
+        pending = null;
+        setLoading(false);
+    }
+
+    private void setLoading(boolean on) {
+        if (loading == on) return;
+        loading = on;
+        for (JLayer<JComponent> view : views) {
+            view.setCursor(on ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : null);
+            view.repaint();
+        }
+    }
+
+    // replace every row of the model with one change event, column renderers and widths are kept
+    public static void replaceRows(DefaultTableModel model, List<Object[]> rows) {
+        Vector<Vector<Object>> data = dataOf(model);
+        data.clear();
+        for (Object[] row : rows) data.add(new Vector<>(Arrays.asList(row)));
+        model.fireTableDataChanged();
+    }
+
+    // append rows to the model with one change event
+    public static void appendRows(DefaultTableModel model, List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+
+        int first = model.getRowCount();
+        Vector<Vector<Object>> data = dataOf(model);
+        for (Object[] row : rows) data.add(new Vector<>(Arrays.asList(row)));
+        model.fireTableRowsInserted(first, model.getRowCount() - 1);
+    }
+
+    // the model's row vectors, typed differently across JDK versions
+    @SuppressWarnings("unchecked")
+    private static Vector<Vector<Object>> dataOf(DefaultTableModel model) {
+        return (Vector<Vector<Object>>) (Vector<?>) model.getDataVector();
+    }
+
+    // dims the view and centers a note over it while loading
+    private final class LoadingUI extends LayerUI<JComponent> {
+        @Override
+        public void paint(Graphics g, JComponent c) {
+            super.paint(g, c);
+            if (!loading) return;
+
+            Graphics2D g2 = (Graphics2D) g.create();
+            try {
+                g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.6f));
+                g2.setColor(c.getBackground());
+                g2.fillRect(0, 0, c.getWidth(), c.getHeight());
+
+                g2.setComposite(AlphaComposite.SrcOver);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2.setColor(Color.DARK_GRAY);
+                g2.setFont(c.getFont().deriveFont(Font.BOLD));
+                String text = "Loading...";
+                FontMetrics metrics = g2.getFontMetrics();
+                g2.drawString(text, (c.getWidth() - metrics.stringWidth(text)) / 2,
+                        (c.getHeight() - metrics.getHeight()) / 2 + metrics.getAscent());
+            } finally {
+                g2.dispose();
+            }
+        }
+    }
+}
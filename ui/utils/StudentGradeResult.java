@@ -1,14 +1,6 @@
 package ui.utils;
-import java.util.Collections;
-import java.util.stream.Collectors;
-import java.util.Comparator;
-
-import java.util.List;
-import model.Course;
-import model.Assignment;
-import model.Submission;
-import db.AssignmentDAO;
-import db.SubmissionDAO;
+import db.GradebookDAO;
+import db.GradebookRow;
 
 
 
@@ -31,31 +23,10 @@ public class StudentGradeResult {
         this.lastSubmissionInfo = lastSubmissionInfo;
         this.letterGrade = letterGrade;
     }
+    // weighted grade over the latest submission of each assignment, read from the gradebook
     public static double getStudentGradePercent(int studentId, int courseId) {
-        AssignmentDAO aDao = AssignmentDAO.getInstance();
-        SubmissionDAO sDao = SubmissionDAO.getInstance();
-
-        List<Assignment> assignments = aDao.readAllCondition("course_id", courseId);
-
-        double retGrade = 0;
-        for (Assignment a : assignments) {
-            List<Submission> subs = sDao.readAllCondition("assignment_id", a.getId())
-                    .stream()
-                    .filter(s -> s.getCollaboratorIds().contains(studentId))
-                    .collect(Collectors.toList());
-
-            Submission sub = subs.stream()
-                    .max(Comparator.comparing(Submission::getSubmittedAt))
-                    .orElse(null);
-
-            if (sub != null && sub.getStatus() == Submission.Status.GRADED) {
-                double earnedPoints = sub.getPointsEarned();
-                double maxPoints = a.getMaxPoints();
-                retGrade+= (earnedPoints/maxPoints)*a.getWeight();
-            }
-        }
-
-        return retGrade*100;
+        GradebookRow row = GradebookDAO.getInstance().read(studentId, courseId);
+        return row == null ? 0 : row.getWeightedPercent();
     }
 
     public static String getLetterGrade(double pct) {
@@ -3,6 +3,8 @@ package utils;
 import java.io.*;
 import java.util.*;
 
+import db.BatchResult;
+import db.Criteria;
 import db.UserCourseDAO;
 import db.UserDAO;
 import model.Grader;
@@ -47,7 +49,6 @@ public class CSVStudentManager {
     // reads in files of the form: id, name, email, role
     public void handleStudentCSVSubmission(File file, int courseId) {
         List<List<String>> rows;
-        List<Integer> activeUserIds = new ArrayList<>();
         UserCourse.Status active = UserCourse.Status.ACTIVE;
 
         try {
@@ -69,6 +70,13 @@ public class CSVStudentManager {
 
         rows.remove(0); // remove the header
 
+        // writes are collected and saved in batches, one transaction each instead of one per row
+        List<User> newUsers = new ArrayList<>();
+        List<UserCourse> enrollmentCreates = new ArrayList<>();
+        List<UserCourse> enrollmentUpdates = new ArrayList<>();
+        List<User> enrolledUsers = new ArrayList<>();
+        Set<String> seenEmails = new HashSet<>();
+
         // add/update all users in the csv file
         for (List<String> row : rows) { 
             if (!isValidRow(row)) { // only operate on valid rows
@@ -76,6 +84,13 @@ public class CSVStudentManager {
                 continue;
             }
 
+            // batched writes are not visible yet, so repeated rows must be caught here
+            if (!seenEmails.add(row.get(emailIdx).trim())) {
+                System.err.println("Duplicate email in row: " + row);
+                this.numSkippedLines++;
+                continue;
+            }
+
             // if user already exists, add them to the course or set them to active
             User user = getUserFromRow(row);
             if (user != null) {
@@ -85,37 +100,62 @@ public class CSVStudentManager {
                     if (userCourse.getStatus() != UserCourse.Status.ACTIVE) {
                         this.numEnrolled++;
                         userCourse.setStatus(active);
-                        userCourseDAO.update(userCourse);
+                        enrollmentUpdates.add(userCourse);
                     } else {
                         this.numAlreadyEnrolled++;
                     }
                 } else {
                     userCourse = new UserCourse(user.getId(), courseId, active, user.getRole());
-                    userCourseDAO.create(userCourse);
+                    enrollmentCreates.add(userCourse);
                     this.numEnrolled++;
                 } 
             } else {
-                // otherwise need to create user and add them to user course table
-                user = buildUserFromRow(row);
-                userDAO.create(user);
-
-                UserCourse userCourse = new UserCourse(user.getId(), courseId, active, user.getRole());
-                userCourseDAO.create(userCourse);
+                // otherwise need to create user and add them to user course table once their id is known
+                User newUser = buildUserFromRow(row);
+                newUsers.add(newUser);
                 this.numCreatedAndEnrolled++;
+                user = newUser;
             }
 
-            activeUserIds.add(user.getId()); // keep track of the active users in the course
+            enrolledUsers.add(user); // keep track of the active users in the course
         }
 
+        // new users get their ids from the batch, then are enrolled with everyone else
+        BatchResult<User> createdUsers = userDAO.createAll(newUsers);
+        reportFailures("creating user", createdUsers);
+        for (int i = 0; i < newUsers.size(); i++) {
+            User newUser = newUsers.get(i);
+            if (createdUsers.isSuccess(i)) {
+                enrollmentCreates.add(new UserCourse(newUser.getId(), courseId, active, newUser.getRole()));
+            } else {
+                this.numCreatedAndEnrolled--;
+            }
+        }
+
+        reportFailures("enrolling user", userCourseDAO.createAll(enrollmentCreates));
+        reportFailures("re-activating enrollment", userCourseDAO.updateAll(enrollmentUpdates));
+
+        Set<Integer> activeUserIds = new HashSet<>();
+        for (User user : enrolledUsers) activeUserIds.add(user.getId());
+
         // update all users in the course but NOT in the csv file
-        List<UserCourse> userCourses = userCourseDAO.readAllCondition("course_id", courseId);
+        List<UserCourse> deactivations = new ArrayList<>();
+        List<UserCourse> userCourses = userCourseDAO.find(Criteria.where(UserCourseDAO.COURSE_ID, courseId));
         for (UserCourse uc : userCourses) {
             if (!activeUserIds.contains(uc.getUserId())) {
                 uc.setStatus(UserCourse.Status.INACTIVE);
-                userCourseDAO.update(uc);
+                deactivations.add(uc);
                 this.numRemoved++;
             }
         }
+        reportFailures("deactivating enrollment", userCourseDAO.updateAll(deactivations));
+    }
+
+    // print every row of a batch that could not be saved
+    private void reportFailures(String action, BatchResult<?> result) {
+        for (BatchResult.Failure<?> failure : result.getFailures()) {
+            System.err.println("Error " + action + " " + failure.getItem() + ": " + failure.getError().getMessage());
+        }
     }
 
     // validate the format of the header of the csv file
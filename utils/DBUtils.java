@@ -8,10 +8,15 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import db.ChangeBus;
+import db.ChangeEvent;
 import db.DBConnection;
+import db.EntityCache;
 import java.io.*;
 
 public class DBUtils {
+    private static final String clearAllGradebookQuery = "DELETE FROM gradebook;";
+    private static final String clearAllGradebookEntriesQuery = "DELETE FROM gradebook_entries;";
     private static final String clearAllUserSubmissionsQuery = "DELETE FROM user_submissions;";
     private static final String clearAllUserCoursesQuery = "DELETE FROM user_courses;";
     private static final String clearAllUsersQuery = "DELETE FROM users WHERE role != 3;"; // all but the admin
@@ -23,6 +28,8 @@ public class DBUtils {
     private static final String clearAllSqliteSeqQuery = "DELETE FROM sqlite_sequence;";
 
     private static final String[] clearAllTablesQuery = {
+        clearAllGradebookQuery,
+        clearAllGradebookEntriesQuery,
         clearAllUserSubmissionsQuery,
         clearAllUserCoursesQuery,
         clearAllUsersQuery,
@@ -41,6 +48,9 @@ public class DBUtils {
         } catch (SQLException e) {
             System.err.println("Error clearing all tables: " + e.getMessage());
             return false;
+        } finally {
+            EntityCache.clear(); // rows were deleted behind the DAOs' backs
+            ChangeBus.publish(ChangeEvent.allChanged());
         }
         return true;
     }
@@ -58,6 +68,8 @@ public class DBUtils {
             return false;
         }
     
+        DBConnection.checkpoint(); // make sure committed WAL pages are in the file being copied
+
         String timestamp = new java.text.SimpleDateFormat("yyyy-MM-dd_HHmmss").format(new java.util.Date());
         File backupFile = new File(backupDir, "backup_" + timestamp + ".db");
     
@@ -83,9 +95,9 @@ public class DBUtils {
     }
 
     public static void checkConnectionCount() {
-        try (Connection connection = DBConnection.getConnection()) {
+        try (Connection connection = DBConnection.getReadConnection();
             Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("PRAGMA database_list;");
+            ResultSet rs = stmt.executeQuery("PRAGMA database_list;")) {
             
             while (rs.next()) {
                 System.out.println("Database: " + rs.getString("file"));
@@ -0,0 +1,219 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import db.GradeSheet;
+import model.GradingStrategy;
+
+// Applies a GradingStrategy to whole cohorts of students (one GradeSheet per course) on a ForkJoinPool.
+// Each cohort is split into ranges of at most LEAF_SIZE students, ranges are graded in parallel with the
+// strategy's batch form and their statistics merged, so a department-wide run scales with the number of cores.
+// Statistics are StatsAccumulators over grades in [0, 1] with HISTOGRAM_BINS bins, no grade list is kept for them:
+//
+//     GradeComputationService.Job job = GradeComputationService.getInstance().submit(cohorts, strategy, listener);
+//     GradeComputationService.Report report = job.join(); // CancellationException after job.cancel()
+//
+// Progress is reported from pool threads, listeners that touch Swing must hop to the EDT themselves.
+public final class GradeComputationService {
+    static final int LEAF_SIZE = 1024; // students graded by one task without splitting further
+    public static final int HISTOGRAM_BINS = 10;
+
+    private static final GradeComputationService instance = new GradeComputationService(new ForkJoinPool());
+
+    private final ForkJoinPool pool;
+
+    GradeComputationService(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static GradeComputationService getInstance() { return instance; }
+
+    public int getParallelism() { return pool.getParallelism(); }
+
+    // start grading the cohorts, the listener may be null
+    public Job submit(List<Cohort> cohorts, GradingStrategy strategy, ProgressListener listener) {
+        Job job = new Job(cohorts, strategy, listener);
+        pool.execute(job.root);
+        return job;
+    }
+
+    // grade the cohorts and wait for the report
+    public Report compute(List<Cohort> cohorts, GradingStrategy strategy) {
+        return submit(cohorts, strategy, null).join();
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long studentsGraded, long totalStudents);
+    }
+
+    // the students of one course, graded from its sheet
+    public static final class Cohort {
+        private final GradeSheet sheet;
+
+        public Cohort(GradeSheet sheet) {
+            this.sheet = sheet;
+        }
+
+        public GradeSheet getSheet() { return sheet; }
+        public int getCourseId() { return sheet.getCourseId(); }
+        public int size() { return sheet.getStudentCount(); }
+    }
+
+    // grades of one cohort in sheet order, NaN for students without graded work
+    public static final class Result {
+        private final Cohort cohort;
+        private final double[] grades;
+        private final StatsAccumulator stats;
+
+        private Result(Cohort cohort, double[] grades, StatsAccumulator stats) {
+            this.cohort = cohort;
+            this.grades = grades;
+            this.stats = stats;
+        }
+
+        public int getCourseId() { return cohort.getCourseId(); }
+        public int size() { return grades.length; }
+        public int getStudentId(int i) { return cohort.sheet.getStudentId(i); }
+        public double getGrade(int i) { return grades[i]; }
+        public boolean isGraded(int i) { return !Double.isNaN(grades[i]); }
+        public StatsAccumulator getStats() { return stats; }
+    }
+
+    // results per cohort in submission order, plus statistics over every graded student
+    public static final class Report {
+        private final List<Result> results;
+        private final StatsAccumulator stats;
+
+        private Report(List<Result> results, StatsAccumulator stats) {
+            this.results = results;
+            this.stats = stats;
+        }
+
+        public List<Result> getResults() { return results; }
+        public StatsAccumulator getStats() { return stats; }
+    }
+
+    private static StatsAccumulator newStats() {
+        return new StatsAccumulator(0, 1, HISTOGRAM_BINS);
+    }
+
+    // one submitted run, cancel() stops it at the next range boundary
+    public static final class Job {
+        private final List<Cohort> cohorts;
+        private final GradingStrategy strategy;
+        private final ProgressListener listener;
+        private final long totalStudents;
+        private final AtomicLong graded = new AtomicLong();
+        private final ForkJoinTask<Report> root;
+        private volatile boolean cancelled = false;
+
+        private Job(List<Cohort> cohorts, GradingStrategy strategy, ProgressListener listener) {
+            this.cohorts = new ArrayList<>(cohorts);
+            this.strategy = strategy;
+            this.listener = listener;
+            this.totalStudents = cohorts.stream().mapToLong(Cohort::size).sum();
+            this.root = new ReportTask(this);
+        }
+
+        // the report, blocking until every cohort is graded
+        public Report join() {
+            if (cancelled) throw new CancellationException("grade computation was cancelled");
+            Report report = root.join();
+            if (cancelled) throw new CancellationException("grade computation was cancelled");
+            return report;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() { return cancelled; }
+        public boolean isDone() { return root.isDone(); }
+        public long getTotalStudents() { return totalStudents; }
+
+        // fraction of students graded so far, 1.0 for an empty run
+        public double getProgress() {
+            return totalStudents == 0 ? 1.0 : (double) graded.get() / totalStudents;
+        }
+
+        private void rangeGraded(int students) {
+            long done = graded.addAndGet(students);
+            if (listener != null) listener.progress(done, totalStudents);
+        }
+    }
+
+    // grades every cohort in parallel and merges their statistics
+    private static class ReportTask extends RecursiveTask<Report> {
+        private final Job job;
+
+        private ReportTask(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        protected Report compute() {
+            List<RangeTask> tasks = new ArrayList<>();
+            List<double[]> grades = new ArrayList<>();
+            for (Cohort cohort : job.cohorts) {
+                double[] out = new double[cohort.size()];
+                grades.add(out);
+                tasks.add(new RangeTask(job, cohort, out, 0, cohort.size()));
+            }
+            invokeAll(tasks);
+
+            List<Result> results = new ArrayList<>();
+            StatsAccumulator overall = newStats();
+            for (int i = 0; i < tasks.size(); i++) {
+                StatsAccumulator stats = tasks.get(i).join();
+                results.add(new Result(job.cohorts.get(i), grades.get(i), stats));
+                overall.merge(stats);
+            }
+            return new Report(Collections.unmodifiableList(results), overall);
+        }
+    }
+
+    // grades students [from, to) of one cohort into out, splitting in halves down to LEAF_SIZE
+    private static class RangeTask extends RecursiveTask<StatsAccumulator> {
+        private final Job job;
+        private final Cohort cohort;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        private RangeTask(Job job, Cohort cohort, double[] out, int from, int to) {
+            this.job = job;
+            this.cohort = cohort;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StatsAccumulator compute() {
+            if (job.cancelled) return newStats();
+
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                RangeTask left = new RangeTask(job, cohort, out, from, mid);
+                left.fork();
+                StatsAccumulator right = new RangeTask(job, cohort, out, mid, to).compute();
+                return left.join().merge(right);
+            }
+
+            cohort.sheet.calculateGrades(job.strategy, from, to, out);
+
+            StatsAccumulator stats = newStats();
+            stats.addAll(out, from, to); // students without graded work are NaN and skipped
+            job.rangeGraded(to - from);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package utils;
+
+import java.util.Arrays;
+
+// Single-pass statistics over a stream of scores: count, mean and population variance (Welford), min,
+// max, a fixed-bin histogram for charts and a quantile sketch for the median and percentiles. Scores are
+// fed one at a time and never stored, and two accumulators over the same range merge exactly, so ranges
+// graded on different threads can be combined:
+//
+//     StatsAccumulator stats = new StatsAccumulator(0, 100, 10);
+//     for (double score : scores) stats.add(score);
+//     stats.merge(otherThreadsStats).getMedian();
+//
+// The sketch splits [low, high] into SKETCH_BINS counters, so a quantile is within (high - low) / SKETCH_BINS
+// of the true ranked score. Scores outside the range still count everywhere, but the histogram and sketch
+// place them in the first or last bin. Not thread safe, give each thread its own accumulator and merge.
+public final class StatsAccumulator {
+    static final int SKETCH_BINS = 1000;
+
+    private final double low;
+    private final double high;
+    private final int[] histogram;
+    private final int[] sketch = new int[SKETCH_BINS];
+
+    private long count = 0;
+    private double mean = 0;
+    private double m2 = 0; // sum of squared differences from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public StatsAccumulator(double low, double high, int bins) {
+        if (!(high > low) || bins <= 0)
+            throw new IllegalArgumentException("Invalid range [" + low + ", " + high + "] or bin count " + bins);
+        this.low = low;
+        this.high = high;
+        this.histogram = new int[bins];
+    }
+
+    // NaN scores (e.g. students without graded work) are ignored
+    public void add(double score) {
+        if (Double.isNaN(score)) return;
+
+        count++;
+        double delta = score - mean;
+        mean += delta / count;
+        m2 += delta * (score - mean);
+        if (score < min) min = score;
+        if (score > max) max = score;
+
+        histogram[bin(score, histogram.length)]++;
+        sketch[bin(score, SKETCH_BINS)]++;
+    }
+
+    public void addAll(double[] scores, int from, int to) {
+        for (int i = from; i < to; i++) add(scores[i]);
+    }
+
+    // fold other into this accumulator and return this, both must cover the same range and bins
+    public StatsAccumulator merge(StatsAccumulator other) {
+        if (other.low != low || other.high != high || other.histogram.length != histogram.length)
+            throw new IllegalArgumentException("Cannot merge accumulators over different ranges or bins");
+        if (other.count == 0) return this;
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        for (int i = 0; i < histogram.length; i++) histogram[i] += other.histogram[i];
+        for (int i = 0; i < SKETCH_BINS; i++) sketch[i] += other.sketch[i];
+        return this;
+    }
+
+    // GETTERS, NaN while nothing was added
+    public long getCount() { return count; }
+    public double getMean() { return count == 0 ? Double.NaN : mean; }
+    public double getVariance() { return count == 0 ? Double.NaN : m2 / count; }
+    public double getStdDev() { return Math.sqrt(getVariance()); }
+    public double getMin() { return count == 0 ? Double.NaN : min; }
+    public double getMax() { return count == 0 ? Double.NaN : max; }
+    public double getMedian() { return getQuantile(0.5); }
+
+    public double getLow() { return low; }
+    public double getHigh() { return high; }
+    public int getBinCount() { return histogram.length; }
+
+    // scores per histogram bin, bin i covers [low + i * width, low + (i + 1) * width)
+    public int[] getHistogram() { return histogram.clone(); }
+
+    // score below which a fraction q of the scores fall, interpolated within the sketch bin
+    public double getQuantile(double q) {
+        if (count == 0) return Double.NaN;
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+
+        double rank = q * count;
+        double width = (high - low) / SKETCH_BINS;
+        long seen = 0;
+        for (int i = 0; i < SKETCH_BINS; i++) {
+            if (sketch[i] == 0) continue;
+            if (seen + sketch[i] >= rank) {
+                double value = low + (i + (rank - seen) / sketch[i]) * width;
+                return Math.max(min, Math.min(max, value));
+            }
+            seen += sketch[i];
+        }
+        return max;
+    }
+
+    private int bin(double score, int bins) {
+        int bin = (int) ((score - low) / (high - low) * bins);
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StatsAccumulator[count=%d, mean=%.4f, stdDev=%.4f, min=%.4f, median=%.4f, max=%.4f, bins=%s]",
+            count, getMean(), getStdDev(), getMin(), getMedian(), getMax(), Arrays.toString(histogram));
+    }
+}